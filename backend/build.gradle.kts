@@ -14,10 +14,24 @@ java {
     }
 }
 
+// JMH benchmarkok a forró útvonalakra: ./gradlew jmh [-Pjmh.include=Pricing] [-Pjmh.results=build/jmh-abc123.json]
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
 configurations {
     compileOnly {
         extendsFrom(configurations.annotationProcessor.get())
     }
+    named("jmhImplementation") {
+        extendsFrom(configurations.implementation.get())
+    }
+    named("jmhRuntimeOnly") {
+        extendsFrom(configurations.runtimeOnly.get())
+    }
 }
 
 repositories {
@@ -29,18 +43,55 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-validation")
     implementation("org.springframework.boot:spring-boot-starter-webmvc")
     implementation("org.springframework.boot:spring-boot-starter-mail")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    implementation("org.springframework.boot:spring-boot-starter-aspectj")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
     compileOnly("org.projectlombok:lombok")
     developmentOnly("org.springframework.boot:spring-boot-devtools")
     runtimeOnly("org.postgresql:postgresql")
     annotationProcessor("org.projectlombok:lombok")
     implementation("com.fasterxml.jackson.datatype:jackson-datatype-jsr310")
+    implementation("com.github.ben-manes.caffeine:caffeine")
 
     implementation("com.stripe:stripe-java:24.3.0")
 
     implementation("com.google.zxing:core:3.5.3")
-    implementation("com.google.zxing:javase:3.5.3")
+
+    testImplementation("org.springframework.boot:spring-boot-starter-webmvc-test")
+    testRuntimeOnly("com.h2database:h2")
+    // helyi SMTP szerver az outbox küldésének teszteléséhez
+    testImplementation("com.icegreen:greenmail-junit5:2.1.3")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    // a repository-k helyére stub-only mockok, ugyanaz a Mockito, mint a tesztekben
+    "jmhImplementation"("org.mockito:mockito-core")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
+    // az adatbázist érintő benchmarkok beágyazott H2-n mérnek
+    "jmhRuntimeOnly"("com.h2database:h2")
 }
 
 tasks.withType<Test> {
     useJUnitPlatform()
-}
\ No newline at end of file
+}
+// az eredmény JSON, két commit futása összevethető (pl. jq-val vagy a jmh.morethan.io oldalon)
+tasks.register<JavaExec>("jmh") {
+    group = "benchmark"
+    description = "JMH benchmarkok futtatása, az eredmény JSON-ban"
+
+    val results = layout.projectDirectory.file(
+        providers.gradleProperty("jmh.results").orElse("build/reports/jmh/results.json")
+    )
+
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "org.openjdk.jmh.Main"
+
+    args(providers.gradleProperty("jmh.include").orElse(".*").get())
+    args("-rf", "json", "-rff", results.get().asFile.absolutePath)
+    // bármelyik benchmark hibája (pl. a @Setup kivétele) megbuktatja a futást, nem csak kimarad az eredményből
+    args("-foe", "true")
+
+    doFirst {
+        results.get().asFile.parentFile.mkdirs()
+    }
+}
@@ -0,0 +1,42 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.repository.BookingRepository;
+import net.coma112.flightbooking.service.BookingReferenceAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.when;
+
+// foglalási kód kiadás, egy és több szálon (a foglalások párhuzamosan futnak)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingReferenceBenchmark {
+    private BookingReferenceAllocator referenceAllocator;
+
+    @Setup
+    public void setUp() {
+        // a szekvencia helyett egy számláló; a mérés alatt ~2 millió blokk bőven elég
+        AtomicLong sequence = new AtomicLong();
+        BookingRepository bookingRepository = Fixtures.stub(BookingRepository.class);
+        when(bookingRepository.nextReferenceBlock()).thenAnswer(invocation -> sequence.incrementAndGet());
+
+        referenceAllocator = new BookingReferenceAllocator(bookingRepository, "benchmark");
+    }
+
+    @Benchmark
+    public String nextReference() {
+        return referenceAllocator.next();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String nextReferenceContended() {
+        return referenceAllocator.next();
+    }
+}
@@ -0,0 +1,109 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.model.enums.FlightStatus;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.repository.projection.FlightLeg;
+import net.coma112.flightbooking.service.ConnectionSearchEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// átszállásos keresés egy 100 000 járatos, egy hétre szóló szintetikus hálózaton (200 reptér, ebből 10 csomópont)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionSearchBenchmark {
+    private static final int FLIGHTS = 100_000;
+    private static final int AIRPORTS = 200;
+    private static final int HUBS = 10;
+    private static final int DAYS = 7;
+    private static final int QUERIES = 16;
+
+    @Param({"1", "2"})
+    private int maxStops;
+
+    private ConnectionSearchEngine engine;
+    private final long[][] queries = new long[QUERIES][2];
+    private LocalDateTime searchDay;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        LocalDateTime firstDay = LocalDate.now().plusDays(1).atStartOfDay();
+        List<FlightLeg> legs = new ArrayList<>(FLIGHTS);
+
+        for (long id = 1; id <= FLIGHTS; id++) {
+            long from = airport(random);
+            long to = airport(random);
+
+            // a járatok fele csomóponthoz köt, mint egy valódi hálózatban
+            if (random.nextBoolean()) {
+                long hub = 1 + random.nextInt(HUBS);
+
+                if (random.nextBoolean()) {
+                    from = hub;
+                } else {
+                    to = hub;
+                }
+            }
+
+            if (from == to) {
+                to = from % AIRPORTS + 1;
+            }
+
+            LocalDateTime departure = firstDay.plusMinutes(random.nextInt(DAYS * 24 * 60));
+            legs.add(new Leg(id, from, to, departure, departure.plusMinutes(60 + random.nextInt(180)), FlightStatus.SCHEDULED));
+        }
+
+        // két nem csomópont között: ide közvetlen járat ritkán van, az átszállásos keresés a teljes ágat bejárja
+        for (long[] query : queries) {
+            query[0] = HUBS + 1 + random.nextInt(AIRPORTS - HUBS);
+            do {
+                query[1] = HUBS + 1 + random.nextInt(AIRPORTS - HUBS);
+            } while (query[1] == query[0]);
+        }
+
+        FlightRepository flightRepository = Fixtures.stub(FlightRepository.class);
+        when(flightRepository.findLegsDepartingAfter(any())).thenReturn(legs);
+
+        engine = new ConnectionSearchEngine(flightRepository);
+        Fixtures.inject(engine, "minConnection", Duration.ofMinutes(45));
+        Fixtures.inject(engine, "maxConnection", Duration.ofHours(12));
+        Fixtures.inject(engine, "maxResults", 50);
+        engine.rebuild();
+
+        searchDay = firstDay.plusDays(3);
+    }
+
+    @Benchmark
+    public List<List<Long>> findConnections() {
+        long[] query = queries[next++ & (QUERIES - 1)];
+        return engine.findConnections(query[0], query[1], searchDay, searchDay.plusDays(1).minusSeconds(1), maxStops);
+    }
+
+    private static long airport(Random random) {
+        return 1 + random.nextInt(AIRPORTS);
+    }
+
+    private record Leg(
+            Long getId,
+            Long getDepartureAirportId,
+            Long getArrivalAirportId,
+            LocalDateTime getDepartureTime,
+            LocalDateTime getArrivalTime,
+            FlightStatus getStatus
+    ) implements FlightLeg {}
+}
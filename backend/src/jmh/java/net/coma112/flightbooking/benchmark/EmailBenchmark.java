@@ -0,0 +1,44 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.service.EmailService;
+import net.coma112.flightbooking.service.QrCodeRenderer;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+// a visszaigazoló levél két drága része: a QR kód PNG és a HTML törzs (SMTP nélkül, így init() és válaszfal nélkül)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailBenchmark {
+    private static final MethodHandle BUILD_EMAIL_HTML = Fixtures.privateMethod(
+            EmailService.class,
+            "buildEmailHtml",
+            MethodType.methodType(byte[].class, BookingResponse.class, boolean.class, String.class)
+    );
+
+    private EmailService emailService;
+    private BookingResponse booking;
+
+    @Setup
+    public void setUp() {
+        emailService = new EmailService(null, new QrCodeRenderer());
+        booking = Fixtures.bookingResponse();
+    }
+
+    @Benchmark
+    public byte[] generateQrCodePng() {
+        return emailService.generateQrCodePng(booking.getBookingReference(), booking.getFlight().getFlightNumber());
+    }
+
+    @Benchmark
+    public byte[] buildEmailHtml() throws Throwable {
+        return (byte[]) BUILD_EMAIL_HTML.invokeExact(emailService, booking, true, "barion");
+    }
+}
@@ -0,0 +1,211 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.dto.AirportDTO;
+import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.dto.FlightResponse;
+import net.coma112.flightbooking.dto.PassengerDTO;
+import net.coma112.flightbooking.model.Airport;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.model.enums.FlightStatus;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.repository.AircraftRepository;
+import net.coma112.flightbooking.repository.AirportRepository;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.repository.SeatRepository;
+import net.coma112.flightbooking.repository.projection.SeatSnapshot;
+import net.coma112.flightbooking.service.PricingService;
+import net.coma112.flightbooking.service.ReferenceDataCache;
+import net.coma112.flightbooking.service.SeatInventory;
+import org.jspecify.annotations.NonNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Közös mintaadatok a benchmarkokhoz, Spring konténer és adatbázis nélkül.
+ * A repository-k helyén Mockito mockok, amelyek csak a benchmarkban hívott metódusokra válaszolnak;
+ * ezek többnyire a betöltéskor futnak le egyszer, a mért ciklusban már nem.
+ */
+final class Fixtures {
+    static final long FLIGHT_ID = 1L;
+    static final Airport BUDAPEST = new Airport(1L, "BUD", "Liszt Ferenc Nemzetközi Repülőtér", "Budapest", "HU");
+    static final Airport LONDON = new Airport(2L, "LHR", "Heathrow", "London", "UK");
+
+    // A320 szerű kabin: 2 first sor, 4 business sor, 24 economy sor
+    private static final int FIRST_ROWS = 2;
+    private static final int BUSINESS_ROWS = 4;
+    private static final int ECONOMY_ROWS = 24;
+    private static final String SEAT_LETTERS = "ABCDEF";
+
+    private Fixtures() {}
+
+    static @NonNull Flight flight() {
+        return flights(1).getFirst();
+    }
+
+    // BUD -> LHR ugyanazon a napon, 10:00-tól 40 percenként (legfeljebb 20 járat), id 1-től
+    static @NonNull List<Flight> flights(int count) {
+        LocalDateTime firstDeparture = LocalDate.now().plusDays(12).atTime(10, 0);
+        List<Flight> flights = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            LocalDateTime departure = firstDeparture.plusMinutes(40L * i);
+            flights.add(new Flight(FLIGHT_ID + i, "W6" + (1234 + i), BUDAPEST, LONDON, null,
+                    departure, departure.plusHours(2), new BigDecimal("30000"), FlightStatus.SCHEDULED));
+        }
+
+        return flights;
+    }
+
+    static @NonNull SeatInventory seatInventory(@NonNull Flight flight) {
+        return seatInventory(List.of(flight));
+    }
+
+    static @NonNull SeatInventory seatInventory(@NonNull List<Flight> flights) {
+        List<SeatSnapshot> seats = new ArrayList<>();
+
+        for (Flight flight : flights) {
+            int row = 1;
+
+            row = addRows(seats, flight, row, FIRST_ROWS, SeatClass.FIRST);
+            row = addRows(seats, flight, row, BUSINESS_ROWS, SeatClass.BUSINESS);
+            addRows(seats, flight, row, ECONOMY_ROWS, SeatClass.ECONOMY);
+        }
+
+        SeatRepository seatRepository = stub(SeatRepository.class);
+        when(seatRepository.findSnapshotsByFlightIds(any())).thenReturn(seats);
+
+        return new SeatInventory(seatRepository, stub(FlightRepository.class), event -> {});
+    }
+
+    static @NonNull PricingService pricingService(@NonNull SeatInventory seatInventory) {
+        return new PricingService(seatInventory, 100_000, "0:1.00,0.60:1.10,0.80:1.25,0.90:1.50");
+    }
+
+    static @NonNull ReferenceDataCache referenceData() {
+        AirportRepository airportRepository = stub(AirportRepository.class);
+        when(airportRepository.findAll()).thenReturn(List.of(BUDAPEST, LONDON));
+        AircraftRepository aircraftRepository = stub(AircraftRepository.class);
+
+        ReferenceDataCache referenceData = new ReferenceDataCache(airportRepository, aircraftRepository);
+        referenceData.init();
+
+        return referenceData;
+    }
+
+    static @NonNull FlightResponse flightResponse() {
+        Flight flight = flight();
+
+        Map<SeatClass, Integer> availableSeats = new EnumMap<>(SeatClass.class);
+        availableSeats.put(SeatClass.ECONOMY, 131);
+        availableSeats.put(SeatClass.BUSINESS, 20);
+        availableSeats.put(SeatClass.FIRST, 9);
+
+        Map<SeatClass, BigDecimal> prices = new EnumMap<>(SeatClass.class);
+        prices.put(SeatClass.ECONOMY, new BigDecimal("30000.00"));
+        prices.put(SeatClass.BUSINESS, new BigDecimal("75000.00"));
+        prices.put(SeatClass.FIRST, new BigDecimal("120000.00"));
+
+        return new FlightResponse(
+                flight.getId(),
+                flight.getFlightNumber(),
+                airportDto(BUDAPEST),
+                airportDto(LONDON),
+                flight.getDepartureTime(),
+                flight.getArrivalTime(),
+                availableSeats,
+                prices
+        );
+    }
+
+    static @NonNull BookingResponse bookingResponse() {
+        PassengerDTO passenger = new PassengerDTO();
+        passenger.setFirstName("Árpád");
+        passenger.setLastName("Kovács");
+        passenger.setEmail("kovacs.arpad@example.hu");
+        passenger.setPhoneNumber("+36301234567");
+        passenger.setPassportNumber("HU1234567");
+        passenger.setDateOfBirth(LocalDate.of(1987, 4, 12));
+
+        return new BookingResponse(
+                "K7Q2ZP",
+                null,
+                flightResponse(),
+                passenger,
+                "12C",
+                new BigDecimal("30000.00"),
+                BookingStatus.CONFIRMED,
+                LocalDateTime.now().minusDays(3)
+        );
+    }
+
+    // privát példány metódus elérése a mért kódhoz, reflexiós hívás nélkül
+    static @NonNull MethodHandle privateMethod(@NonNull Class<?> owner, @NonNull String name, @NonNull MethodType type) {
+        try {
+            return MethodHandles.privateLookupIn(owner, MethodHandles.lookup()).findVirtual(owner, name, type);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Nem érhető el: " + owner.getSimpleName() + "." + name, exception);
+        }
+    }
+
+    // a Spring által @Value-val töltött mező beállítása konténer nélkül; Integer értékkel int mezőt is
+    static void inject(@NonNull Object target, @NonNull String field, @NonNull Object value) {
+        Class<?> type = MethodType.methodType(value.getClass()).unwrap().returnType();
+
+        try {
+            MethodHandles.privateLookupIn(target.getClass(), MethodHandles.lookup())
+                    .findVarHandle(target.getClass(), field, type)
+                    .set(target, value);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Nem állítható: " + target.getClass().getSimpleName() + "." + field, exception);
+        }
+    }
+
+    // stub-only: a hívásokat nem jegyzi fel ellenőrzéshez, így a mért ciklusban hívott mock sem hízik
+    static <T> @NonNull T stub(@NonNull Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private static int addRows(@NonNull List<SeatSnapshot> seats, @NonNull Flight flight, int firstRow, int rows, @NonNull SeatClass seatClass) {
+        for (int row = firstRow; row < firstRow + rows; row++) {
+            for (char letter : SEAT_LETTERS.toCharArray()) {
+                long id = seats.size() + 1;
+                String seatNumber = row + String.valueOf(letter);
+                // nagyjából a kabinok háromnegyede elkelt
+                boolean available = id % 4 == 0;
+
+                seats.add(new Snapshot(id, flight.getId(), flight.getDepartureTime(), seatNumber, seatClass, available, flight.getBasePrice()));
+            }
+        }
+
+        return firstRow + rows;
+    }
+
+    private static @NonNull AirportDTO airportDto(@NonNull Airport airport) {
+        return new AirportDTO(airport.getIataCode(), airport.getName(), airport.getCity(), airport.getCountry());
+    }
+
+    private record Snapshot(
+            Long getId,
+            Long getFlightId,
+            LocalDateTime getDepartureTime,
+            String getSeatNumber,
+            SeatClass getSeatClass,
+            Boolean getAvailable,
+            BigDecimal getPrice
+    ) implements SeatSnapshot {}
+}
@@ -0,0 +1,55 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.dto.FlightResponse;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.service.SeatInventory;
+import net.coma112.flightbooking.service.impl.FlightServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// egy keresési találat összeállítása: reptér DTO-k a törzsadat cache-ből, szabad helyek, három ár
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlightResponseBenchmark {
+    private static final MethodHandle CONVERT_TO_FLIGHT_RESPONSE = Fixtures.privateMethod(
+            FlightServiceImpl.class,
+            "convertToFlightResponse",
+            MethodType.methodType(FlightResponse.class, Flight.class, Map.class)
+    );
+
+    private FlightServiceImpl flightService;
+    private Flight flight;
+    private Map<Long, Map<SeatClass, Integer>> availability;
+
+    @Setup
+    public void setUp() {
+        flight = Fixtures.flight();
+
+        SeatInventory seatInventory = Fixtures.seatInventory(flight);
+        availability = seatInventory.getAvailableSeatCounts(List.of(flight.getId()));
+
+        flightService = new FlightServiceImpl(
+                null,
+                Fixtures.referenceData(),
+                null,
+                seatInventory,
+                null,
+                Fixtures.pricingService(seatInventory)
+        );
+    }
+
+    @Benchmark
+    public FlightResponse convertToFlightResponse() throws Throwable {
+        return (FlightResponse) CONVERT_TO_FLIGHT_RESPONSE.invokeExact(flightService, flight, availability);
+    }
+}
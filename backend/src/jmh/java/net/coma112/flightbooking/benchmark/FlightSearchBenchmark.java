@@ -0,0 +1,82 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.dto.FlightResponse;
+import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.service.ConnectionSearchEngine;
+import net.coma112.flightbooking.service.FlightSearchCache;
+import net.coma112.flightbooking.service.PricingService;
+import net.coma112.flightbooking.service.ReferenceDataCache;
+import net.coma112.flightbooking.service.SeatInventory;
+import net.coma112.flightbooking.service.impl.FlightServiceImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+// egy útvonal napi 20 járata a keresési cache-sel és nélküle; a járat lekérdezés körülfordulási idejét a databaseMicros adja
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlightSearchBenchmark {
+    private static final int FLIGHTS = 20;
+
+    // 0: csak a memóriabeli feldolgozás (készlet, árazás, DTO); 300: egy tipikus lekérdezés helyi hálózaton
+    @Param({"0", "300"})
+    private long databaseMicros;
+
+    // a kikapcsolt cache a flight-search-cache.max-size=0 beállítás: minden keresés betölt, majd azonnal kiürít
+    @Param({"10000", "0"})
+    private long cacheSize;
+
+    private FlightServiceImpl flightService;
+    private FlightSearchRequest request;
+
+    @Setup
+    public void setUp() {
+        List<Flight> flights = Fixtures.flights(FLIGHTS);
+        long databaseNanos = TimeUnit.MICROSECONDS.toNanos(databaseMicros);
+
+        FlightRepository flightRepository = Fixtures.stub(FlightRepository.class);
+        when(flightRepository.findByDepartureAirportIdAndArrivalAirportIdAndDepartureTimeBetween(any(), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    if (databaseNanos > 0) {
+                        LockSupport.parkNanos(databaseNanos);
+                    }
+                    return flights;
+                });
+
+        ReferenceDataCache referenceData = Fixtures.referenceData();
+        SeatInventory seatInventory = Fixtures.seatInventory(flights);
+        PricingService pricingService = Fixtures.pricingService(seatInventory);
+
+        flightService = new FlightServiceImpl(
+                flightRepository,
+                referenceData,
+                new FlightSearchCache(referenceData, cacheSize, Duration.ofSeconds(30)),
+                seatInventory,
+                new ConnectionSearchEngine(flightRepository),
+                pricingService
+        );
+
+        request = new FlightSearchRequest();
+        request.setDepartureAirportCode(Fixtures.BUDAPEST.getIataCode());
+        request.setArrivalAirportCode(Fixtures.LONDON.getIataCode());
+        request.setDepartureDate(flights.getFirst().getDepartureTime().toLocalDate());
+        request.setPassengers(1);
+    }
+
+    @Benchmark
+    public List<FlightResponse> searchFlights() {
+        return flightService.searchFlights(request);
+    }
+}
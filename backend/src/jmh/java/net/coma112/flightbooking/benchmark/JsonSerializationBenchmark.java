@@ -0,0 +1,57 @@
+package net.coma112.flightbooking.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.coma112.flightbooking.config.JacksonConfig;
+import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.dto.FlightResponse;
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A válasz DTO-k szerializálása.
+ * A HTTP válaszokat a Spring Boot 4 Jackson 3 JsonMapper-rel írja, a JacksonConfig ObjectMapper-e (Jackson 2)
+ * a kódból közvetlenül használt mapper; mindkettőt mérjük.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    private ObjectMapper objectMapper;
+    private JsonMapper jsonMapper;
+    private FlightResponse flight;
+    private BookingResponse booking;
+
+    @Setup
+    public void setUp() {
+        objectMapper = new JacksonConfig().objectMapper();
+        jsonMapper = JsonMapper.builder().build();
+        flight = Fixtures.flightResponse();
+        booking = Fixtures.bookingResponse();
+    }
+
+    @Benchmark
+    public byte[] flightResponseJackson2() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(flight);
+    }
+
+    @Benchmark
+    public byte[] flightResponseJackson3() {
+        return jsonMapper.writeValueAsBytes(flight);
+    }
+
+    @Benchmark
+    public byte[] bookingResponseJackson2() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(booking);
+    }
+
+    @Benchmark
+    public byte[] bookingResponseJackson3() {
+        return jsonMapper.writeValueAsBytes(booking);
+    }
+}
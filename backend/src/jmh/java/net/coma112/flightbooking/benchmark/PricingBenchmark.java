@@ -0,0 +1,49 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.service.PricingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// egy árajánlat: ártábla a cache-ből, telítettség a memóriabeli készletből
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+    @Param({"ECONOMY", "BUSINESS", "FIRST"})
+    private SeatClass seatClass;
+
+    private PricingService pricingService;
+    private Flight flight;
+    private LocalDateTime bookingDate;
+
+    @Setup
+    public void setUp() {
+        flight = Fixtures.flight();
+        pricingService = Fixtures.pricingService(Fixtures.seatInventory(flight));
+        bookingDate = LocalDateTime.now();
+    }
+
+    @Benchmark
+    public BigDecimal calculatePrice() {
+        return pricingService.calculatePrice(flight, seatClass, bookingDate);
+    }
+
+    @Benchmark
+    public long quoteMinor() {
+        return pricingService.quoteMinor(flight, seatClass, bookingDate);
+    }
+
+    @Benchmark
+    public Map<SeatClass, BigDecimal> quoteAll() {
+        return pricingService.quoteAll(flight, bookingDate);
+    }
+}
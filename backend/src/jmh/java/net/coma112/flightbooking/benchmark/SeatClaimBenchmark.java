@@ -0,0 +1,164 @@
+package net.coma112.flightbooking.benchmark;
+
+import net.coma112.flightbooking.exception.BusinessException;
+import net.coma112.flightbooking.service.SeatInventory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 200 szál versenyez ugyanazért az ülésért. A nyertes egy rövid ideig tartja (a foglalási tranzakció többi része),
+ * majd felszabadítja. Ha a tartás alatt egy másik szál is nyer, az hibásan kiadott foglalás (wronglyGranted).
+ * - readCheckWrite: a régi út, SELECT után feltétel nélküli UPDATE (H2, READ COMMITTED)
+ * - conditionalUpdate: UPDATE ... WHERE is_available = TRUE, a nyertest az érintett sorok száma adja
+ * - inventoryClaim: a memóriabeli készlet CAS foglalása, ami a feltételes UPDATE elé szűr
+ * A wronglyGranted alsó becslés: csak az egymást időben átfedő kiadásokat látja.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(200)
+public class SeatClaimBenchmark {
+    private static final String URL = "jdbc:h2:mem:seat-claim;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=60000";
+    private static final long SEAT_ID = 1L;
+    // a Fixtures kabinjában szabad ülés (minden negyedik id szabad, az 1D a 4-es)
+    private static final String FREE_SEAT = "1D";
+    private static final long HOLD_TOKENS = 2_000;
+
+    // az ülést éppen birtokló szálak száma; helyes foglalásnál legfeljebb 1
+    private final AtomicInteger holders = new AtomicInteger();
+
+    private Connection schema;
+    private SeatInventory seatInventory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        schema = DriverManager.getConnection(URL);
+
+        try (Statement statement = schema.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS seats (id BIGINT PRIMARY KEY, is_available BOOLEAN NOT NULL)");
+            statement.execute("MERGE INTO seats KEY (id) VALUES (" + SEAT_ID + ", TRUE)");
+        }
+
+        seatInventory = Fixtures.seatInventory(Fixtures.flight());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        schema.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Claims {
+        public long granted;
+        public long wronglyGranted;
+
+        private Connection connection;
+
+        @Setup(Level.Trial)
+        public void open() throws SQLException {
+            connection = DriverManager.getConnection(URL);
+        }
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            granted = 0;
+            wronglyGranted = 0;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public void readCheckWrite(Claims claims) throws SQLException {
+        Connection connection = claims.connection;
+        connection.setAutoCommit(false);
+
+        try {
+            boolean available;
+            try (PreparedStatement select = connection.prepareStatement("SELECT is_available FROM seats WHERE id = ?")) {
+                select.setLong(1, SEAT_ID);
+                try (ResultSet result = select.executeQuery()) {
+                    available = result.next() && result.getBoolean(1);
+                }
+            }
+
+            if (!available) {
+                connection.rollback();
+                return;
+            }
+
+            try (PreparedStatement update = connection.prepareStatement("UPDATE seats SET is_available = FALSE WHERE id = ?")) {
+                update.setLong(1, SEAT_ID);
+                update.executeUpdate();
+            }
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(true);
+        }
+
+        hold(claims);
+        release(connection);
+    }
+
+    @Benchmark
+    public void conditionalUpdate(Claims claims) throws SQLException {
+        Connection connection = claims.connection;
+
+        try (PreparedStatement claim = connection.prepareStatement("UPDATE seats SET is_available = FALSE WHERE id = ? AND is_available = TRUE")) {
+            claim.setLong(1, SEAT_ID);
+
+            if (claim.executeUpdate() == 0) {
+                return;
+            }
+        }
+
+        hold(claims);
+        release(connection);
+    }
+
+    @Benchmark
+    public void inventoryClaim(Claims claims) {
+        try {
+            seatInventory.claim(Fixtures.FLIGHT_ID, FREE_SEAT);
+        } catch (BusinessException exception) {
+            return;
+        }
+
+        hold(claims);
+        seatInventory.release(Fixtures.FLIGHT_ID, FREE_SEAT);
+    }
+
+    private void hold(Claims claims) {
+        claims.granted++;
+
+        if (holders.incrementAndGet() > 1) {
+            claims.wronglyGranted++;
+        }
+
+        Blackhole.consumeCPU(HOLD_TOKENS);
+        holders.decrementAndGet();
+    }
+
+    private static void release(Connection connection) throws SQLException {
+        try (PreparedStatement release = connection.prepareStatement("UPDATE seats SET is_available = TRUE WHERE id = ?")) {
+            release.setLong(1, SEAT_ID);
+            release.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package net.coma112.flightbooking.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import net.coma112.flightbooking.model.Aircraft;
+import net.coma112.flightbooking.model.Airport;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.Seat;
+import net.coma112.flightbooking.model.enums.FlightStatus;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import org.hibernate.jpa.HibernatePersistenceConfiguration;
+import org.jspecify.annotations.NonNull;
+import org.openjdk.jmh.annotations.*;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static org.mockito.Mockito.when;
+
+/**
+ * Egy A380 járat 555 ülésének beszúrása egy tranzakcióban, Spring nélkül, közvetlenül Hibernate-tel és beágyazott H2-vel.
+ * A batchSize=1 a kötegelés előtti út (soronként egy INSERT), az 50 az alkalmazás beállítása.
+ * A statements számláló a JDBC szinten kiküldött utasításokat (lekérdezés, INSERT, köteg) számolja,
+ * a szekvencia hívásokkal együtt; a flights számlálóval osztva egy járatra jutó érték.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatInsertBenchmark {
+    private static final String URL = "jdbc:h2:mem:seat-insert;DB_CLOSE_DELAY=-1";
+    // első, business és economy kabin, összesen 555 ülés
+    private static final int FIRST_SEATS = 14;
+    private static final int BUSINESS_SEATS = 76;
+    private static final int ECONOMY_SEATS = 465;
+    private static final String SEAT_LETTERS = "ABCDEFGHJK";
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeBatch", "executeLargeUpdate", "executeLargeBatch");
+
+    @Param({"1", "50"})
+    private int batchSize;
+
+    private final LongAdder executed = new LongAdder();
+
+    private EntityManagerFactory entityManagerFactory;
+    private Long flightId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        entityManagerFactory = new HibernatePersistenceConfiguration("seat-insert")
+                .managedClasses(Airport.class, Aircraft.class, Flight.class, Seat.class)
+                .property("hibernate.connection.datasource", countingDataSource())
+                .property("jakarta.persistence.schema-generation.database.action", "drop-and-create")
+                .property("hibernate.jdbc.batch_size", batchSize)
+                .property("hibernate.order_inserts", true)
+                // a FlightChangeListener Spring bean, itt nincs kinek publikálnia
+                .property("hibernate.jpa_callbacks.enabled", false)
+                .createEntityManagerFactory();
+
+        inTransaction(entityManager -> {
+            Airport departure = new Airport(null, "BUD", "Liszt Ferenc Nemzetközi Repülőtér", "Budapest", "HU");
+            Airport arrival = new Airport(null, "DXB", "Dubai International", "Dubai", "AE");
+            LocalDateTime departureTime = LocalDate.now().plusDays(30).atTime(14, 0);
+            Flight flight = new Flight(null, "EK112", departure, arrival, null, departureTime, departureTime.plusHours(6),
+                    new BigDecimal("120000"), FlightStatus.SCHEDULED);
+
+            entityManager.persist(departure);
+            entityManager.persist(arrival);
+            entityManager.persist(flight);
+            flightId = flight.getId();
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        entityManagerFactory.close();
+    }
+
+    // a táblát iterációnként ürítjük, hogy ne nőjön a mérés alatt
+    @TearDown(Level.Iteration)
+    public void deleteSeats() {
+        inTransaction(entityManager -> entityManager.createQuery("delete from Seat").executeUpdate());
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Statements {
+        public long statements;
+        public long flights;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            flights = 0;
+        }
+    }
+
+    @Benchmark
+    public void insertSeats(@NonNull Statements counters) {
+        long before = executed.sum();
+
+        inTransaction(entityManager -> {
+            Flight flight = entityManager.getReference(Flight.class, flightId);
+            int row = 1;
+
+            row = persistRows(entityManager, flight, row, FIRST_SEATS, 4, SeatClass.FIRST);
+            row = persistRows(entityManager, flight, row, BUSINESS_SEATS, 6, SeatClass.BUSINESS);
+            persistRows(entityManager, flight, row, ECONOMY_SEATS, 10, SeatClass.ECONOMY);
+        });
+
+        counters.statements += executed.sum() - before;
+        counters.flights++;
+    }
+
+    private static int persistRows(@NonNull EntityManager entityManager, @NonNull Flight flight, int firstRow, int seats, int seatsPerRow, @NonNull SeatClass seatClass) {
+        for (int i = 0; i < seats; i++) {
+            String seatNumber = (firstRow + i / seatsPerRow) + String.valueOf(SEAT_LETTERS.charAt(i % seatsPerRow));
+            entityManager.persist(new Seat(null, flight, seatNumber, seatClass, true, flight.getBasePrice()));
+        }
+
+        return firstRow + (seats + seatsPerRow - 1) / seatsPerRow;
+    }
+
+    private void inTransaction(@NonNull Consumer<EntityManager> work) {
+        try (EntityManager entityManager = entityManagerFactory.createEntityManager()) {
+            entityManager.getTransaction().begin();
+            work.accept(entityManager);
+            entityManager.getTransaction().commit();
+        }
+    }
+
+    // a H2 kapcsolat köré egy proxy, ami minden kiküldött utasítást (egy köteget egyszer) megszámol
+    private @NonNull DataSource countingDataSource() {
+        DataSource dataSource = Fixtures.stub(DataSource.class);
+
+        try {
+            when(dataSource.getConnection()).thenAnswer(invocation -> counting(Connection.class, DriverManager.getConnection(URL)));
+        } catch (SQLException exception) {
+            throw new IllegalStateException(exception);
+        }
+
+        return dataSource;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> @NonNull T counting(@NonNull Class<T> type, @NonNull T target) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (EXECUTE_METHODS.contains(method.getName())) {
+                executed.increment();
+            }
+
+            Object result = invoke(method, target, args);
+
+            if (result instanceof PreparedStatement statement && method.getName().startsWith("prepare")) {
+                return counting(PreparedStatement.class, statement);
+            }
+
+            if (result instanceof Statement statement && method.getName().equals("createStatement")) {
+                return counting(Statement.class, statement);
+            }
+
+            return result;
+        });
+    }
+
+    private static Object invoke(@NonNull Method method, @NonNull Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package net.coma112.flightbooking.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import net.coma112.flightbooking.service.Bulkhead;
+import net.coma112.flightbooking.service.EmailOutboxDispatcher;
+import net.coma112.flightbooking.service.EmailService;
+import net.coma112.flightbooking.service.FlightSearchCache;
+import net.coma112.flightbooking.service.PaymentEventConsumer;
+import net.coma112.flightbooking.service.SeatHoldSweeper;
+import net.coma112.flightbooking.service.SeatInventory;
+import net.coma112.flightbooking.service.StripeGateway;
+import org.jspecify.annotations.NonNull;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A komponensek saját számlálóinak kivezetése Micrometer mérőszámokká (/actuator/prometheus).
+ * A számlálók a komponensekben maradnak, itt csak lekérdező függvényeket regisztrálunk, így a mért kód
+ * nem függ a Micrometertől, és lekérdezéskor sem kell semmit szinkronizálni.
+ * A kimenő hívások és a foglalás időzítői a metódusokon lévő @Timed annotációkból jönnek, az email küldésé
+ * (ahol a sikeres és a sikertelen ágat külön mérjük) közvetlenül a MeterRegistry-n keresztül,
+ * a kapcsolatkészlet várakozási ideje (hikaricp.connections.acquire) a Spring Boot automatikus kötéséből.
+ */
+@Configuration
+public class MetricsConfig {
+    @Bean
+    public MeterBinder seatInventoryMetrics(SeatInventory seatInventory) {
+        return registry -> {
+            FunctionCounter.builder("seat.claim.conflicts", seatInventory, SeatInventory::getClaimConflicts)
+                    .description("Foglalt helyre érkezett foglalási kísérletek")
+                    .tag("source", "memory")
+                    .register(registry);
+
+            FunctionCounter.builder("seat.claim.conflicts", seatInventory, SeatInventory::getDatabaseClaimConflicts)
+                    .description("Foglalt helyre érkezett foglalási kísérletek")
+                    .tag("source", "database")
+                    .register(registry);
+
+            FunctionCounter.builder("seat.inventory.reconciled.flights", seatInventory, SeatInventory::getReconciledFlights)
+                    .description("Az adatbázistól eltérő, újratöltött járatok")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(StripeGateway stripeGateway, EmailService emailService) {
+        return registry -> {
+            bindBulkhead(registry, stripeGateway.getBulkhead());
+            bindBulkhead(registry, emailService.getBulkhead());
+        };
+    }
+
+    @Bean
+    public MeterBinder backgroundJobMetrics(SeatHoldSweeper seatHoldSweeper, EmailOutboxDispatcher emailOutboxDispatcher, PaymentEventConsumer paymentEventConsumer) {
+        return registry -> {
+            FunctionCounter.builder("seat.hold.released", seatHoldSweeper, SeatHoldSweeper::getReleasedHolds)
+                    .description("Lejárt és felszabadított helyfoglalások")
+                    .register(registry);
+
+            FunctionCounter.builder("seat.hold.sweeps", seatHoldSweeper, SeatHoldSweeper::getSweepRuns)
+                    .register(registry);
+
+            FunctionCounter.builder("seat.hold.payment.intents.cancelled", seatHoldSweeper, SeatHoldSweeper::getCancelledIntents)
+                    .register(registry);
+
+            FunctionCounter.builder("seat.hold.payment.intents.cancel.failed", seatHoldSweeper, SeatHoldSweeper::getFailedIntentCancellations)
+                    .register(registry);
+
+            // a sor mélysége egy COUNT lekérdezés, csak scrape-kor fut le
+            Gauge.builder("email.outbox.pending", emailOutboxDispatcher, EmailOutboxDispatcher::getQueueDepth)
+                    .description("Kiküldésre váró emailek")
+                    .register(registry);
+
+            // a küldés időzítője (email.outbox.send) és a hibaszámláló (email.outbox.failed) a dispatcherben regisztrál
+
+            Gauge.builder("payment.events.pending", paymentEventConsumer, PaymentEventConsumer::getQueueDepth)
+                    .description("Feldolgozásra váró fizetési események")
+                    .register(registry);
+
+            FunctionCounter.builder("payment.events.processed", paymentEventConsumer, PaymentEventConsumer::getProcessedEvents)
+                    .register(registry);
+
+            FunctionCounter.builder("payment.bookings.confirmed", paymentEventConsumer, PaymentEventConsumer::getConfirmedBookings)
+                    .register(registry);
+
+            // riasztás: > 0 esetén van kifizetett, de lejárt vagy lemondott foglalás, amit vissza kell téríteni
+            Gauge.builder("payment.events.orphaned", paymentEventConsumer, PaymentEventConsumer::getOrphanedQueueDepth)
+                    .description("Lejárt vagy lemondott foglalásra érkezett, visszatérítésre váró fizetések")
+                    .register(registry);
+
+            FunctionCounter.builder("payment.events.orphaned.received", paymentEventConsumer, PaymentEventConsumer::getOrphanedPayments)
+                    .register(registry);
+
+            // riasztás: > 0 esetén a beszedett összeg vagy pénznem eltért a foglalás árától, a foglalás nem erősödött meg
+            Gauge.builder("payment.events.amount.mismatch", paymentEventConsumer, PaymentEventConsumer::getAmountMismatchQueueDepth)
+                    .description("A foglalás árától eltérő összegű, ellenőrzésre váró fizetések")
+                    .register(registry);
+
+            FunctionCounter.builder("payment.events.amount.mismatch.received", paymentEventConsumer, PaymentEventConsumer::getMismatchedPayments)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder flightSearchCacheMetrics(FlightSearchCache flightSearchCache) {
+        return registry -> {
+            Gauge.builder("flight.search.cache.hit.ratio", flightSearchCache, FlightSearchCache::getHitRatio)
+                    .register(registry);
+
+            Gauge.builder("flight.search.cache.size", flightSearchCache, FlightSearchCache::getSize)
+                    .register(registry);
+        };
+    }
+
+    private static void bindBulkhead(@NonNull MeterRegistry registry, @NonNull Bulkhead bulkhead) {
+        String name = bulkhead.getName();
+
+        FunctionCounter.builder("bulkhead.calls", bulkhead, Bulkhead::getSuccessfulCalls)
+                .tags("name", name, "outcome", "success")
+                .register(registry);
+
+        FunctionCounter.builder("bulkhead.calls", bulkhead, Bulkhead::getFailedCalls)
+                .tags("name", name, "outcome", "failure")
+                .register(registry);
+
+        FunctionCounter.builder("bulkhead.calls", bulkhead, Bulkhead::getRejectedCalls)
+                .tags("name", name, "outcome", "rejected")
+                .register(registry);
+
+        FunctionCounter.builder("bulkhead.calls", bulkhead, Bulkhead::getTimedOutCalls)
+                .tags("name", name, "outcome", "timeout")
+                .register(registry);
+
+        Gauge.builder("bulkhead.active", bulkhead, Bulkhead::getActiveCalls)
+                .tag("name", name)
+                .register(registry);
+
+        Gauge.builder("bulkhead.max.concurrency", bulkhead, Bulkhead::getMaxConcurrency)
+                .tag("name", name)
+                .register(registry);
+
+        TimeGauge.builder("bulkhead.call.latency.max", bulkhead, TimeUnit.MILLISECONDS, Bulkhead::getMaxCallLatencyMillis)
+                .tag("name", name)
+                .register(registry);
+    }
+}
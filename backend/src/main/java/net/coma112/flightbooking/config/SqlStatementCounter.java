@@ -0,0 +1,24 @@
+package net.coma112.flightbooking.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Megszámolja az aktuális szálon a Hibernate által előkészített SQL utasításokat.
+ * A hibernate.session_factory.statement_inspector beállítás példányosítja; a számláló szálanként folyamatosan nő,
+ * a mérés két kiolvasás különbsége (így egymásba ágyazott mérések sem zavarják egymást).
+ * Kérésenként egy (virtuális) szál fut, így a kérés alatti különbség a kérés utasításait adja;
+ * az aszinkron (NDJSON) válaszok másik szálon futó lekérdezései ide nem számítanak bele.
+ */
+public class SqlStatementCounter implements StatementInspector {
+    private static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.get()[0]++;
+        return sql;
+    }
+
+    public static long current() {
+        return STATEMENTS.get()[0];
+    }
+}
@@ -0,0 +1,47 @@
+package net.coma112.flightbooking.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Kérésenként rögzíti, hány SQL utasítást futtatott a kérés (http.server.requests.sql.statements),
+ * végpontonként (a kérés mintája, nem a konkrét URL) bontva, hogy egy N+1 lekérdezés a metrikákon is látsszon.
+ */
+@Component
+@RequiredArgsConstructor
+public class SqlStatementMetricsFilter extends OncePerRequestFilter {
+    private static final String METRIC_NAME = "http.server.requests.sql.statements";
+
+    private final MeterRegistry meterRegistry;
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response, @NonNull FilterChain filterChain) throws ServletException, IOException {
+        long before = SqlStatementCounter.current();
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+
+            // minta nélkül (404, statikus tartalom) nem rögzítünk, különben minden URL külön idősor lenne
+            if (pattern != null) {
+                DistributionSummary.builder(METRIC_NAME)
+                        .description("Egy kérés alatt futtatott SQL utasítások")
+                        .tags("method", request.getMethod(), "uri", pattern.toString())
+                        .register(meterRegistry)
+                        .record(SqlStatementCounter.current() - before);
+            }
+        }
+    }
+}
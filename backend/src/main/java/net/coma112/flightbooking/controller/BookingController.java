@@ -2,12 +2,18 @@ package net.coma112.flightbooking.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import net.coma112.flightbooking.dto.BookingPage;
 import net.coma112.flightbooking.dto.BookingRequest;
 import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.dto.GroupBookingRequest;
+import net.coma112.flightbooking.dto.GroupBookingResponse;
+import net.coma112.flightbooking.model.enums.BookingStatus;
 import net.coma112.flightbooking.service.BookingService;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/bookings")
@@ -25,6 +31,15 @@ public class BookingController {
                 .body(response);
     }
 
+    @PostMapping("/group")
+    public ResponseEntity<GroupBookingResponse> createGroupBooking(@Valid @RequestBody GroupBookingRequest request) {
+        GroupBookingResponse response = bookingService.createGroupBooking(request);
+
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(response);
+    }
+
     @GetMapping("/{reference}")
     public ResponseEntity<BookingResponse> getBooking(@PathVariable String reference) {
 
@@ -33,6 +48,44 @@ public class BookingController {
         return ResponseEntity.ok(response);
     }
 
+    // utas foglalási előzményei, legújabb elöl; a következő oldalhoz a válasz nextCursor értékét kell visszaküldeni
+    @GetMapping("/passenger/{email}")
+    public ResponseEntity<BookingPage> getBookingsByPassenger(
+            @PathVariable String email,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        BookingPage response = bookingService.getBookingsByPassenger(email, cursor, size);
+
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping("/status/{status}")
+    public ResponseEntity<BookingPage> getBookingsByStatus(
+            @PathVariable BookingStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        BookingPage response = bookingService.getBookingsByStatus(status, cursor, size);
+
+        return ResponseEntity.ok(response);
+    }
+
+    // a teljes lista soronként egy JSON objektummal (NDJSON), lapozás nélkül
+    @GetMapping(value = "/passenger/{email}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBookingsByPassenger(@PathVariable String email) {
+        StreamingResponseBody body = output -> bookingService.streamBookingsByPassenger(email, output);
+
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping(value = "/status/{status}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamBookingsByStatus(@PathVariable BookingStatus status) {
+        StreamingResponseBody body = output -> bookingService.streamBookingsByStatus(status, output);
+
+        return ResponseEntity.ok(body);
+    }
+
     @PutMapping("/{reference}/confirm")
     public ResponseEntity<BookingResponse> confirmBooking(@PathVariable String reference) {
 
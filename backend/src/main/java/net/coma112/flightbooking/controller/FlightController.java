@@ -2,8 +2,12 @@ package net.coma112.flightbooking.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import net.coma112.flightbooking.dto.FareCalendarRequest;
+import net.coma112.flightbooking.dto.FareCalendarResponse;
 import net.coma112.flightbooking.dto.FlightResponse;
 import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.dto.ItineraryResponse;
+import net.coma112.flightbooking.dto.SeatMapResponse;
 import net.coma112.flightbooking.model.Seat;
 import net.coma112.flightbooking.model.enums.SeatClass;
 import net.coma112.flightbooking.service.FlightService;
@@ -27,6 +31,22 @@ public class FlightController {
         return ResponseEntity.ok(flights);
     }
 
+    @PostMapping("/search/connections")
+    public ResponseEntity<List<ItineraryResponse>> searchConnections(@Valid @RequestBody FlightSearchRequest request) {
+
+        List<ItineraryResponse> itineraries = flightService.searchConnections(request);
+
+        return ResponseEntity.ok(itineraries);
+    }
+
+    @PostMapping("/calendar")
+    public ResponseEntity<FareCalendarResponse> getFareCalendar(@Valid @RequestBody FareCalendarRequest request) {
+
+        FareCalendarResponse calendar = flightService.getFareCalendar(request);
+
+        return ResponseEntity.ok(calendar);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<FlightResponse> getFlightById(@PathVariable Long id) {
         FlightResponse flight = flightService.getFlightById(id);
@@ -41,4 +61,13 @@ public class FlightController {
 
         return ResponseEntity.ok(seats);
     }
+
+    // a teljes kabin tömören, a járat adataival együtt egyszer
+    @GetMapping("/{id}/seat-map")
+    public ResponseEntity<SeatMapResponse> getSeatMap(@PathVariable Long id) {
+
+        SeatMapResponse seatMap = flightService.getSeatMap(id);
+
+        return ResponseEntity.ok(seatMap);
+    }
 }
\ No newline at end of file
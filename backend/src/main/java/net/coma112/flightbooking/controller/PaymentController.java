@@ -1,21 +1,17 @@
 package net.coma112.flightbooking.controller;
 
-import com.stripe.Stripe;
 import com.stripe.exception.StripeException;
-import com.stripe.model.PaymentIntent;
-import com.stripe.param.PaymentIntentCreateParams;
-import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import net.coma112.flightbooking.dto.BookingResponse;
 import net.coma112.flightbooking.dto.PaymentConfirmRequest;
 import net.coma112.flightbooking.dto.PaymentIntentRequest;
 import net.coma112.flightbooking.dto.PaymentIntentResponse;
 import net.coma112.flightbooking.service.BookingService;
-import net.coma112.flightbooking.service.EmailService;
-import org.springframework.beans.factory.annotation.Value;
+import net.coma112.flightbooking.service.PaymentService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -27,57 +23,37 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class PaymentController {
     private final BookingService bookingService;
-    private final EmailService emailService;
-
-    @Value("${stripe.secret.key:sk_test_placeholder}")
-    private String stripeSecretKey;
-
-    @PostConstruct
-    public void init() {
-        Stripe.apiKey = stripeSecretKey;
-    }
+    private final PaymentService paymentService;
 
     @PostMapping("/create-intent")
     public ResponseEntity<PaymentIntentResponse> createPaymentIntent(@RequestBody PaymentIntentRequest request) {
         try {
-            long amountInHuf = request.getAmount().longValue();
-
-            PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
-                    .setAmount(amountInHuf * 100L) // stripe cent-et használ
-                    .setCurrency("huf")
-                    .setDescription("SkyBooker repülőjegy foglalás: " + request.getBookingReference())
-                    .putMetadata("bookingReference", request.getBookingReference())
-                    .putMetadata("flightNumber", request.getFlightNumber() != null ? request.getFlightNumber() : "")
-                    .setAutomaticPaymentMethods(
-                            PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
-                                    .setEnabled(true)
-                                    .build()
-                    )
-                    .build();
-
-            PaymentIntent intent = PaymentIntent.create(params);
-
-            return ResponseEntity.ok(new PaymentIntentResponse(
-                    intent.getId(),
-                    intent.getClientSecret(),
-                    intent.getStatus(),
-                    amountInHuf
-            ));
+            // ugyanarra a foglalásra mindig ugyanaz a szándék; túlterhelt vagy lassú Stripe esetén
+            // ServiceUnavailableException (503), a kérés szála nem ragad be
+            return ResponseEntity.ok(paymentService.createPaymentIntent(request.getBookingReference()));
         } catch (StripeException exception) {
+            // az összeg itt is a foglalásból jön, a kérés amount mezője elhagyható
             return ResponseEntity.ok(new PaymentIntentResponse(
                     "pi_test_mock_" + System.currentTimeMillis(),
                     "pi_test_mock_secret_" + System.currentTimeMillis(),
                     "requires_payment_method",
-                    request.getAmount().longValue()
+                    paymentService.getBookingAmount(request.getBookingReference())
             ));
         }
     }
 
+    // Stripe webhook: ellenőrzött aláírás után csak sorba állítjuk, a megerősítés kötegekben, a háttérben történik
+    @PostMapping("/webhook")
+    public ResponseEntity<Void> webhook(@RequestBody String payload, @RequestHeader(value = "Stripe-Signature", required = false) String signature) {
+        paymentService.receiveWebhook(payload, signature);
+
+        return ResponseEntity.ok().build();
+    }
+
     @PostMapping("/confirm")
     public ResponseEntity<Map<String, Object>> confirmPayment(@RequestBody PaymentConfirmRequest request) {
         try {
-            BookingResponse booking = bookingService.confirmBooking(request.getBookingReference());
-            emailService.sendBookingConfirmationEmail(booking, request.getPaymentMethod());
+            BookingResponse booking = bookingService.confirmBooking(request.getBookingReference(), request.getPaymentMethod());
 
             Map<String, Object> response = new HashMap<>();
 
@@ -0,0 +1,16 @@
+package net.coma112.flightbooking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingPage {
+    private List<BookingResponse> bookings;
+    // a következő oldal kurzora, null ha ez volt az utolsó oldal
+    private String nextCursor;
+}
@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class BookingResponse {
     private String bookingReference;
+    private String groupReference;
     private FlightResponse flight;
     private PassengerDTO passenger;
     private String seatNumber;
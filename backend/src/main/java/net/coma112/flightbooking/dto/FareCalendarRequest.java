@@ -0,0 +1,27 @@
+package net.coma112.flightbooking.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.Data;
+
+import java.time.LocalDate;
+
+@Data
+public class FareCalendarRequest {
+    @NotBlank(message = "Muszáj ez!!!")
+    @Size(min = 3, max = 3, message = "CSAK 3 hosszú!")
+    private String departureAirportCode;
+
+    @NotBlank(message = "Muszáj ez!!!")
+    @Size(min = 3, max = 3, message = "CSAK 3 hosszú!")
+    private String arrivalAirportCode;
+
+    @NotNull(message = "Muszáj ez!!!")
+    @FutureOrPresent(message = "Jövőbe lássál már")
+    private LocalDate startDate;
+
+    // a "days": null felülírná az alapértelmezést
+    @NotNull(message = "Muszáj ez!!!")
+    @Min(value = 1, message = "legalább 1 nap")
+    @Max(value = 60, message = "max 60 nap he!!!")
+    private Integer days = 7;
+}
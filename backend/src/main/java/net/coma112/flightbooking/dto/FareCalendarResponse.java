@@ -0,0 +1,29 @@
+package net.coma112.flightbooking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.coma112.flightbooking.model.enums.SeatClass;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FareCalendarResponse {
+    private String departureAirportCode;
+    private String arrivalAirportCode;
+    private List<Day> days;
+
+    // egy nap legolcsóbb, még foglalható ára osztályonként (ha nincs járat/hely, az osztály hiányzik)
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Day {
+        private LocalDate date;
+        private Map<SeatClass, BigDecimal> lowestPrices;
+    }
+}
@@ -0,0 +1,27 @@
+package net.coma112.flightbooking.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import net.coma112.flightbooking.model.enums.SeatClass;
+
+import java.util.List;
+
+@Data
+public class GroupBookingRequest {
+    @NotNull(message = "Muszáj ez!!!")
+    private Long flightId;
+
+    @Valid
+    @NotEmpty(message = "Muszáj ez!!!")
+    @Size(max = 9, message = "max 9 he!!!")
+    private List<PassengerDTO> passengers;
+
+    // vagy konkrét ülések (utasonként egy, azonos sorrendben)...
+    private List<String> seatNumbers;
+
+    // ...vagy bármely N egymás melletti hely ebben az osztályban
+    private SeatClass seatClass;
+}
@@ -0,0 +1,17 @@
+package net.coma112.flightbooking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupBookingResponse {
+    private String groupReference;
+    private List<BookingResponse> bookings;
+    private BigDecimal totalPrice;
+}
@@ -0,0 +1,23 @@
+package net.coma112.flightbooking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.coma112.flightbooking.model.enums.SeatClass;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItineraryResponse {
+    private List<FlightResponse> legs;
+    private int stops;
+    private LocalDateTime departureTime;
+    private LocalDateTime arrivalTime;
+    private long totalDurationMinutes;
+    private Map<SeatClass, BigDecimal> totalPrices;
+}
@@ -0,0 +1,40 @@
+package net.coma112.flightbooking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.coma112.flightbooking.model.enums.SeatClass;
+
+import java.util.List;
+
+/**
+ * A teljes kabin egy válaszban.
+ * A járat adatai (szabad helyek és árak osztályonként) egyszer, a flight mezőben jönnek;
+ * az ülések osztályonként egy sor x oszlop rácsban, futáshossz kódolt stringként.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatMapResponse {
+    private FlightResponse flight;
+    private List<Cabin> cabins;
+
+    // a "<sor><betű>" formátumba nem illő ülésszámok, amiket a rács nem tud ábrázolni
+    private List<String> otherAvailableSeats;
+
+    /**
+     * Egy osztály rácsa: a firstRow..lastRow sorok és a columns oszlopok, soronként balról jobbra.
+     * A seats cellánként egy jel futáshossz kódolva ("<darab><jel>"): a = szabad, x = foglalt, - = nincs ülés,
+     * pl. "4a2x6-" = 4 szabad, 2 foglalt, 6 üres cella.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Cabin {
+        private SeatClass seatClass;
+        private int firstRow;
+        private int lastRow;
+        private String columns;
+        private String seats;
+    }
+}
@@ -0,0 +1,32 @@
+package net.coma112.flightbooking.event;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import net.coma112.flightbooking.model.Flight;
+import org.jspecify.annotations.NonNull;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener a Flight entitáshoz: minden változásnál FlightChangedEvent-et küld.
+ * Spring bean, a Hibernate a Spring konténerből kéri el.
+ */
+@Component
+@RequiredArgsConstructor
+public class FlightChangeListener {
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onFlightChanged(@NonNull Flight flight) {
+        eventPublisher.publishEvent(new FlightChangedEvent(
+                flight.getId(),
+                flight.getDepartureAirport() != null ? flight.getDepartureAirport().getId() : null,
+                flight.getArrivalAirport() != null ? flight.getArrivalAirport().getId() : null,
+                flight.getDepartureTime() != null ? flight.getDepartureTime().toLocalDate() : null
+        ));
+    }
+}
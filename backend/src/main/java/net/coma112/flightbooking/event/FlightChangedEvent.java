@@ -0,0 +1,6 @@
+package net.coma112.flightbooking.event;
+
+import java.time.LocalDate;
+
+// egy járat létrejött, módosult vagy törlődött; az útvonal és a nap alapján tudjuk, mely keresések érintettek
+public record FlightChangedEvent(Long flightId, Long departureAirportId, Long arrivalAirportId, LocalDate departureDate) {}
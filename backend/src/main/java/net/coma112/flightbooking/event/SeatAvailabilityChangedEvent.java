@@ -0,0 +1,4 @@
+package net.coma112.flightbooking.event;
+
+// egy járat szabad helyeinek száma megváltozott (foglalás, lemondás, lejárt foglalás)
+public record SeatAvailabilityChangedEvent(Long flightId) {}
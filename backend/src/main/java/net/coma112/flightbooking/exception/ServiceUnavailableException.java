@@ -0,0 +1,7 @@
+package net.coma112.flightbooking.exception;
+
+public class ServiceUnavailableException extends RuntimeException {
+    public ServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,6 @@
 package net.coma112.flightbooking.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
@@ -12,6 +13,7 @@ import net.coma112.flightbooking.model.enums.AircraftType;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // lazy proxy-ként is szerializálható legyen
 public class Aircraft {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -1,5 +1,6 @@
 package net.coma112.flightbooking.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -10,6 +11,7 @@ import lombok.NoArgsConstructor;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // lazy proxy-ként is szerializálható legyen
 public class Airport {
     @Id // Elsődleges kulcs
     @GeneratedValue(strategy = GenerationType.IDENTITY)
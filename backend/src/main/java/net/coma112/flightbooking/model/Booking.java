@@ -14,28 +14,38 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", indexes = {
+        // a lejárt foglalásokat kereső sweeper tartomány szkennje: status = 'PENDING' AND hold_expires_at < ?
+        @Index(name = "idx_bookings_status_hold_expires", columnList = "status, hold_expires_at"),
+        @Index(name = "idx_bookings_group_reference", columnList = "group_reference"),
+        // az utas és a státusz szerinti keyset lapozás: WHERE ... AND (booking_date, id) < (?, ?) ORDER BY booking_date DESC, id DESC
+        @Index(name = "idx_bookings_passenger_booking_date", columnList = "passenger_id, booking_date, id"),
+        @Index(name = "idx_bookings_status_booking_date", columnList = "status, booking_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Booking {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bookings_seq")
+    @SequenceGenerator(name = "bookings_seq", sequenceName = "bookings_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true, length = 6)
     @Pattern(regexp = "^[A-Z0-9]{6}$", message = "CSAK 6 lehet!")
     private String bookingReference;
 
-    @ManyToOne
+    // LAZY: a foglalás olvasása a BookingView projekción megy, a kapcsolatokat csak az írási utak töltik be
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flight_id")
     private Flight flight;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "passenger_id")
     private Passenger passenger;
 
-    @OneToOne
+    // egy ülésnek több (lemondott / lejárt) foglalása is lehet, az egyediséget a seats.is_available őrzi
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "seat_id")
     private Seat seat;
 
@@ -44,4 +54,26 @@ public class Booking {
 
     @Enumerated(EnumType.STRING)
     private BookingStatus status;
+
+    // csoportos foglalásnál a közös azonosító, egyéni foglalásnál null
+    @Column(name = "group_reference", length = 6)
+    private String groupReference;
+
+    // eddig tartjuk a helyet fizetés nélkül, utána a SeatHoldSweeper törli a foglalást
+    @Column(name = "hold_expires_at")
+    private LocalDateTime holdExpiresAt;
+
+    // a foglaláshoz létrehozott Stripe PaymentIntent; amíg a foglalás PENDING és az összeg nem változott, ezt adjuk vissza
+    @Column(name = "payment_intent_id")
+    private String paymentIntentId;
+
+    @Column(name = "payment_intent_client_secret")
+    private String paymentIntentClientSecret;
+
+    @Column(name = "payment_intent_status")
+    private String paymentIntentStatus;
+
+    // a Stripe-nak küldött összeg (a forint százszorosa)
+    @Column(name = "payment_intent_amount")
+    private Long paymentIntentAmount;
 }
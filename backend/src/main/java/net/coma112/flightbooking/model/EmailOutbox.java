@@ -0,0 +1,54 @@
+package net.coma112.flightbooking.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.coma112.flightbooking.model.enums.OutboxStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kiküldésre váró visszaigazoló email. A foglalás megerősítésével egy tranzakcióban kerül be,
+ * a tényleges küldést az EmailOutboxDispatcher végzi a háttérben.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        // a dispatcher tartomány szkennje: status IN ('PENDING', 'SENDING') AND next_attempt_at <= ?
+        @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EmailOutbox {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "email_outbox_seq")
+    @SequenceGenerator(name = "email_outbox_seq", sequenceName = "email_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "booking_reference", nullable = false, length = 6)
+    private String bookingReference;
+
+    @Column(name = "payment_method", length = 32)
+    private String paymentMethod;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private OutboxStatus status;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    // a következő küldési próbálkozás ideje; küldés közben a lease lejárta
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
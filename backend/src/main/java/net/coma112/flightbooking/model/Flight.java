@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import net.coma112.flightbooking.event.FlightChangeListener;
 import net.coma112.flightbooking.model.enums.FlightStatus;
 
 import java.math.BigDecimal;
@@ -14,24 +15,27 @@ import java.time.LocalDateTime;
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners(FlightChangeListener.class)
 public class Flight {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "flights_seq")
+    @SequenceGenerator(name = "flights_seq", sequenceName = "flights_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, unique = true)
     private String flightNumber;
 
     // mert sok járat tartozik egy reptérhez
-    @ManyToOne
+    // LAZY: a reptereket és a gépet a ReferenceDataCache adja, a járat betöltésekor csak az idegen kulcs kell
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "departure_airport_id") // idegen kulcs
     private Airport departureAirport;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "arrival_airport_id")
     private Airport arrivalAirport;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "aircraft_id")
     private Aircraft aircraft;
 
@@ -9,13 +9,17 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDate;
 
 @Entity
-@Table(name = "passengers")
+@Table(name = "passengers", indexes = {
+        // a foglalási előzmények email szerint keresik az utast
+        @Index(name = "idx_passengers_email", columnList = "email")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Passenger {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "passengers_seq")
+    @SequenceGenerator(name = "passengers_seq", sequenceName = "passengers_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -0,0 +1,59 @@
+package net.coma112.flightbooking.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import net.coma112.flightbooking.model.enums.PaymentEventStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ellenőrzött aláírású fizetési webhook esemény, feldolgozásra várva.
+ * A webhook végpont csak beszúrja (az esemény id-re egyedi kulccsal, így a Stripe újraküldései nem duplikálódnak),
+ * a foglalásokat a PaymentEventConsumer erősíti meg kötegekben.
+ */
+@Entity
+@Table(name = "payment_events", indexes = {
+        // a fogyasztó tartomány szkennje: status = 'PENDING' ORDER BY id
+        @Index(name = "idx_payment_events_status_id", columnList = "status, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_events_seq")
+    @SequenceGenerator(name = "payment_events_seq", sequenceName = "payment_events_seq", allocationSize = 50)
+    private Long id;
+
+    // a szolgáltató esemény azonosítója (Stripe: evt_...)
+    @Column(name = "event_id", nullable = false, unique = true)
+    private String eventId;
+
+    @Column(name = "event_type", nullable = false, length = 64)
+    private String eventType;
+
+    @Column(name = "booking_reference", nullable = false, length = 6)
+    private String bookingReference;
+
+    @Column(name = "payment_method", length = 32)
+    private String paymentMethod;
+
+    // a ténylegesen beszedett összeg a szolgáltató egységében (HUF esetén fillér) és a pénznem, ahogy az esemény hozta;
+    // a fogyasztó csak akkor erősít meg, ha ez pontosan a foglalás ára
+    private Long amount;
+
+    @Column(length = 3)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private PaymentEventStatus status;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
@@ -15,11 +15,13 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class Seat {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // IDENTITY mellett a Hibernate nem tud kötegelni, a szekvenciából 50-es blokkokat foglalunk
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "seats_seq")
+    @SequenceGenerator(name = "seats_seq", sequenceName = "seats_seq", allocationSize = 50)
     private Long id;
 
-    // több az egyhez
-    @ManyToOne
+    // több az egyhez; LAZY: a készlet és a foglalás is csak a flight_id-t használja
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "flight_id")
     private Flight flight;
 
@@ -0,0 +1,8 @@
+package net.coma112.flightbooking.model.enums;
+
+public enum OutboxStatus {
+    PENDING, // küldésre vár (vagy újrapróbálásra)
+    SENDING, // egy dispatcher kivette és küldi; a next_attempt_at itt a lease lejárta
+    SENT, // elküldve
+    FAILED // az összes próbálkozás elfogyott
+}
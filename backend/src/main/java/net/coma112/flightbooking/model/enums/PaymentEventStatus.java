@@ -0,0 +1,8 @@
+package net.coma112.flightbooking.model.enums;
+
+public enum PaymentEventStatus {
+    PENDING, // feldolgozásra vár
+    PROCESSED, // feldolgozva (a foglalás megerősítve, vagy már korábban megerősítették)
+    ORPHANED_PAYMENT, // kifizetve, de a foglalás közben lejárt vagy lemondták; kézi visszatérítésre vár
+    AMOUNT_MISMATCH // az összeg vagy a pénznem nem egyezik a foglalás árával; a foglalás nem erősödik meg, kézi ellenőrzésre vár
+}
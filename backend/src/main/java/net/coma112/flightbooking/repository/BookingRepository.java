@@ -1,17 +1,179 @@
 package net.coma112.flightbooking.repository;
 
+import jakarta.persistence.QueryHint;
 import net.coma112.flightbooking.model.Booking;
-import net.coma112.flightbooking.model.Passenger;
 import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.repository.projection.BookingReferenceRow;
+import net.coma112.flightbooking.repository.projection.BookingView;
+import net.coma112.flightbooking.repository.projection.ExpiredHold;
+import net.coma112.flightbooking.repository.projection.PaymentIntentRow;
+import net.coma112.flightbooking.repository.projection.PendingPaymentRow;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, Long> {
     Optional<Booking> findByBookingReference(String reference);
-    List<Booking> findByPassenger(Passenger passenger);
-    List<Booking> findByStatus(BookingStatus status);
+
+    // a foglalás olvasási modellje: egy SELECT három joinnal, entitások és a repterek / gép betöltése nélkül
+    String BOOKING_VIEW_SELECT = """
+            SELECT b.id AS id, b.bookingReference AS bookingReference, b.groupReference AS groupReference,
+                   b.status AS status, b.bookingDate AS bookingDate, b.totalPrice AS totalPrice,
+                   s.id AS seatId, s.seatNumber AS seatNumber,
+                   f.id AS flightId, f.flightNumber AS flightNumber,
+                   f.departureAirport.id AS departureAirportId, f.arrivalAirport.id AS arrivalAirportId,
+                   f.departureTime AS departureTime, f.arrivalTime AS arrivalTime,
+                   p.firstName AS firstName, p.lastName AS lastName, p.email AS email,
+                   p.phoneNumber AS phoneNumber, p.passportNumber AS passportNumber, p.dateOfBirth AS dateOfBirth
+            FROM Booking b
+            JOIN b.seat s
+            JOIN b.flight f
+            JOIN b.passenger p
+            """;
+
+    // keyset lapozás: a legújabb foglalás elöl, a kurzor az előző oldal utolsó (booking_date, id) párja
+    String KEYSET_AFTER_CURSOR = """
+             AND (b.bookingDate < :cursorDate OR (b.bookingDate = :cursorDate AND b.id < :cursorId))
+            ORDER BY b.bookingDate DESC, b.id DESC
+            """;
+
+    // a stream előre haladó JDBC kurzor, egyszerre legfeljebb ennyi sort tart a driver a memóriában
+    String STREAM_FETCH_SIZE = "500";
+
+    @Query(BOOKING_VIEW_SELECT + "WHERE b.bookingReference = :reference")
+    Optional<BookingView> findViewByReference(@Param("reference") String reference);
+
+    @Query(BOOKING_VIEW_SELECT + "WHERE p.email = :email" + KEYSET_AFTER_CURSOR)
+    List<BookingView> findViewsByPassengerEmail(
+            @Param("email") String email,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") Long cursorId,
+            Limit limit
+    );
+
+    @Query(BOOKING_VIEW_SELECT + "WHERE b.status = :status" + KEYSET_AFTER_CURSOR)
+    List<BookingView> findViewsByStatus(
+            @Param("status") BookingStatus status,
+            @Param("cursorDate") LocalDateTime cursorDate,
+            @Param("cursorId") Long cursorId,
+            Limit limit
+    );
+
+    @Query(BOOKING_VIEW_SELECT + "WHERE p.email = :email ORDER BY b.bookingDate DESC, b.id DESC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<BookingView> streamViewsByPassengerEmail(@Param("email") String email);
+
+    @Query(BOOKING_VIEW_SELECT + "WHERE b.status = :status ORDER BY b.bookingDate DESC, b.id DESC")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<BookingView> streamViewsByStatus(@Param("status") BookingStatus status);
+
+    @Query("""
+            SELECT b.id AS id, b.status AS status, b.totalPrice AS totalPrice, f.flightNumber AS flightNumber,
+                   b.paymentIntentId AS paymentIntentId, b.paymentIntentClientSecret AS paymentIntentClientSecret,
+                   b.paymentIntentStatus AS paymentIntentStatus, b.paymentIntentAmount AS paymentIntentAmount
+            FROM Booking b
+            JOIN b.flight f
+            WHERE b.bookingReference = :reference
+            """)
+    Optional<PaymentIntentRow> findPaymentIntentByReference(@Param("reference") String reference);
+
+    // UPDATE bookings SET payment_intent_id = ?, ... WHERE id = ?
+    @Modifying
+    @Query("""
+            UPDATE Booking b SET b.paymentIntentId = :intentId, b.paymentIntentClientSecret = :clientSecret,
+                   b.paymentIntentStatus = :intentStatus, b.paymentIntentAmount = :amount
+            WHERE b.id = :id
+            """)
+    int attachPaymentIntent(
+            @Param("id") Long id,
+            @Param("intentId") String intentId,
+            @Param("clientSecret") String clientSecret,
+            @Param("intentStatus") String intentStatus,
+            @Param("amount") Long amount
+    );
+
+    // a foglalási kód allokátor következő blokkja
+    @Query(value = "SELECT nextval('booking_reference_seq')", nativeQuery = true)
+    long nextReferenceBlock();
+
+    // a foglalási kódok id szerint lapozva, az allokátor így olvassa be a máshonnan beszúrt kódokat
+    @Query(value = """
+            SELECT b.id AS id, b.booking_reference AS bookingReference
+            FROM bookings b
+            WHERE b.id > :afterId
+            ORDER BY b.id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<BookingReferenceRow> findReferencesAfter(@Param("afterId") Long afterId, @Param("limit") int limit);
+
+    // a lejárt PENDING foglalások zárolása; a más tranzakció által fogott sorokat (pl. éppen megerősítés alatt) kihagyjuk
+    @Query(value = """
+            SELECT b.id AS bookingId, b.flight_id AS flightId, s.id AS seatId, s.seat_number AS seatNumber,
+                b.payment_intent_id AS paymentIntentId
+            FROM bookings b
+            JOIN seats s ON s.id = b.seat_id
+            WHERE b.status = 'PENDING' AND b.hold_expires_at < :now
+            ORDER BY b.hold_expires_at
+            LIMIT :limit
+            FOR UPDATE OF b SKIP LOCKED
+            """, nativeQuery = true)
+    List<ExpiredHold> lockExpiredHolds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // UPDATE bookings SET status = 'CANCELLED' WHERE id IN (?) AND status = 'PENDING'
+    @Modifying
+    @Query("""
+            UPDATE Booking b SET b.status = net.coma112.flightbooking.model.enums.BookingStatus.CANCELLED
+            WHERE b.id IN :ids AND b.status = net.coma112.flightbooking.model.enums.BookingStatus.PENDING
+            """)
+    int cancelPending(@Param("ids") Collection<Long> ids);
+
+    // UPDATE bookings SET status = 'CONFIRMED' WHERE id = ? AND status = 'PENDING'
+    @Modifying
+    @Query("""
+            UPDATE Booking b SET b.status = net.coma112.flightbooking.model.enums.BookingStatus.CONFIRMED
+            WHERE b.id = :id AND b.status = net.coma112.flightbooking.model.enums.BookingStatus.PENDING
+            """)
+    int confirmPending(@Param("id") Long id);
+
+    // a kifizetett foglalások közül a még PENDING sorok zárolása, id sorrendben; a sweeper SKIP LOCKED-del kihagyja őket
+    @Query(value = """
+            SELECT b.id AS id, b.booking_reference AS bookingReference, b.total_price AS totalPrice
+            FROM bookings b
+            WHERE b.booking_reference IN (:references) AND b.status = 'PENDING'
+            ORDER BY b.id
+            FOR UPDATE
+            """, nativeQuery = true)
+    List<PendingPaymentRow> lockPendingByReferences(@Param("references") Collection<String> references);
+
+    // a megadott kódok közül a megadott státuszú foglalásoké
+    @Query("SELECT b.bookingReference FROM Booking b WHERE b.bookingReference IN :references AND b.status = :status")
+    List<String> findReferencesByStatus(@Param("references") Collection<String> references, @Param("status") BookingStatus status);
+
+    // UPDATE bookings SET status = 'CONFIRMED' WHERE id IN (?) AND status = 'PENDING'
+    @Modifying
+    @Query("""
+            UPDATE Booking b SET b.status = net.coma112.flightbooking.model.enums.BookingStatus.CONFIRMED
+            WHERE b.id IN :ids AND b.status = net.coma112.flightbooking.model.enums.BookingStatus.PENDING
+            """)
+    int confirmPendingIn(@Param("ids") Collection<Long> ids);
+
+    // UPDATE bookings SET status = 'CANCELLED' WHERE id = ? AND status <> 'CANCELLED'
+    @Modifying
+    @Query("""
+            UPDATE Booking b SET b.status = net.coma112.flightbooking.model.enums.BookingStatus.CANCELLED
+            WHERE b.id = :id AND b.status <> net.coma112.flightbooking.model.enums.BookingStatus.CANCELLED
+            """)
+    int cancelActive(@Param("id") Long id);
 }
@@ -0,0 +1,55 @@
+package net.coma112.flightbooking.repository;
+
+import net.coma112.flightbooking.model.EmailOutbox;
+import net.coma112.flightbooking.model.enums.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Long> {
+    long countByStatus(OutboxStatus status);
+
+    // esedékes üzenetek zárolása; a másik példány által éppen fogott sorokat kihagyjuk.
+    // A lejárt lease-ű SENDING sor egy küldés közben leállt példányé, azt is újra felvesszük
+    @Query(value = """
+            SELECT * FROM email_outbox
+            WHERE status IN ('PENDING', 'SENDING') AND next_attempt_at <= :now
+            ORDER BY next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<EmailOutbox> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // a kivett sorok küldés alatt SENDING állapotban vannak; ha a példány közben leáll, a lease lejárta után újra próbáljuk
+    @Modifying
+    @Query("""
+            UPDATE EmailOutbox o SET o.status = net.coma112.flightbooking.model.enums.OutboxStatus.SENDING,
+                o.nextAttemptAt = :until
+            WHERE o.id IN :ids
+            """)
+    int lease(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("""
+            UPDATE EmailOutbox o SET o.status = net.coma112.flightbooking.model.enums.OutboxStatus.SENT,
+                o.sentAt = :sentAt, o.attempts = o.attempts + 1, o.lastError = null
+            WHERE o.id = :id
+            """)
+    int markSent(@Param("id") Long id, @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("""
+            UPDATE EmailOutbox o SET o.status = :status, o.nextAttemptAt = :nextAttemptAt,
+                o.attempts = o.attempts + 1, o.lastError = :error
+            WHERE o.id = :id
+            """)
+    int markFailedAttempt(@Param("id") Long id, @Param("status") OutboxStatus status,
+                          @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+}
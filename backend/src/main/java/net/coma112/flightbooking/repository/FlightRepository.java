@@ -2,7 +2,11 @@ package net.coma112.flightbooking.repository;
 
 import net.coma112.flightbooking.model.Airport;
 import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.repository.projection.FlightLeg;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -12,6 +16,10 @@ import java.util.Optional;
 @Repository
 public interface FlightRepository extends JpaRepository<Flight, Long> {
     Optional<Flight> findByFlightNumber(String flightNumber);
+
+    // a járat a repterekkel és a géppel egy joinolt lekérdezésben; a tranzakción kívül szerializált entitásokhoz
+    @EntityGraph(attributePaths = {"departureAirport", "arrivalAirport", "aircraft"})
+    Optional<Flight> findWithRouteById(Long id);
     List<Flight> findByDepartureAirportAndArrivalAirport(Airport departureAirport, Airport arrivalAirport);
     List<Flight> findByDepartureTimeBetween(LocalDateTime departureTime, LocalDateTime arrivalTime);
     List<Flight> findByDepartureAirportAndArrivalAirportAndDepartureTimeBetween(
@@ -20,4 +28,33 @@ public interface FlightRepository extends JpaRepository<Flight, Long> {
             LocalDateTime start,
             LocalDateTime end
     );
+
+    // csak az idegen kulcsokra szűr, nem joinolja az airports táblát
+    List<Flight> findByDepartureAirportIdAndArrivalAirportIdAndDepartureTimeBetween(
+            Long departureAirportId,
+            Long arrivalAirportId,
+            LocalDateTime start,
+            LocalDateTime end
+    );
+
+    // az útvonal gráf felépítéséhez: minden még el nem indult járat, joinok nélkül
+    @Query("""
+            SELECT f.id AS id, f.departureAirport.id AS departureAirportId, f.arrivalAirport.id AS arrivalAirportId,
+                   f.departureTime AS departureTime, f.arrivalTime AS arrivalTime, f.status AS status
+            FROM Flight f
+            WHERE f.departureTime > :after
+            """)
+    List<FlightLeg> findLegsDepartingAfter(@Param("after") LocalDateTime after);
+
+    // az ülés készlet előtöltéséhez
+    @Query("SELECT f.id FROM Flight f WHERE f.departureTime > :after")
+    List<Long> findIdsDepartingAfter(@Param("after") LocalDateTime after);
+
+    @Query("""
+            SELECT f.id AS id, f.departureAirport.id AS departureAirportId, f.arrivalAirport.id AS arrivalAirportId,
+                   f.departureTime AS departureTime, f.arrivalTime AS arrivalTime, f.status AS status
+            FROM Flight f
+            WHERE f.id = :id
+            """)
+    Optional<FlightLeg> findLegById(@Param("id") Long id);
 }
@@ -4,9 +4,12 @@ import net.coma112.flightbooking.model.Passenger;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PassengerRepository extends JpaRepository<Passenger, Long> {
     Optional<Passenger> findByEmail(String email);
+    List<Passenger> findByEmailIn(Collection<String> emails);
 }
@@ -0,0 +1,74 @@
+package net.coma112.flightbooking.repository;
+
+import net.coma112.flightbooking.model.PaymentEvent;
+import net.coma112.flightbooking.model.enums.PaymentEventStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PaymentEventRepository extends JpaRepository<PaymentEvent, Long> {
+    long countByStatus(PaymentEventStatus status);
+
+    // már ismert esemény id esetén nem szúr be semmit (0 a visszatérési érték)
+    @Modifying
+    @Query(value = """
+            INSERT INTO payment_events (id, event_id, event_type, booking_reference, payment_method, amount, currency, status, received_at)
+            VALUES (nextval('payment_events_seq'), :eventId, :eventType, :bookingReference, :paymentMethod, :amount, :currency, 'PENDING', :receivedAt)
+            ON CONFLICT DO NOTHING
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("eventId") String eventId, @Param("eventType") String eventType,
+                       @Param("bookingReference") String bookingReference, @Param("paymentMethod") String paymentMethod,
+                       @Param("amount") Long amount, @Param("currency") String currency,
+                       @Param("receivedAt") LocalDateTime receivedAt);
+
+    // a feldolgozásra váró események zárolása; a másik példány által éppen fogott sorokat kihagyjuk
+    @Query(value = """
+            SELECT * FROM payment_events
+            WHERE status = 'PENDING'
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<PaymentEvent> lockPending(@Param("limit") int limit);
+
+    @Modifying
+    @Query("""
+            UPDATE PaymentEvent e SET e.status = net.coma112.flightbooking.model.enums.PaymentEventStatus.PROCESSED,
+                e.processedAt = :processedAt
+            WHERE e.id IN :ids
+            """)
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    // a félretett eseményeket a takarítás nem törli, a visszatérítés után kézzel kell lezárni őket
+    @Modifying
+    @Query("""
+            UPDATE PaymentEvent e SET e.status = net.coma112.flightbooking.model.enums.PaymentEventStatus.ORPHANED_PAYMENT,
+                e.processedAt = :processedAt
+            WHERE e.id IN :ids
+            """)
+    int markOrphaned(@Param("ids") Collection<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    // a hibás összegű eseményeket sem törli a takarítás: vagy visszatérítés, vagy kézi megerősítés kell
+    @Modifying
+    @Query("""
+            UPDATE PaymentEvent e SET e.status = net.coma112.flightbooking.model.enums.PaymentEventStatus.AMOUNT_MISMATCH,
+                e.processedAt = :processedAt
+            WHERE e.id IN :ids
+            """)
+    int markAmountMismatch(@Param("ids") Collection<Long> ids, @Param("processedAt") LocalDateTime processedAt);
+
+    // a feldolgozott eseményeket a szolgáltató újraküldési ablakáig tartjuk meg, addig szűrik a duplikátumokat
+    @Modifying
+    @Query("""
+            DELETE FROM PaymentEvent e
+            WHERE e.status = net.coma112.flightbooking.model.enums.PaymentEventStatus.PROCESSED AND e.processedAt < :before
+            """)
+    int deleteProcessedBefore(@Param("before") LocalDateTime before);
+}
@@ -3,9 +3,15 @@ package net.coma112.flightbooking.repository;
 import net.coma112.flightbooking.model.Flight;
 import net.coma112.flightbooking.model.Seat;
 import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.repository.projection.SeatAvailabilityCount;
+import net.coma112.flightbooking.repository.projection.SeatSnapshot;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,4 +29,44 @@ public interface SeatRepository extends JpaRepository<Seat, Long> {
     );
 
     Optional<Seat> findFirstByFlightAndSeatNumber(Flight flight, String seatNumber);
-}
\ No newline at end of file
+
+    // SELECT flight_id, seat_class, COUNT(*) FROM seats WHERE flight_id IN (?) AND is_available GROUP BY flight_id, seat_class
+    @Query("""
+            SELECT s.flight.id AS flightId, s.seatClass AS seatClass, COUNT(s) AS available
+            FROM Seat s
+            WHERE s.flight.id IN :flightIds AND s.isAvailable = true
+            GROUP BY s.flight.id, s.seatClass
+            """)
+    List<SeatAvailabilityCount> countAvailableByFlightIds(@Param("flightIds") Collection<Long> flightIds);
+
+    @Query("""
+            SELECT s.id AS id, s.flight.id AS flightId, s.flight.departureTime AS departureTime,
+                   s.seatNumber AS seatNumber, s.seatClass AS seatClass, s.isAvailable AS available, s.price AS price
+            FROM Seat s
+            WHERE s.flight.id IN :flightIds
+            ORDER BY s.flight.id, s.id
+            """)
+    List<SeatSnapshot> findSnapshotsByFlightIds(@Param("flightIds") Collection<Long> flightIds);
+
+    // UPDATE seats SET is_available = false WHERE id = ? AND is_available = true
+    // 1 = mi foglaltuk le, 0 = valaki megelőzött
+    @Modifying
+    @Query("UPDATE Seat s SET s.isAvailable = false WHERE s.id = :seatId AND s.isAvailable = true")
+    int claimSeat(@Param("seatId") Long seatId);
+
+    // UPDATE seats SET is_available = false WHERE id IN (?) AND is_available = true
+    // ha kevesebb sor változott, mint ahány id, valaki megelőzött -> rollback
+    @Modifying
+    @Query("UPDATE Seat s SET s.isAvailable = false WHERE s.id IN :seatIds AND s.isAvailable = true")
+    int claimSeats(@Param("seatIds") Collection<Long> seatIds);
+
+    // UPDATE seats SET is_available = true WHERE id = ?
+    @Modifying
+    @Query("UPDATE Seat s SET s.isAvailable = true WHERE s.id = :seatId")
+    int releaseSeat(@Param("seatId") Long seatId);
+
+    // UPDATE seats SET is_available = true WHERE id IN (?)
+    @Modifying
+    @Query("UPDATE Seat s SET s.isAvailable = true WHERE s.id IN :seatIds")
+    int releaseSeats(@Param("seatIds") Collection<Long> seatIds);
+}
@@ -0,0 +1,7 @@
+package net.coma112.flightbooking.repository.projection;
+
+// foglalás id és kód (a foglalási kód allokátor beolvasása)
+public interface BookingReferenceRow {
+    Long getId();
+    String getBookingReference();
+}
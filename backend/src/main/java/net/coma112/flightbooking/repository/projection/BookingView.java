@@ -0,0 +1,34 @@
+package net.coma112.flightbooking.repository.projection;
+
+import net.coma112.flightbooking.model.enums.BookingStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// egy foglalás minden olyan oszlopa, ami a BookingResponse-hoz, a megerősítéshez és a lemondáshoz kell, egy lekérdezésből
+public interface BookingView {
+    Long getId();
+    String getBookingReference();
+    String getGroupReference();
+    BookingStatus getStatus();
+    LocalDateTime getBookingDate();
+    BigDecimal getTotalPrice();
+
+    Long getSeatId();
+    String getSeatNumber();
+
+    Long getFlightId();
+    String getFlightNumber();
+    Long getDepartureAirportId();
+    Long getArrivalAirportId();
+    LocalDateTime getDepartureTime();
+    LocalDateTime getArrivalTime();
+
+    String getFirstName();
+    String getLastName();
+    String getEmail();
+    String getPhoneNumber();
+    String getPassportNumber();
+    LocalDate getDateOfBirth();
+}
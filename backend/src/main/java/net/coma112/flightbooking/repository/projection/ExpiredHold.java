@@ -0,0 +1,10 @@
+package net.coma112.flightbooking.repository.projection;
+
+// lejárt, még ki nem fizetett foglalás, amit a sweeper lemond
+public interface ExpiredHold {
+    Long getBookingId();
+    Long getFlightId();
+    Long getSeatId();
+    String getSeatNumber();
+    String getPaymentIntentId(); // null, ha a fizetés el sem indult
+}
@@ -0,0 +1,15 @@
+package net.coma112.flightbooking.repository.projection;
+
+import net.coma112.flightbooking.model.enums.FlightStatus;
+
+import java.time.LocalDateTime;
+
+// egy járat, mint él az útvonal gráfban: csak az idegen kulcsok és az időpontok
+public interface FlightLeg {
+    Long getId();
+    Long getDepartureAirportId();
+    Long getArrivalAirportId();
+    LocalDateTime getDepartureTime();
+    LocalDateTime getArrivalTime();
+    FlightStatus getStatus();
+}
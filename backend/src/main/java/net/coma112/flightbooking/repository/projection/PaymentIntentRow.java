@@ -0,0 +1,17 @@
+package net.coma112.flightbooking.repository.projection;
+
+import net.coma112.flightbooking.model.enums.BookingStatus;
+
+import java.math.BigDecimal;
+
+// a fizetési szándék létrehozásához szükséges foglalási adatok és a már eltárolt PaymentIntent
+public interface PaymentIntentRow {
+    Long getId();
+    BookingStatus getStatus();
+    BigDecimal getTotalPrice();
+    String getFlightNumber();
+    String getPaymentIntentId();
+    String getPaymentIntentClientSecret();
+    String getPaymentIntentStatus();
+    Long getPaymentIntentAmount();
+}
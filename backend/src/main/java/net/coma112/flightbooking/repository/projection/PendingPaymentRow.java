@@ -0,0 +1,10 @@
+package net.coma112.flightbooking.repository.projection;
+
+import java.math.BigDecimal;
+
+// kifizetésre váró foglalás a kötegelt megerősítéshez: az ár kell az esemény összegének ellenőrzéséhez
+public interface PendingPaymentRow {
+    Long getId();
+    String getBookingReference();
+    BigDecimal getTotalPrice();
+}
@@ -0,0 +1,10 @@
+package net.coma112.flightbooking.repository.projection;
+
+import net.coma112.flightbooking.model.enums.SeatClass;
+
+// egy sor a csoportosított lekérdezésből: (járat, osztály) -> szabad ülések száma
+public interface SeatAvailabilityCount {
+    Long getFlightId();
+    SeatClass getSeatClass();
+    Long getAvailable();
+}
@@ -0,0 +1,17 @@
+package net.coma112.flightbooking.repository.projection;
+
+import net.coma112.flightbooking.model.enums.SeatClass;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// egy ülés lapos nézete a memóriabeli készlethez, a Flight entitás betöltése nélkül
+public interface SeatSnapshot {
+    Long getId();
+    Long getFlightId();
+    LocalDateTime getDepartureTime();
+    String getSeatNumber();
+    SeatClass getSeatClass();
+    Boolean getAvailable();
+    BigDecimal getPrice();
+}
@@ -0,0 +1,247 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.repository.BookingRepository;
+import net.coma112.flightbooking.repository.projection.BookingReferenceRow;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ütközésmentes 6 karakteres foglalási kódok.
+ * - egy számláló adja a sorszámot: a booking_reference_seq szekvenciából egyszerre egy BLOCK_SIZE méretű blokkot
+ *   foglalunk, így a blokkon belül adatbázis nélkül, egy CAS-sal kapunk új sorszámot, több példány esetén sem ütközve
+ * - a sorszámot egy titkos kulcsú Feistel permutáció képezi le a 36^6 méretű kódtérre: kölcsönösen egyértelmű,
+ *   tehát két sorszámból soha nem lesz ugyanaz a kód, de a kódok nem sorban követik egymást és nem kitalálhatók
+ * - a nem innen származó kódokat (régi foglalások, mock adatbetöltő) induláskor és időnként beolvassuk,
+ *   visszafejtjük sorszámmá, és ezeket a sorszámokat kihagyjuk (két beolvasás között kívülről beszúrt kóddal
+ *   elvileg ütközhetünk, ezt ilyenkor a bookings.booking_reference egyedi kulcsa fogja meg)
+ * A kulcsot (booking-reference.secret) a környezet adja (BOOKING_REFERENCE_SECRET), alapértelmezése nincs: nélküle
+ * az alkalmazás nem indul el. Élesítés után nem szabad cserélni: a régi kódokat ugyan a háttérbeli beolvasás
+ * kikerüli, de a kódok ettől kezdve más sorrendben jönnek.
+ */
+@Component
+public class BookingReferenceAllocator {
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final int LENGTH = 6;
+    private static final long SPACE = 2_176_782_336L; // 36^6
+
+    // egy szekvencia lépés ennyi sorszám
+    private static final long BLOCK_SIZE = 1_000;
+
+    private static final int ROUNDS = 8;
+    private static final int SCAN_BATCH_SIZE = 5_000;
+
+    private final BookingRepository bookingRepository;
+    private final int[] roundKeys;
+
+    private volatile Block block = new Block(0, 0);
+
+    // a blokkcsere adatbázist hív: synchronized helyett lock, hogy a virtuális szál ne rögzüljön a hordozó szálhoz
+    private final ReentrantLock refillLock = new ReentrantLock();
+
+    // a nem általunk kiadott kódok sorszámai, amiket át kell ugrani
+    private final ConcurrentSkipListSet<Long> foreignCounters = new ConcurrentSkipListSet<>();
+    private final AtomicLong lastScannedBookingId = new AtomicLong();
+
+    public BookingReferenceAllocator(BookingRepository bookingRepository, @Value("${booking-reference.secret}") String secret) {
+        this.bookingRepository = bookingRepository;
+        this.roundKeys = deriveRoundKeys(secret);
+    }
+
+    public @NonNull String next() {
+        while (true) {
+            long counter = nextCounter();
+
+            if (!foreignCounters.contains(counter)) {
+                return encode(permute(counter));
+            }
+        }
+    }
+
+    // induláskor és utána időnként beolvassuk a foglalásokat, amiket az utolsó beolvasás óta szúrtak be
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${booking-reference.scan-interval-ms:60000}", fixedDelayString = "${booking-reference.scan-interval-ms:60000}")
+    public void scanExistingReferences() {
+        List<BookingReferenceRow> rows;
+
+        do {
+            rows = bookingRepository.findReferencesAfter(lastScannedBookingId.get(), SCAN_BATCH_SIZE);
+
+            for (BookingReferenceRow row : rows) {
+                long counter = counterOf(row.getBookingReference());
+
+                if (counter >= 0) {
+                    foreignCounters.add(counter);
+                }
+
+                lastScannedBookingId.accumulateAndGet(row.getId(), Math::max);
+            }
+        } while (rows.size() == SCAN_BATCH_SIZE);
+
+        // a már kiosztott blokkok alatti sorszámokat soha többé nem kérjük, azokat nem kell tárolni
+        // (ide esnek a saját, illetve a többi példány által kiadott kódok is)
+        foreignCounters.headSet(block.start).clear();
+    }
+
+    private long nextCounter() {
+        while (true) {
+            Block current = block;
+            long counter = current.cursor.getAndIncrement();
+
+            if (counter < current.end) {
+                return counter;
+            }
+
+            refill(current);
+        }
+    }
+
+    // csak a blokk végén, egyetlen szál kér új blokkot, a többi addig az új blokkra vár
+    private void refill(@NonNull Block exhausted) {
+        refillLock.lock();
+        try {
+            if (block != exhausted) {
+                return;
+            }
+
+            long start = bookingRepository.nextReferenceBlock() * BLOCK_SIZE;
+
+            if (start + BLOCK_SIZE > SPACE) {
+                throw new IllegalStateException("Elfogytak a foglalási kódok");
+            }
+
+            block = new Block(start, start + BLOCK_SIZE);
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    // a kódot visszafejti sorszámmá, -1 ha nem érvényes kód
+    private long counterOf(String reference) {
+        if (reference == null || reference.length() != LENGTH) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int digit = ALPHABET.indexOf(reference.charAt(i));
+
+            if (digit < 0) {
+                return -1;
+            }
+
+            value = value * ALPHABET.length() + digit;
+        }
+
+        return unpermute(value);
+    }
+
+    private static @NonNull String encode(long value) {
+        char[] reference = new char[LENGTH];
+
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            reference[i] = ALPHABET.charAt((int) (value % ALPHABET.length()));
+            value /= ALPHABET.length();
+        }
+
+        return new String(reference);
+    }
+
+    // 32 bites Feistel titkosítás, ciklus sétával a [0, 36^6) tartományba (36^6 < 2^32, átlagosan ~2 kör)
+    private long permute(long value) {
+        do {
+            value = encrypt((int) value) & 0xFFFF_FFFFL;
+        } while (value >= SPACE);
+
+        return value;
+    }
+
+    private long unpermute(long value) {
+        do {
+            value = decrypt((int) value) & 0xFFFF_FFFFL;
+        } while (value >= SPACE);
+
+        return value;
+    }
+
+    private int encrypt(int value) {
+        int left = value >>> 16;
+        int right = value & 0xFFFF;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            int next = left ^ roundFunction(right, roundKeys[round]);
+            left = right;
+            right = next;
+        }
+
+        return (left << 16) | right;
+    }
+
+    private int decrypt(int value) {
+        int left = value >>> 16;
+        int right = value & 0xFFFF;
+
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            int previous = right ^ roundFunction(left, roundKeys[round]);
+            right = left;
+            left = previous;
+        }
+
+        return (left << 16) | right;
+    }
+
+    // 16 bites kimenet, a murmur3 véglegesítő keverésével
+    private static int roundFunction(int half, int key) {
+        int x = (half ^ key) * 0x9E3779B1;
+        x ^= x >>> 16;
+        x *= 0x85EBCA6B;
+        x ^= x >>> 13;
+        x *= 0xC2B2AE35;
+        x ^= x >>> 16;
+        return x & 0xFFFF;
+    }
+
+    private static int @NonNull [] deriveRoundKeys(@NonNull String secret) {
+        if (secret.isBlank()) {
+            throw new IllegalArgumentException("A booking-reference.secret nem lehet üres");
+        }
+
+        try {
+            ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8)));
+
+            int[] keys = new int[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++) {
+                keys[i] = digest.getInt();
+            }
+
+            return keys;
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // [start, end) sorszámok, a cursor a következő kiadható
+    private static final class Block {
+        private final long start;
+        private final long end;
+        private final AtomicLong cursor;
+
+        private Block(long start, long end) {
+            this.start = start;
+            this.end = end;
+            this.cursor = new AtomicLong(start);
+        }
+    }
+}
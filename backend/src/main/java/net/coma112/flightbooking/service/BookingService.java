@@ -1,11 +1,24 @@
 package net.coma112.flightbooking.service;
 
+import net.coma112.flightbooking.dto.BookingPage;
 import net.coma112.flightbooking.dto.BookingRequest;
 import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.dto.GroupBookingRequest;
+import net.coma112.flightbooking.dto.GroupBookingResponse;
+import net.coma112.flightbooking.model.enums.BookingStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface BookingService {
     BookingResponse createBooking(BookingRequest request);
+    GroupBookingResponse createGroupBooking(GroupBookingRequest request);
     BookingResponse getBookingByReference(String reference);
+    BookingPage getBookingsByPassenger(String email, String cursor, int size);
+    BookingPage getBookingsByStatus(BookingStatus status, String cursor, int size);
+    void streamBookingsByPassenger(String email, OutputStream output) throws IOException;
+    void streamBookingsByStatus(BookingStatus status, OutputStream output) throws IOException;
     void cancelBooking(String reference);
     BookingResponse confirmBooking(String reference);
+    BookingResponse confirmBooking(String reference, String paymentMethod);
 }
\ No newline at end of file
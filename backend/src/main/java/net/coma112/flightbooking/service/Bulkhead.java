@@ -0,0 +1,219 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.exception.ServiceUnavailableException;
+import org.jspecify.annotations.NonNull;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Válaszfal egy külső szolgáltatás (Stripe, SMTP) hívásai köré.
+ * - egyszerre legfeljebb maxConcurrency hívás fut; ha maxWait alatt sem szabadul fel hely, azonnal elutasítjuk
+ * - a hívás saját virtuális szálon fut, a hívó legfeljebb timeout ideig vár rá; timeout = 0 esetén a hívás végéig,
+ *   ahol a félbehagyott hívás kimenete bizonytalan (SMTP: a levél ettől még kimehet), és csak a kliens könyvtár
+ *   socket időkorlátai számítanak
+ * - a hely a hívás tényleges végéig foglalt marad, akkor is, ha a hívó már feladta a várakozást: egy beragadt
+ *   kapcsolat így nem szabadít fel helyet, amíg a kliens könyvtár saját időkorlátja le nem járt; ha viszont a hívó
+ *   még az indulás előtt adja fel, a hívás el sem indul, és a helyet a hívó adja vissza
+ * Így egy lassú külső szolgáltatás legfeljebb maxConcurrency szálat köt le, a többi kérés (pl. keresés) érintetlen.
+ */
+public final class Bulkhead implements AutoCloseable {
+    private final String name;
+    private final int maxConcurrency;
+    private final Duration maxWait;
+    private final Duration timeout;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    private final LongAdder successfulCalls = new LongAdder();
+    private final LongAdder failedCalls = new LongAdder();
+    private final LongAdder rejectedCalls = new LongAdder();
+    private final LongAdder timedOutCalls = new LongAdder();
+    private final LongAdder callLatencyNanos = new LongAdder();
+    private final AtomicLong maxCallLatencyNanos = new AtomicLong();
+
+    public Bulkhead(@NonNull String name, int maxConcurrency, @NonNull Duration maxWait, @NonNull Duration timeout) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("A(z) " + name + " válaszfal max-concurrency értékének pozitívnak kell lennie");
+        }
+
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.maxWait = maxWait;
+        this.timeout = timeout;
+        this.permits = new Semaphore(maxConcurrency);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bulkhead-" + name + "-", 0).factory());
+    }
+
+    // a hívás kivételét változatlanul továbbdobja; elutasítás és időtúllépés esetén ServiceUnavailableException
+    public <T, E extends Exception> T call(@NonNull Call<T, E> call) throws E {
+        acquire();
+
+        long start = System.nanoTime();
+        Permit permit = new Permit(permits);
+        FutureTask<T> task = new FutureTask<>(() -> {
+            // a hívó közben feladta, és már visszaadta a helyet
+            if (!permit.start()) {
+                return null;
+            }
+
+            try {
+                return call.call();
+            } finally {
+                permit.release();
+            }
+        });
+
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException exception) {
+            permit.releaseUnstarted();
+            throw exception;
+        }
+
+        try {
+            T result = timeout.isZero() ? task.get() : task.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            recordLatency(System.nanoTime() - start);
+            successfulCalls.increment();
+            return result;
+        } catch (TimeoutException exception) {
+            abandon(task, permit);
+            timedOutCalls.increment();
+            throw new ServiceUnavailableException("A(z) " + name + " szolgáltatás nem válaszolt " + timeout.toMillis() + " ms alatt");
+        } catch (InterruptedException exception) {
+            abandon(task, permit);
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("A(z) " + name + " hívás megszakadt");
+        } catch (ExecutionException exception) {
+            recordLatency(System.nanoTime() - start);
+            failedCalls.increment();
+            throw Bulkhead.<E>rethrow(exception.getCause());
+        }
+    }
+
+    public @NonNull String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getActiveCalls() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    public long getSuccessfulCalls() {
+        return successfulCalls.sum();
+    }
+
+    public long getFailedCalls() {
+        return failedCalls.sum();
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.sum();
+    }
+
+    public long getTimedOutCalls() {
+        return timedOutCalls.sum();
+    }
+
+    public double getAverageCallLatencyMillis() {
+        long calls = successfulCalls.sum() + failedCalls.sum();
+        return calls == 0 ? 0.0 : callLatencyNanos.sum() / 1_000_000.0 / calls;
+    }
+
+    public double getMaxCallLatencyMillis() {
+        return maxCallLatencyNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void acquire() {
+        boolean acquired;
+
+        try {
+            acquired = maxWait.isZero()
+                    ? permits.tryAcquire()
+                    : permits.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("A(z) " + name + " hívás megszakadt");
+        }
+
+        if (!acquired) {
+            rejectedCalls.increment();
+            throw new ServiceUnavailableException("A(z) " + name + " szolgáltatás túlterhelt, kérjük próbálja újra később");
+        }
+    }
+
+    // a futó hívást megszakítjuk (a helyét a saját finally-ja adja vissza), az el sem indultét itt engedjük el
+    private static void abandon(@NonNull FutureTask<?> task, @NonNull Permit permit) {
+        task.cancel(true);
+        permit.releaseUnstarted();
+    }
+
+    private void recordLatency(long elapsed) {
+        callLatencyNanos.add(elapsed);
+        maxCallLatencyNanos.accumulateAndGet(elapsed, Math::max);
+    }
+
+    // a Call csak E típusú ellenőrzött kivételt dobhat, így a cast biztonságos
+    @SuppressWarnings("unchecked")
+    private static <E extends Exception> @NonNull E rethrow(@NonNull Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+
+        if (cause instanceof Error error) {
+            throw error;
+        }
+
+        return (E) cause;
+    }
+
+    /**
+     * Egy hívás helye, amit pontosan egyszer adunk vissza: vagy a hívás végén, vagy - ha a hívó előbb feladta,
+     * mint hogy a virtuális szál elindult volna - a hívó oldalán. A két út közül a CAS dönt.
+     */
+    private static final class Permit {
+        private static final int WAITING = 0;
+        private static final int RUNNING = 1;
+        private static final int RELEASED = 2;
+
+        private final Semaphore permits;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        private Permit(@NonNull Semaphore permits) {
+            this.permits = permits;
+        }
+
+        private boolean start() {
+            return state.compareAndSet(WAITING, RUNNING);
+        }
+
+        private void release() {
+            if (state.compareAndSet(RUNNING, RELEASED)) {
+                permits.release();
+            }
+        }
+
+        private void releaseUnstarted() {
+            if (state.compareAndSet(WAITING, RELEASED)) {
+                permits.release();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+}
@@ -0,0 +1,281 @@
+package net.coma112.flightbooking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.event.FlightChangedEvent;
+import net.coma112.flightbooking.model.enums.FlightStatus;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.repository.projection.FlightLeg;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Átszállásos útvonalkereső egy memóriabeli, időrendezett gráf felett.
+ * Reptérenként az induló járatok indulási idő szerint rendezve vannak, így egy átszállási ablak
+ * (érkezés + min. átszállási idő .. érkezés + max. átszállási idő) egy részhalmaz lekérés, SQL join nélkül.
+ * Induláskor és ütemezetten teljesen újraépül (a mock adatok közvetlenül az adatbázisba kerülnek),
+ * a JPA-n keresztüli járatváltozásokat pedig egyenként frissítjük.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConnectionSearchEngine {
+    private static final Comparator<Leg> BY_DEPARTURE = Comparator
+            .comparing(Leg::departureTime)
+            .thenComparingLong(Leg::flightId);
+
+    private final FlightRepository flightRepository;
+
+    @Value("${connection-search.min-connection:PT45M}")
+    private Duration minConnection;
+
+    @Value("${connection-search.max-connection:PT12H}")
+    private Duration maxConnection;
+
+    @Value("${connection-search.max-results:50}")
+    private int maxResults;
+
+    private volatile Graph graph = new Graph();
+
+    // a teljes újraépítés és az egyenkénti frissítés kizárja egymást; mindkettő lekérdez, ezért ReentrantLock
+    private final ReentrantLock graphLock = new ReentrantLock();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${connection-search.rebuild-interval-ms:300000}", initialDelayString = "${connection-search.rebuild-interval-ms:300000}")
+    public void rebuild() {
+        graphLock.lock();
+        try {
+            Graph rebuilt = new Graph();
+
+            for (FlightLeg flightLeg : flightRepository.findLegsDepartingAfter(LocalDateTime.now())) {
+                if (isBookable(flightLeg)) {
+                    rebuilt.add(toLeg(flightLeg));
+                }
+            }
+
+            graph = rebuilt;
+            log.info("Útvonal gráf felépítve: {} járat", rebuilt.legsByFlight.size());
+        } finally {
+            graphLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(@NonNull FlightChangedEvent event) {
+        graphLock.lock();
+        try {
+            graph.remove(event.flightId());
+
+            flightRepository.findLegById(event.flightId())
+                    .filter(flightLeg -> isBookable(flightLeg) && flightLeg.getDepartureTime().isAfter(LocalDateTime.now()))
+                    .ifPresent(flightLeg -> graph.add(toLeg(flightLeg)));
+        } finally {
+            graphLock.unlock();
+        }
+    }
+
+    /**
+     * Egy- és kétátszállásos útvonalak az adott napon induló első járattal.
+     * A találatok járat id láncok, teljes utazási idő szerint rendezve.
+     * Csak a legjobb maxResults darabot tartjuk meg; ha a lista már tele van, egy ág bejárása leáll, amint az
+     * indulási időből látszik, hogy a folytatás csak hosszabb utat adhat a leglassabb megtartottnál.
+     */
+    public @NonNull List<List<Long>> findConnections(@NonNull Long originId, @NonNull Long destinationId,
+                                                     @NonNull LocalDateTime from, @NonNull LocalDateTime to, int maxStops) {
+        Graph current = graph;
+        TopItineraries best = new TopItineraries(maxResults);
+
+        for (Leg first : current.departures(originId, from, to)) {
+            if (first.toAirportId().equals(destinationId)) {
+                continue; // közvetlen járat, azt a sima keresés adja
+            }
+
+            // egy átszállásnál csak a célba tartó második járatok számítanak
+            NavigableSet<Leg> seconds = maxStops < 2
+                    ? current.connectionsAfter(first, destinationId, minConnection, maxConnection)
+                    : current.connectionsAfter(first, minConnection, maxConnection);
+
+            for (Leg second : seconds) {
+                // indulási idő szerint rendezett: innen minden út legalább ilyen hosszú
+                if (best.cannotImprove(first, second.departureTime())) {
+                    break;
+                }
+
+                if (second.toAirportId().equals(originId)) {
+                    continue;
+                }
+
+                if (second.toAirportId().equals(destinationId)) {
+                    best.offer(List.of(first, second));
+                    continue;
+                }
+
+                for (Leg third : current.connectionsAfter(second, destinationId, minConnection, maxConnection)) {
+                    if (best.cannotImprove(first, third.departureTime())) {
+                        break;
+                    }
+
+                    best.offer(List.of(first, second, third));
+                }
+            }
+        }
+
+        return best.sorted().stream()
+                .map(legs -> legs.stream().map(Leg::flightId).toList())
+                .toList();
+    }
+
+    private static boolean isBookable(@NonNull FlightLeg flightLeg) {
+        return flightLeg.getStatus() == FlightStatus.SCHEDULED || flightLeg.getStatus() == FlightStatus.DELAYED;
+    }
+
+    private static @NonNull Leg toLeg(@NonNull FlightLeg flightLeg) {
+        return new Leg(
+                flightLeg.getId(),
+                flightLeg.getDepartureAirportId(),
+                flightLeg.getArrivalAirportId(),
+                flightLeg.getDepartureTime(),
+                flightLeg.getArrivalTime()
+        );
+    }
+
+    private record Leg(long flightId, Long fromAirportId, Long toAirportId, LocalDateTime departureTime, LocalDateTime arrivalTime) {}
+
+    private record Route(Long fromAirportId, Long toAirportId) {}
+
+    /**
+     * A legjobb n útvonal egy fordított (a leglassabbat a tetején tartó) kupacban.
+     * A sorrend a teljes utazási idő, aztán a lábak indulása egyenként: ugyanaz, mint a bejárási sorrend stabil rendezése.
+     */
+    private static final class TopItineraries {
+        private static final Comparator<List<Leg>> ORDER = Comparator
+                .comparing(TopItineraries::duration)
+                .thenComparing(TopItineraries::compareLegs);
+
+        private final int limit;
+        private final PriorityQueue<List<Leg>> slowestFirst;
+
+        private TopItineraries(int limit) {
+            this.limit = limit;
+            this.slowestFirst = new PriorityQueue<>(Math.max(1, limit) + 1, ORDER.reversed());
+        }
+
+        private void offer(@NonNull List<Leg> legs) {
+            if (slowestFirst.size() < limit) {
+                slowestFirst.add(legs);
+            } else if (limit > 0 && ORDER.compare(legs, slowestFirst.peek()) < 0) {
+                slowestFirst.poll();
+                slowestFirst.add(legs);
+            }
+        }
+
+        // a first-tel kezdődő, departure után induló lábbal folytatott út már nem kerülhet be
+        private boolean cannotImprove(@NonNull Leg first, @NonNull LocalDateTime departure) {
+            return slowestFirst.size() >= limit
+                    && (limit == 0 || Duration.between(first.departureTime(), departure).compareTo(duration(slowestFirst.peek())) > 0);
+        }
+
+        private @NonNull List<List<Leg>> sorted() {
+            List<List<Leg>> itineraries = new ArrayList<>(slowestFirst);
+            itineraries.sort(ORDER);
+            return itineraries;
+        }
+
+        private static @NonNull Duration duration(@NonNull List<Leg> legs) {
+            return Duration.between(legs.getFirst().departureTime(), legs.getLast().arrivalTime());
+        }
+
+        private static int compareLegs(@NonNull List<Leg> left, @NonNull List<Leg> right) {
+            for (int i = 0; i < Math.min(left.size(), right.size()); i++) {
+                int compared = BY_DEPARTURE.compare(left.get(i), right.get(i));
+                if (compared != 0) {
+                    return compared;
+                }
+            }
+
+            return Integer.compare(left.size(), right.size());
+        }
+    }
+
+    private static final class Graph {
+        private final ConcurrentHashMap<Long, ConcurrentSkipListSet<Leg>> departuresByAirport = new ConcurrentHashMap<>();
+        // ugyanezek a járatok útvonalanként: a célba tartó utolsó lábnál nem kell a reptér összes indulását végignézni
+        private final ConcurrentHashMap<Route, ConcurrentSkipListSet<Leg>> departuresByRoute = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<Long, Leg> legsByFlight = new ConcurrentHashMap<>();
+
+        private void add(@NonNull Leg leg) {
+            if (leg.fromAirportId() == null || leg.toAirportId() == null
+                    || leg.departureTime() == null || leg.arrivalTime() == null) {
+                return;
+            }
+
+            legsByFlight.put(leg.flightId(), leg);
+            departuresByAirport
+                    .computeIfAbsent(leg.fromAirportId(), id -> new ConcurrentSkipListSet<>(BY_DEPARTURE))
+                    .add(leg);
+            departuresByRoute
+                    .computeIfAbsent(new Route(leg.fromAirportId(), leg.toAirportId()), route -> new ConcurrentSkipListSet<>(BY_DEPARTURE))
+                    .add(leg);
+        }
+
+        private void remove(@NonNull Long flightId) {
+            Leg leg = legsByFlight.remove(flightId);
+
+            if (leg != null) {
+                ConcurrentSkipListSet<Leg> departures = departuresByAirport.get(leg.fromAirportId());
+                if (departures != null) {
+                    departures.remove(leg);
+                }
+
+                ConcurrentSkipListSet<Leg> routeDepartures = departuresByRoute.get(new Route(leg.fromAirportId(), leg.toAirportId()));
+                if (routeDepartures != null) {
+                    routeDepartures.remove(leg);
+                }
+            }
+        }
+
+        private @NonNull NavigableSet<Leg> departures(@NonNull Long airportId, @NonNull LocalDateTime from, @NonNull LocalDateTime to) {
+            return window(departuresByAirport.get(airportId), from, to);
+        }
+
+        private @NonNull NavigableSet<Leg> connectionsAfter(@NonNull Leg arriving, @NonNull Duration minConnection, @NonNull Duration maxConnection) {
+            return departures(
+                    arriving.toAirportId(),
+                    arriving.arrivalTime().plus(minConnection),
+                    arriving.arrivalTime().plus(maxConnection)
+            );
+        }
+
+        private @NonNull NavigableSet<Leg> connectionsAfter(@NonNull Leg arriving, @NonNull Long destinationId,
+                                                            @NonNull Duration minConnection, @NonNull Duration maxConnection) {
+            return window(
+                    departuresByRoute.get(new Route(arriving.toAirportId(), destinationId)),
+                    arriving.arrivalTime().plus(minConnection),
+                    arriving.arrivalTime().plus(maxConnection)
+            );
+        }
+
+        private static @NonNull NavigableSet<Leg> window(ConcurrentSkipListSet<Leg> departures, @NonNull LocalDateTime from, @NonNull LocalDateTime to) {
+            if (departures == null) {
+                return Collections.emptyNavigableSet();
+            }
+
+            return departures.subSet(
+                    new Leg(Long.MIN_VALUE, null, null, from, null), true,
+                    new Leg(Long.MAX_VALUE, null, null, to, null), true
+            );
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package net.coma112.flightbooking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.exception.ResourceNotFoundException;
+import net.coma112.flightbooking.model.EmailOutbox;
+import net.coma112.flightbooking.model.enums.OutboxStatus;
+import net.coma112.flightbooking.repository.EmailOutboxRepository;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Az email_outbox tábla ürítése a háttérben.
+ * Az esedékes üzeneteket kötegekben, SKIP LOCKED zárolással vesszük ki, és a küldés idejére SENDING állapotba
+ * tesszük egy lease-szel, így a küldés alatt nem tartunk nyitva tranzakciót. A küldés virtuális szálakon megy; az egyszerre futó SMTP hívásokat az EmailService
+ * smtp válaszfala korlátozza. Sikertelen (vagy a válaszfal által elutasított) küldés után exponenciális várakozással
+ * újrapróbáljuk, a max-attempts elérése után FAILED státuszba kerül. A válaszfal egy megkezdett küldést nem ad fel
+ * (ami így tovább futva még kimehetne), a levél Message-ID-ja pedig foglalásonként állandó, így az újrapróbálás
+ * legfeljebb egy a fogadó által kiszűrhető másolatot küld. Ha a levél kiment, de a SENT jelölés nem sikerül,
+ * csak naplózunk: a sor SENDING marad, és nem számít sikertelen küldésnek, ami hamarosan újra kiküldené.
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailOutboxRepository outboxRepository;
+    private final BookingService bookingService;
+    private final EmailService emailService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // a sikeres küldések ideje (foglalás betöltése + SMTP) és a sikertelen próbálkozások száma
+    private final Timer sendTimer;
+    private final Counter failedAttempts;
+
+    @Value("${email-outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${email-outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${email-outbox.initial-backoff:PT30S}")
+    private Duration initialBackoff;
+
+    @Value("${email-outbox.max-backoff:PT1H}")
+    private Duration maxBackoff;
+
+    // ha a példány küldés közben leáll, ennyi idő után vesszük újra
+    @Value("${email-outbox.lease:PT5M}")
+    private Duration lease;
+
+    public EmailOutboxDispatcher(
+            EmailOutboxRepository outboxRepository,
+            BookingService bookingService,
+            EmailService emailService,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry
+    ) {
+        this.outboxRepository = outboxRepository;
+        this.bookingService = bookingService;
+        this.emailService = emailService;
+        this.transactionTemplate = transactionTemplate;
+        this.sendTimer = Timer.builder("email.outbox.send")
+                .description("Visszaigazoló emailek kiküldése")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.failedAttempts = Counter.builder("email.outbox.failed")
+                .description("Sikertelen küldési próbálkozások")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${email-outbox.poll-interval-ms:2000}")
+    public void drain() {
+        List<EmailOutbox> batch;
+
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            batch = transactionTemplate.execute(status -> claimBatch(now));
+            dispatch(batch);
+        } while (batch.size() == batchSize && !Thread.currentThread().isInterrupted());
+    }
+
+    public long getQueueDepth() {
+        return outboxRepository.countByStatus(OutboxStatus.PENDING);
+    }
+
+    public long getFailedAttempts() {
+        return (long) failedAttempts.count();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private @NonNull List<EmailOutbox> claimBatch(@NonNull LocalDateTime now) {
+        List<EmailOutbox> due = outboxRepository.lockDue(now, batchSize);
+
+        if (!due.isEmpty()) {
+            outboxRepository.lease(due.stream().map(EmailOutbox::getId).toList(), now.plus(lease));
+        }
+
+        return due;
+    }
+
+    private void dispatch(@NonNull List<EmailOutbox> batch) {
+        List<Future<?>> sends = batch.stream()
+                .<Future<?>>map(message -> executor.submit(() -> send(message)))
+                .toList();
+
+        for (Future<?> send : sends) {
+            try {
+                send.get();
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException exception) {
+                log.error(exception.getMessage(), exception);
+            }
+        }
+    }
+
+    private void send(@NonNull EmailOutbox message) {
+        try {
+            long start = System.nanoTime();
+
+            BookingResponse booking = bookingService.getBookingByReference(message.getBookingReference());
+            emailService.sendBookingConfirmationEmail(booking, message.getPaymentMethod());
+
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception exception) {
+            onFailure(message, exception);
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> outboxRepository.markSent(message.getId(), LocalDateTime.now()));
+        } catch (RuntimeException exception) {
+            log.error("A(z) {} foglalás visszaigazoló emailje kiment, de nem sikerült elküldöttnek jelölni",
+                    message.getBookingReference(), exception);
+        }
+    }
+
+    private void onFailure(@NonNull EmailOutbox message, @NonNull Exception exception) {
+        failedAttempts.increment();
+
+        int attempts = message.getAttempts() + 1;
+
+        // törölt foglalásnál nincs mit újrapróbálni
+        boolean giveUp = attempts >= maxAttempts || exception instanceof ResourceNotFoundException;
+        OutboxStatus status = giveUp ? OutboxStatus.FAILED : OutboxStatus.PENDING;
+        LocalDateTime nextAttemptAt = LocalDateTime.now().plus(backoff(attempts));
+
+        String error = String.valueOf(exception.getMessage());
+        if (error.length() > MAX_ERROR_LENGTH) {
+            error = error.substring(0, MAX_ERROR_LENGTH);
+        }
+
+        String lastError = error;
+        transactionTemplate.executeWithoutResult(tx ->
+                outboxRepository.markFailedAttempt(message.getId(), status, nextAttemptAt, lastError));
+
+        if (giveUp) {
+            log.error("A(z) {} foglalás visszaigazoló emailje {} próbálkozás után sem ment ki: {}",
+                    message.getBookingReference(), attempts, lastError);
+        } else {
+            log.warn("A(z) {} foglalás visszaigazoló emailje nem ment ki ({}. próbálkozás), újra: {}",
+                    message.getBookingReference(), attempts, nextAttemptAt);
+        }
+    }
+
+    // initial-backoff * 2^(attempts - 1), max-backoff felett levágva
+    private @NonNull Duration backoff(int attempts) {
+        Duration backoff = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+}
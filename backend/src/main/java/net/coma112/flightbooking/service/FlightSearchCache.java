@@ -0,0 +1,204 @@
+package net.coma112.flightbooking.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import net.coma112.flightbooking.dto.FlightResponse;
+import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.event.FlightChangedEvent;
+import net.coma112.flightbooking.event.SeatAvailabilityChangedEvent;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.service.ReferenceDataCache.AirportRef;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Keresési találatok cache-e (indulás, érkezés, nap, osztály) kulccsal, méret és TTL alapú kiürítéssel.
+ * Járatonként számon tartjuk, mely kulcsokban szerepel, így egy foglalás vagy lemondás után
+ * csak az érintett kereséseket dobjuk el. A helyszám változását a SeatInventory jelzi, miután
+ * a tranzakció lezárult és a memóriabeli készlet is rendeződött; a járat változásai commit után érkeznek.
+ * Egy betöltés eredménye csak akkor kerül be, ha közben sem a benne szereplő járatokat,
+ * sem az útvonal + nap kulcsát nem érvénytelenítették; máshol történt foglalás nem akadályozza.
+ */
+@Component
+public class FlightSearchCache {
+    // ennél tovább tartó betöltés eredményét nem tesszük be, mert a közbeni érvénytelenítések nyoma már eltűnhetett
+    private static final Duration INVALIDATION_RETENTION = Duration.ofMinutes(1);
+
+    private final Cache<SearchKey, List<FlightResponse>> cache;
+    private final ReferenceDataCache referenceData;
+
+    // járat id -> azok a kulcsok, amelyek találatai között szerepel
+    private final ConcurrentHashMap<Long, Set<SearchKey>> keysByFlight = new ConcurrentHashMap<>();
+
+    // az érvénytelenítések sorszáma; a betöltés az indulásakori értéket veti össze a lenti nyilvántartásokkal
+    private final AtomicLong sequence = new AtomicLong();
+    // járat id / útvonal + nap -> utolsó érvénytelenítés sorszáma, amíg egy betöltés még láthatja
+    private final Cache<Long, Long> invalidatedFlights;
+    private final Cache<RouteDay, Long> invalidatedRouteDays;
+    private final AtomicLong lastFullInvalidation = new AtomicLong();
+    private final long maxLoadNanos;
+
+    public FlightSearchCache(
+            ReferenceDataCache referenceData,
+            @Value("${flight-search-cache.max-size:10000}") long maxSize,
+            @Value("${flight-search-cache.ttl:PT30S}") Duration ttl
+    ) {
+        this.referenceData = referenceData;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .executor(Runnable::run)
+                .removalListener((SearchKey key, List<FlightResponse> flights, RemovalCause cause) -> {
+                    // felülírásnál az új érték már beregisztrálta ugyanezt a kulcsot
+                    if (cause != RemovalCause.REPLACED) {
+                        unindex(key, flights);
+                    }
+                })
+                .build();
+        this.invalidatedFlights = Caffeine.newBuilder().expireAfterWrite(INVALIDATION_RETENTION).build();
+        this.invalidatedRouteDays = Caffeine.newBuilder().expireAfterWrite(INVALIDATION_RETENTION).build();
+        this.maxLoadNanos = INVALIDATION_RETENTION.toNanos();
+    }
+
+    public @NonNull List<FlightResponse> get(@NonNull FlightSearchRequest request, @NonNull Supplier<List<FlightResponse>> loader) {
+        SearchKey key = new SearchKey(
+                request.getDepartureAirportCode(),
+                request.getArrivalAirportCode(),
+                request.getDepartureDate(),
+                request.getSeatClass()
+        );
+
+        List<FlightResponse> cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long loadedAfter = sequence.get();
+        long startedNanos = System.nanoTime();
+        List<FlightResponse> flights = List.copyOf(loader.get());
+
+        if (System.nanoTime() - startedNanos > maxLoadNanos) {
+            return flights;
+        }
+
+        // előbb indexelünk és beteszünk, utána ellenőrzünk: egy közben futó érvénytelenítés
+        // vagy már megtalálja a kulcsot, vagy mi látjuk az általa hagyott nyomot, és kivesszük
+        for (FlightResponse flight : flights) {
+            keysByFlight.computeIfAbsent(flight.getId(), id -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+        cache.put(key, flights);
+
+        if (invalidatedSince(loadedAfter, key, flights)) {
+            cache.asMap().remove(key, flights);
+        }
+
+        return flights;
+    }
+
+    @EventListener
+    public void onSeatAvailabilityChanged(@NonNull SeatAvailabilityChangedEvent event) {
+        invalidateFlight(event.flightId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFlightChanged(@NonNull FlightChangedEvent event) {
+        invalidateFlight(event.flightId());
+
+        // új járat még egy kulcsban sem szerepel, ezért az útvonal + nap összes keresését eldobjuk
+        if (event.departureAirportId() == null || event.arrivalAirportId() == null || event.departureDate() == null) {
+            return;
+        }
+
+        Optional<AirportRef> departure = referenceData.findAirportById(event.departureAirportId());
+        Optional<AirportRef> arrival = referenceData.findAirportById(event.arrivalAirportId());
+
+        // ismeretlen reptér: nem tudjuk, mely kulcsok érintettek, mindent eldobunk
+        if (departure.isEmpty() || arrival.isEmpty()) {
+            invalidateAll();
+            return;
+        }
+
+        String departureCode = departure.get().iataCode();
+        String arrivalCode = arrival.get().iataCode();
+
+        RouteDay routeDay = new RouteDay(departureCode, arrivalCode, event.departureDate());
+
+        invalidatedRouteDays.put(routeDay, sequence.incrementAndGet());
+        cache.asMap().keySet().removeIf(key -> key.routeDay().equals(routeDay));
+    }
+
+    public void invalidateAll() {
+        lastFullInvalidation.set(sequence.incrementAndGet());
+        cache.invalidateAll();
+    }
+
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    private void invalidateFlight(Long flightId) {
+        invalidatedFlights.put(flightId, sequence.incrementAndGet());
+
+        Set<SearchKey> keys = keysByFlight.remove(flightId);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private boolean invalidatedSince(long loadedAfter, SearchKey key, List<FlightResponse> flights) {
+        if (lastFullInvalidation.get() > loadedAfter || isAfter(invalidatedRouteDays.getIfPresent(key.routeDay()), loadedAfter)) {
+            return true;
+        }
+
+        for (FlightResponse flight : flights) {
+            if (isAfter(invalidatedFlights.getIfPresent(flight.getId()), loadedAfter)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean isAfter(Long invalidation, long loadedAfter) {
+        return invalidation != null && invalidation > loadedAfter;
+    }
+
+    private void unindex(SearchKey key, List<FlightResponse> flights) {
+        if (key == null || flights == null) {
+            return;
+        }
+
+        for (FlightResponse flight : flights) {
+            keysByFlight.computeIfPresent(flight.getId(), (id, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private record SearchKey(String departure, String arrival, LocalDate date, SeatClass seatClass) {
+        RouteDay routeDay() {
+            return new RouteDay(departure, arrival, date);
+        }
+    }
+
+    private record RouteDay(String departure, String arrival, LocalDate date) {}
+}
@@ -1,7 +1,11 @@
 package net.coma112.flightbooking.service;
 
+import net.coma112.flightbooking.dto.FareCalendarRequest;
+import net.coma112.flightbooking.dto.FareCalendarResponse;
 import net.coma112.flightbooking.dto.FlightResponse;
 import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.dto.ItineraryResponse;
+import net.coma112.flightbooking.dto.SeatMapResponse;
 import net.coma112.flightbooking.model.Seat;
 import net.coma112.flightbooking.model.enums.SeatClass;
 
@@ -9,6 +13,9 @@ import java.util.List;
 
 public interface FlightService {
     List<FlightResponse> searchFlights(FlightSearchRequest request);
+    List<ItineraryResponse> searchConnections(FlightSearchRequest request);
+    FareCalendarResponse getFareCalendar(FareCalendarRequest request);
     FlightResponse getFlightById(Long id);
     List<Seat> getAvailableSeats(Long flightId, SeatClass seatClass);
+    SeatMapResponse getSeatMap(Long flightId);
 }
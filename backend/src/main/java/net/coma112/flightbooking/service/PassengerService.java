@@ -7,7 +7,11 @@ import net.coma112.flightbooking.repository.PassengerRepository;
 import org.jspecify.annotations.NonNull;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -28,6 +32,23 @@ public class PassengerService {
         }
     }
 
+    // csoportos foglaláshoz: egy lekérdezés a meglévő utasokra, utána egy saveAll
+    public List<Passenger> createOrUpdatePassengers(@NonNull List<PassengerDTO> dtos) {
+        Map<String, Passenger> existingPassengers = passengerRepository.findByEmailIn(dtos.stream().map(PassengerDTO::getEmail).toList())
+                .stream()
+                .collect(Collectors.toMap(Passenger::getEmail, Function.identity(), (first, second) -> first));
+
+        List<Passenger> passengers = dtos.stream()
+                .map(dto -> {
+                    Passenger passenger = existingPassengers.getOrDefault(dto.getEmail(), new Passenger());
+                    updatePassengerFromDTO(passenger, dto);
+                    return passenger;
+                })
+                .toList();
+
+        return passengerRepository.saveAll(passengers);
+    }
+
     public Optional<Passenger> findByEmail(String email) {
         return passengerRepository.findByEmail(email);
     }
@@ -0,0 +1,210 @@
+package net.coma112.flightbooking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.model.EmailOutbox;
+import net.coma112.flightbooking.model.PaymentEvent;
+import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.model.enums.OutboxStatus;
+import net.coma112.flightbooking.model.enums.PaymentEventStatus;
+import net.coma112.flightbooking.repository.BookingRepository;
+import net.coma112.flightbooking.repository.EmailOutboxRepository;
+import net.coma112.flightbooking.repository.PaymentEventRepository;
+import net.coma112.flightbooking.repository.projection.PendingPaymentRow;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * A payment_events sor feldolgozása: kifizetett foglalások megerősítése kötegekben.
+ * Egy köteg egy tranzakció: az eseményeket SKIP LOCKED-del vesszük ki, a hozzájuk tartozó még PENDING foglalásokat
+ * zároljuk, és egyetlen UPDATE-tel erősítjük meg; a visszaigazoló emailek JDBC kötegben kerülnek az outboxba.
+ * A már megerősített foglaláshoz tartozó esemény (újraküldés, második fizetési esemény) feldolgozottnak számít.
+ * Ha viszont a foglalás közben lejárt vagy lemondták, a pénz már nálunk van, de ülést nem adunk érte: az ilyen eseményt
+ * ORPHANED_PAYMENT státuszba tesszük, a takarítás nem törli, és a payment.events.orphaned metrikán riasztunk rá,
+ * hogy a visszatérítés kézzel megtörténjen.
+ * PENDING foglalást csak olyan esemény erősít meg, amelynek beszedett összege és pénzneme pontosan a foglalás ára;
+ * az eltérő eseményt AMOUNT_MISMATCH státuszba tesszük, a foglalás PENDING marad (és a tartása lejárhat).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentEventConsumer {
+    private final PaymentEventRepository paymentEventRepository;
+    private final BookingRepository bookingRepository;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${payment-webhook.batch-size:500}")
+    private int batchSize;
+
+    // ennyi ideig tartjuk meg a feldolgozott eseményeket a duplikátumok kiszűréséhez
+    @Value("${payment-webhook.retention:P7D}")
+    private Duration retention;
+
+    private final AtomicLong processedEvents = new AtomicLong();
+    private final AtomicLong confirmedBookings = new AtomicLong();
+    private final AtomicLong orphanedPayments = new AtomicLong();
+    private final AtomicLong mismatchedPayments = new AtomicLong();
+
+    @Scheduled(fixedDelayString = "${payment-webhook.poll-interval-ms:200}")
+    public void drain() {
+        int batch;
+
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            batch = transactionTemplate.execute(status -> processBatch(now));
+        } while (batch == batchSize && !Thread.currentThread().isInterrupted());
+    }
+
+    @Scheduled(fixedDelayString = "${payment-webhook.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        LocalDateTime before = LocalDateTime.now().minus(retention);
+        transactionTemplate.executeWithoutResult(status -> paymentEventRepository.deleteProcessedBefore(before));
+    }
+
+    public long getQueueDepth() {
+        return paymentEventRepository.countByStatus(PaymentEventStatus.PENDING);
+    }
+
+    // a visszatérítésre váró, félretett események száma (COUNT lekérdezés)
+    public long getOrphanedQueueDepth() {
+        return paymentEventRepository.countByStatus(PaymentEventStatus.ORPHANED_PAYMENT);
+    }
+
+    public long getOrphanedPayments() {
+        return orphanedPayments.get();
+    }
+
+    // ellenőrzésre váró, hibás összegű vagy pénznemű fizetések (COUNT lekérdezés)
+    public long getAmountMismatchQueueDepth() {
+        return paymentEventRepository.countByStatus(PaymentEventStatus.AMOUNT_MISMATCH);
+    }
+
+    public long getMismatchedPayments() {
+        return mismatchedPayments.get();
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents.get();
+    }
+
+    public long getConfirmedBookings() {
+        return confirmedBookings.get();
+    }
+
+    private int processBatch(@NonNull LocalDateTime now) {
+        List<PaymentEvent> events = paymentEventRepository.lockPending(batchSize);
+
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        Set<String> references = events.stream().map(PaymentEvent::getBookingReference).collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<String, PendingPaymentRow> pendingByReference = bookingRepository.lockPendingByReferences(references).stream()
+                .collect(Collectors.toMap(PendingPaymentRow::getBookingReference, Function.identity()));
+
+        // PENDING foglaláshoz csak a pontosan az árát (és HUF-ban) hozó esemény erősíthet; több jó esemény közül az első fizetési módja számít
+        Map<String, String> paymentMethods = new LinkedHashMap<>();
+        List<PaymentEvent> mismatched = new ArrayList<>();
+
+        for (PaymentEvent event : events) {
+            PendingPaymentRow booking = pendingByReference.get(event.getBookingReference());
+
+            if (booking == null) {
+                continue;
+            }
+
+            if (paysFor(event, booking)) {
+                paymentMethods.putIfAbsent(booking.getBookingReference(), event.getPaymentMethod());
+            } else {
+                mismatched.add(event);
+            }
+        }
+
+        List<PendingPaymentRow> confirmed = pendingByReference.values().stream()
+                .filter(booking -> paymentMethods.containsKey(booking.getBookingReference()))
+                .toList();
+
+        if (!confirmed.isEmpty()) {
+            // a sorok zárolva vannak, így a feltételes UPDATE az összeset megerősíti
+            bookingRepository.confirmPendingIn(confirmed.stream().map(PendingPaymentRow::getId).toList());
+
+            emailOutboxRepository.saveAll(confirmed.stream()
+                    .map(booking -> new EmailOutbox(null, booking.getBookingReference(), paymentMethods.get(booking.getBookingReference()),
+                            OutboxStatus.PENDING, 0, now, now, null, null))
+                    .toList());
+        }
+
+        List<String> notPending = references.stream().filter(reference -> !pendingByReference.containsKey(reference)).toList();
+
+        // a nem PENDING foglalások közül csak a már megerősítettekhez tartozó esemény duplikátum, a többi gazdátlan fizetés
+        Set<String> orphanedReferences = new HashSet<>(notPending);
+        if (!notPending.isEmpty()) {
+            bookingRepository.findReferencesByStatus(notPending, BookingStatus.CONFIRMED).forEach(orphanedReferences::remove);
+        }
+
+        Set<Long> mismatchedIds = mismatched.stream().map(PaymentEvent::getId).collect(Collectors.toSet());
+
+        Map<Boolean, List<PaymentEvent>> byOrphaned = events.stream()
+                .filter(event -> !mismatchedIds.contains(event.getId()))
+                .collect(Collectors.partitioningBy(event -> orphanedReferences.contains(event.getBookingReference())));
+        List<PaymentEvent> processed = byOrphaned.get(false);
+        List<PaymentEvent> orphaned = byOrphaned.get(true);
+
+        if (!processed.isEmpty()) {
+            paymentEventRepository.markProcessed(processed.stream().map(PaymentEvent::getId).toList(), now);
+        }
+
+        if (!orphaned.isEmpty()) {
+            paymentEventRepository.markOrphaned(orphaned.stream().map(PaymentEvent::getId).toList(), now);
+
+            log.warn("Fizetés érkezett lejárt vagy lemondott foglalásra, visszatérítés szükséges: {}",
+                    orphaned.stream().map(event -> event.getBookingReference() + " (" + event.getEventId() + ")").toList());
+        }
+
+        if (!mismatched.isEmpty()) {
+            paymentEventRepository.markAmountMismatch(mismatchedIds, now);
+
+            log.warn("A fizetett összeg nem egyezik a foglalás árával, a foglalás nem erősödött meg: {}",
+                    mismatched.stream().map(event -> event.getBookingReference() + " (" + event.getEventId() + ": "
+                            + event.getAmount() + " " + event.getCurrency() + ", várt: "
+                            + PaymentService.toStripeAmount(pendingByReference.get(event.getBookingReference()).getTotalPrice()) + " "
+                            + PaymentService.CURRENCY + ")").toList());
+        }
+
+        processedEvents.addAndGet(processed.size());
+        orphanedPayments.addAndGet(orphaned.size());
+        mismatchedPayments.addAndGet(mismatched.size());
+        confirmedBookings.addAndGet(confirmed.size());
+
+        if (!notPending.isEmpty()) {
+            log.info("{} fizetési esemény feldolgozva, {} foglalás megerősítve, {} már nem volt PENDING ({} gazdátlan)",
+                    events.size(), confirmed.size(), notPending.size(), orphanedReferences.size());
+        }
+
+        return events.size();
+    }
+
+    // az esemény pontosan a foglalás árát hozta, a fizetéskor kért pénznemben
+    private static boolean paysFor(@NonNull PaymentEvent event, @NonNull PendingPaymentRow booking) {
+        return event.getAmount() != null
+                && event.getAmount() == PaymentService.toStripeAmount(booking.getTotalPrice())
+                && PaymentService.CURRENCY.equals(event.getCurrency());
+    }
+}
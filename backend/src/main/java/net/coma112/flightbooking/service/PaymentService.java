@@ -0,0 +1,217 @@
+package net.coma112.flightbooking.service;
+
+import com.stripe.exception.SignatureVerificationException;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.Webhook;
+import com.stripe.param.PaymentIntentCreateParams;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.dto.PaymentIntentResponse;
+import net.coma112.flightbooking.exception.BusinessException;
+import net.coma112.flightbooking.exception.ResourceNotFoundException;
+import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.repository.BookingRepository;
+import net.coma112.flightbooking.repository.PaymentEventRepository;
+import net.coma112.flightbooking.repository.projection.PaymentIntentRow;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Foglalásonként egy Stripe PaymentIntent.
+ * - a létrehozott szándékot a foglalás sorában tároljuk; amíg a foglalás PENDING és az összege nem változott,
+ *   egy újrapróbálás vagy dupla kattintás ezt kapja vissza, Stripe hívás nélkül
+ * - az azonos foglalásra egyszerre érkező kérések közül csak az első hív ki, a többi az ő eredményére vár
+ * - a Stripe hívás idempotencia kulcsa a foglalási kód és az összeg, így a párhuzamosan futó példányok,
+ *   illetve egy elveszett válasz utáni újrapróbálás is ugyanazt a szándékot kapja
+ * Az összeg mindig a foglalás ára, nem a kérésben küldött érték.
+ * A sikeres fizetésről szóló Stripe webhookot az aláírás ellenőrzése után csak a payment_events táblába írjuk
+ * (a beszedett összeggel és pénznemmel együtt), a foglalásokat a PaymentEventConsumer erősíti meg kötegekben.
+ * Az aláíró kulcsot (stripe.webhook.secret) a környezet adja (STRIPE_WEBHOOK_SECRET); alapértelmezése nincs,
+ * mert egy a repóban látható kulccsal bárki hamisíthatna fizetési eseményt.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentService {
+    static final String CURRENCY = "huf";
+    private static final String PAYMENT_SUCCEEDED = "payment_intent.succeeded";
+    private static final String PAYMENT_METHOD = "stripe";
+
+    private final BookingRepository bookingRepository;
+    private final PaymentEventRepository paymentEventRepository;
+    private final StripeGateway stripeGateway;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonMapper jsonMapper;
+
+    @Value("${stripe.webhook.secret}")
+    private String webhookSecret;
+
+    // ennél régebbi aláírású kérést nem fogadunk el (visszajátszás ellen)
+    @Value("${stripe.webhook.tolerance:PT5M}")
+    private Duration webhookTolerance;
+
+    // foglalási kód -> a folyamatban lévő létrehozás
+    private final ConcurrentHashMap<String, CompletableFuture<PaymentIntentResponse>> inFlight = new ConcurrentHashMap<>();
+
+    // üres kulccsal az aláírás bárki által előállítható, ezért induláskor megállunk
+    @PostConstruct
+    void checkWebhookSecret() {
+        if (webhookSecret == null || webhookSecret.isBlank()) {
+            throw new IllegalStateException("A stripe.webhook.secret (STRIPE_WEBHOOK_SECRET) nincs beállítva");
+        }
+    }
+
+    public @NonNull PaymentIntentResponse createPaymentIntent(@NonNull String bookingReference) throws StripeException {
+        CompletableFuture<PaymentIntentResponse> created = new CompletableFuture<>();
+        CompletableFuture<PaymentIntentResponse> running = inFlight.putIfAbsent(bookingReference, created);
+
+        if (running != null) {
+            return await(running);
+        }
+
+        try {
+            PaymentIntentResponse response = findOrCreate(bookingReference);
+            created.complete(response);
+            return response;
+        } catch (StripeException | RuntimeException exception) {
+            created.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            inFlight.remove(bookingReference, created);
+        }
+    }
+
+    // a foglalás ára egész forintra kerekítve, ugyanúgy, ahogy a Stripe-nak küldjük
+    public long getBookingAmount(@NonNull String bookingReference) {
+        return bookingRepository.findPaymentIntentByReference(bookingReference)
+                .map(PaymentService::amountInHuf)
+                .orElseThrow(() -> new ResourceNotFoundException("Nem található a foglalás: " + bookingReference));
+    }
+
+    // true, ha új eseményt vettünk fel; a már ismert vagy minket nem érintő esemény false, de a válasz ettől még 2xx
+    public boolean receiveWebhook(@NonNull String payload, String signature) {
+        if (signature == null || signature.isBlank()) {
+            throw new BusinessException("Hiányzó webhook aláírás!");
+        }
+
+        try {
+            Webhook.Signature.verifyHeader(payload, signature, webhookSecret, webhookTolerance.toSeconds());
+        } catch (SignatureVerificationException exception) {
+            throw new BusinessException("Érvénytelen webhook aláírás!");
+        }
+
+        JsonNode event;
+        try {
+            event = jsonMapper.readTree(payload);
+        } catch (JacksonException exception) {
+            throw new BusinessException("Érvénytelen webhook esemény!");
+        }
+
+        String eventId = event.path("id").asString("");
+        String eventType = event.path("type").asString("");
+        JsonNode paymentIntent = event.path("data").path("object");
+        String bookingReference = paymentIntent.path("metadata").path("bookingReference").asString("");
+        // a ténylegesen beszedett összeg; hiányzó mezőnél null, az ilyen esemény nem erősít meg foglalást
+        JsonNode amountReceived = paymentIntent.path("amount_received");
+        Long amount = amountReceived.isIntegralNumber() ? amountReceived.asLong() : null;
+        String currency = paymentIntent.path("currency").asString("").toLowerCase(Locale.ROOT);
+
+        if (!PAYMENT_SUCCEEDED.equals(eventType)) {
+            return false;
+        }
+
+        if (eventId.isEmpty() || !bookingReference.matches("^[A-Z0-9]{6}$")) {
+            log.warn("Foglalási kód nélküli fizetési esemény, kihagyva: {}", eventId);
+            return false;
+        }
+
+        Integer inserted = transactionTemplate.execute(status -> paymentEventRepository.insertIfAbsent(
+                eventId, eventType, bookingReference, PAYMENT_METHOD, amount, currency.isEmpty() ? null : currency, LocalDateTime.now()));
+
+        return inserted != null && inserted > 0;
+    }
+
+    private @NonNull PaymentIntentResponse findOrCreate(@NonNull String bookingReference) throws StripeException {
+        PaymentIntentRow booking = bookingRepository.findPaymentIntentByReference(bookingReference)
+                .orElseThrow(() -> new ResourceNotFoundException("Nem található a foglalás: " + bookingReference));
+
+        if (booking.getStatus() != BookingStatus.PENDING) {
+            throw new BusinessException("Csak PENDING státuszú foglalás fizethető ki!");
+        }
+
+        long amountInHuf = amountInHuf(booking);
+        long stripeAmount = toStripeAmount(booking.getTotalPrice());
+
+        if (booking.getPaymentIntentId() != null && Objects.equals(booking.getPaymentIntentAmount(), stripeAmount)) {
+            return new PaymentIntentResponse(
+                    booking.getPaymentIntentId(),
+                    booking.getPaymentIntentClientSecret(),
+                    booking.getPaymentIntentStatus(),
+                    amountInHuf
+            );
+        }
+
+        PaymentIntentCreateParams params = PaymentIntentCreateParams.builder()
+                .setAmount(stripeAmount)
+                .setCurrency(CURRENCY)
+                .setDescription("SkyBooker repülőjegy foglalás: " + bookingReference)
+                .putMetadata("bookingReference", bookingReference)
+                .putMetadata("flightNumber", booking.getFlightNumber())
+                .setAutomaticPaymentMethods(
+                        PaymentIntentCreateParams.AutomaticPaymentMethods.builder()
+                                .setEnabled(true)
+                                .build()
+                )
+                .build();
+
+        // a hívás alatt nincs nyitott tranzakció, a szándékot utána egy rövid UPDATE menti
+        PaymentIntent intent = stripeGateway.createPaymentIntent(params, "payment-intent-" + bookingReference + "-" + stripeAmount);
+
+        transactionTemplate.executeWithoutResult(status -> bookingRepository.attachPaymentIntent(
+                booking.getId(), intent.getId(), intent.getClientSecret(), intent.getStatus(), stripeAmount));
+
+        return new PaymentIntentResponse(intent.getId(), intent.getClientSecret(), intent.getStatus(), amountInHuf);
+    }
+
+    // a foglalás ára a Stripe egységében: egész forintra kerekítve, fillérben (a Stripe a HUF-ot is két tizedessel kéri)
+    static long toStripeAmount(@NonNull BigDecimal totalPrice) {
+        return totalPrice.setScale(0, RoundingMode.HALF_UP).longValueExact() * 100L;
+    }
+
+    private static long amountInHuf(@NonNull PaymentIntentRow booking) {
+        return booking.getTotalPrice().setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static @NonNull PaymentIntentResponse await(@NonNull CompletableFuture<PaymentIntentResponse> running) throws StripeException {
+        try {
+            return running.join();
+        } catch (CompletionException exception) {
+            if (exception.getCause() instanceof StripeException stripeException) {
+                throw stripeException;
+            }
+
+            if (exception.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+
+            throw exception;
+        }
+    }
+}
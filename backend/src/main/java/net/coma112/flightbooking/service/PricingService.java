@@ -1,29 +1,164 @@
 package net.coma112.flightbooking.service;
 
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.annotation.Timed;
 import net.coma112.flightbooking.model.Flight;
 import net.coma112.flightbooking.model.enums.SeatClass;
 import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Map;
 
+/**
+ * Az egyetlen árazó: a keresés, a naptár és a foglalás is innen kér árat, így mindenhol ugyanaz jön ki.
+ * Járatonként egyszer kiszámoljuk a teljes ártáblát (osztály x foglalási ablak, a szezonális felárral együtt)
+ * fillérben, long értékként; egy árajánlat ezután csak egy tömb indexelés.
+ * BigDecimal csak az API határán, a {@link #toAmount(long)} hívásnál keletkezik.
+ * Az ártábla árát a kabin telítettsége szerinti szorzóval emeljük (pricing.load-factor-curve); a telítettség
+ * a SeatInventory memóriabeli számlálóiból jön, így egy árajánlat nem megy az adatbázishoz.
+ * A pricing.quote időzítő a kívülről hívott árajánlatokat méri; a quoteMinor nincs időzítve, mert a naptár
+ * belső ciklusa hívja, ott a mérés többe kerülne, mint maga az ár.
+ */
 @Service
-@RequiredArgsConstructor
 public class PricingService {
+    private static final SeatClass[] SEAT_CLASSES = SeatClass.values();
+
+    // 30+ nap előre: early bird, 7 napon belül: last minute, köztük normál ár
+    private static final int EARLY_BIRD_DAYS = 30;
+    private static final int LAST_MINUTE_DAYS = 7;
+
+    private static final int EARLY_BIRD = 0;
+    private static final int NORMAL = 1;
+    private static final int LAST_MINUTE = 2;
+
+    private static final BigDecimal[] WINDOW_MULTIPLIERS = {
+            new BigDecimal("0.85"), // early bird: -15%
+            BigDecimal.ONE,
+            new BigDecimal("1.25") // last minute: +25%
+    };
+
+    // június-augusztus: +20%
+    private static final BigDecimal SEASONAL_MULTIPLIER = new BigDecimal("1.20");
+
+    // a telítettségi szorzók tízezredben, hogy az ár long maradjon
+    private static final long MULTIPLIER_SCALE = 10_000;
+
+    private final SeatInventory seatInventory;
+    private final Cache<Long, FareTable> fareTables;
+
+    // növekvő telítettségi küszöbök és a hozzájuk tartozó szorzók: a legnagyobb még elért küszöb szorzója érvényes
+    private final double[] loadFactorThresholds;
+    private final long[] loadFactorMultipliers;
+
+    public PricingService(
+            SeatInventory seatInventory,
+            @Value("${pricing.fare-table-cache-size:100000}") long cacheSize,
+            @Value("${pricing.load-factor-curve:0:1.00}") String loadFactorCurve
+    ) {
+        this.seatInventory = seatInventory;
+        this.fareTables = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .build();
+
+        String[] steps = loadFactorCurve.split(",");
+        this.loadFactorThresholds = new double[steps.length];
+        this.loadFactorMultipliers = new long[steps.length];
+
+        for (int i = 0; i < steps.length; i++) {
+            String[] step = steps[i].trim().split(":");
+
+            if (step.length != 2) {
+                throw new IllegalArgumentException("Hibás telítettségi lépcső (küszöb:szorzó): " + steps[i]);
+            }
+
+            double threshold = Double.parseDouble(step[0].trim());
+            BigDecimal multiplier = new BigDecimal(step[1].trim());
+
+            if (threshold < 0 || threshold > 1 || (i > 0 && threshold <= loadFactorThresholds[i - 1])) {
+                throw new IllegalArgumentException("A telítettségi küszöböknek 0 és 1 között, növekvő sorrendben kell lenniük: " + loadFactorCurve);
+            }
+
+            if (multiplier.signum() <= 0) {
+                throw new IllegalArgumentException("A telítettségi szorzónak pozitívnak kell lennie: " + steps[i]);
+            }
+
+            loadFactorThresholds[i] = threshold;
+            loadFactorMultipliers[i] = multiplier.movePointRight(4).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+    }
+
+    @Timed(value = "pricing.quote", extraTags = {"operation", "single"}, histogram = true)
     public BigDecimal calculatePrice(@NonNull Flight flight, SeatClass seatClass, LocalDateTime bookingDate) {
-        BigDecimal basePrice = flight.getBasePrice();
+        return toAmount(quoteMinor(flight, seatClass, bookingDate));
+    }
 
-        BigDecimal seatClassMultiplier = getSeatClassMultiplier(seatClass);
-        BigDecimal price = basePrice.multiply(seatClassMultiplier);
+    // ár fillérben
+    public long quoteMinor(@NonNull Flight flight, @NonNull SeatClass seatClass, @NonNull LocalDateTime bookingDate) {
+        long fare = fareTable(flight).price(seatClass, window(bookingDate, flight.getDepartureTime()));
+        return applyLoadFactor(fare, seatInventory.getLoadFactor(flight.getId(), seatClass));
+    }
 
-        price = applyBookingTimeModifier(price, bookingDate, flight.getDepartureTime());
-        price = applySeasonalSurcharge(price, flight.getDepartureTime());
+    // mindhárom osztály ára, a keresési találatokhoz
+    @Timed(value = "pricing.quote", extraTags = {"operation", "all"}, histogram = true)
+    public @NonNull Map<SeatClass, BigDecimal> quoteAll(@NonNull Flight flight, @NonNull LocalDateTime bookingDate) {
+        FareTable table = fareTable(flight);
+        int window = window(bookingDate, flight.getDepartureTime());
 
-        return price.setScale(2, RoundingMode.HALF_UP);
+        Map<SeatClass, BigDecimal> prices = new EnumMap<>(SeatClass.class);
+        for (SeatClass seatClass : SEAT_CLASSES) {
+            long fare = table.price(seatClass, window);
+            prices.put(seatClass, toAmount(applyLoadFactor(fare, seatInventory.getLoadFactor(flight.getId(), seatClass))));
+        }
+
+        return prices;
+    }
+
+    public static @NonNull BigDecimal toAmount(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, 2);
+    }
+
+    private @NonNull FareTable fareTable(@NonNull Flight flight) {
+        FareTable table = fareTables.getIfPresent(flight.getId());
+
+        // ha az alapár vagy az indulás változott, újraszámoljuk
+        if (table == null || !table.matches(flight)) {
+            table = FareTable.of(flight);
+            fareTables.put(flight.getId(), table);
+        }
+
+        return table;
+    }
+
+    // fillérre kerekítve, HALF_UP (az ár mindig pozitív)
+    private long applyLoadFactor(long fare, double loadFactor) {
+        long multiplier = MULTIPLIER_SCALE;
+
+        for (int i = 0; i < loadFactorThresholds.length && loadFactor >= loadFactorThresholds[i]; i++) {
+            multiplier = loadFactorMultipliers[i];
+        }
+
+        return multiplier == MULTIPLIER_SCALE ? fare : (fare * multiplier + MULTIPLIER_SCALE / 2) / MULTIPLIER_SCALE;
+    }
+
+    private static int window(@NonNull LocalDateTime bookingDate, @NonNull LocalDateTime departureTime) {
+        long daysUntilDeparture = ChronoUnit.DAYS.between(bookingDate, departureTime);
+
+        if (daysUntilDeparture >= EARLY_BIRD_DAYS) {
+            return EARLY_BIRD;
+        }
+
+        if (daysUntilDeparture <= LAST_MINUTE_DAYS) {
+            return LAST_MINUTE;
+        }
+
+        return NORMAL;
     }
 
     /**
@@ -32,49 +167,46 @@ public class PricingService {
      * BUSINESS: 2.5x
      * FIRST: 4.0x
      */
-    private @NonNull BigDecimal getSeatClassMultiplier(@NonNull SeatClass seatClass) {
+    private static @NonNull BigDecimal getSeatClassMultiplier(@NonNull SeatClass seatClass) {
         return switch (seatClass) {
-            case ECONOMY -> new BigDecimal("1.0");
+            case ECONOMY -> BigDecimal.ONE;
             case BUSINESS -> new BigDecimal("2.5");
             case FIRST -> new BigDecimal("4.0");
         };
     }
 
-    /**
-     * Early bird / Last minute módosító
-     * - 30+ nap előre: -15% (early bird discount)
-     * - 7 napon belül: +25% (last minute surcharge)
-     */
-    private BigDecimal applyBookingTimeModifier(BigDecimal price, LocalDateTime bookingDate, LocalDateTime departureTime) {
-        long daysUntilDeparture = ChronoUnit.DAYS.between(bookingDate, departureTime);
+    // [osztály][foglalási ablak] -> ár fillérben
+    private record FareTable(BigDecimal basePrice, LocalDateTime departureTime, long[][] prices) {
+        private static @NonNull FareTable of(@NonNull Flight flight) {
+            int month = flight.getDepartureTime().getMonthValue();
+            boolean peakSeason = month >= 6 && month <= 8;
 
-        if (daysUntilDeparture >= 30) {
-            // Early bird: -15%
-            BigDecimal discount = price.multiply(new BigDecimal("0.15"));
-            return price.subtract(discount);
-        } else if (daysUntilDeparture <= 7) {
-            // Last minute: +25%
-            BigDecimal surcharge = price.multiply(new BigDecimal("0.25"));
-            return price.add(surcharge);
-        }
+            long[][] prices = new long[SEAT_CLASSES.length][WINDOW_MULTIPLIERS.length];
 
-        // Normál ár (8-29 nap között)
-        return price;
-    }
+            // a régi számolással azonos sorrend és kerekítés: osztály, ablak, szezon, végül 2 tizedesre HALF_UP
+            for (SeatClass seatClass : SEAT_CLASSES) {
+                for (int window = 0; window < WINDOW_MULTIPLIERS.length; window++) {
+                    BigDecimal price = flight.getBasePrice()
+                            .multiply(getSeatClassMultiplier(seatClass))
+                            .multiply(WINDOW_MULTIPLIERS[window]);
 
-    /**
-     * Szezonális felár
-     * Június-augusztus: +20%
-     */
-    private BigDecimal applySeasonalSurcharge(BigDecimal price, @NonNull LocalDateTime departureTime) {
-        int month = departureTime.getMonthValue();
+                    if (peakSeason) {
+                        price = price.multiply(SEASONAL_MULTIPLIER);
+                    }
+
+                    prices[seatClass.ordinal()][window] = price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+                }
+            }
 
-        // Június (6), Július (7), Augusztus (8)
-        if (month >= 6 && month <= 8) {
-            BigDecimal surcharge = price.multiply(new BigDecimal("0.20"));
-            return price.add(surcharge);
+            return new FareTable(flight.getBasePrice(), flight.getDepartureTime(), prices);
         }
 
-        return price;
+        private boolean matches(@NonNull Flight flight) {
+            return basePrice.compareTo(flight.getBasePrice()) == 0 && departureTime.equals(flight.getDepartureTime());
+        }
+
+        private long price(@NonNull SeatClass seatClass, int window) {
+            return prices[seatClass.ordinal()][window];
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+package net.coma112.flightbooking.service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import jakarta.annotation.PreDestroy;
+import org.jspecify.annotations.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * QR kód renderelése közvetlenül 1 bites szürkeárnyalatos PNG-be.
+ * A zxing-től a modulonként 1 pontos mátrixot kérjük, és mi nagyítjuk fel, így nincs BufferedImage / ImageIO,
+ * a sorok pedig egyetlen Deflate folyamba mennek. A Deflater, a CRC és a pufferek egy korlátos készletből
+ * újrahasznosulnak (ThreadLocal helyett, ami virtuális szálakon minden hívásra új kódolót adna). A Deflater natív
+ * memóriát foglal, ezért a készletből kiszoruló és leálláskor a bent maradt kódolókat end()-del lezárjuk.
+ */
+@Component
+public class QrCodeRenderer {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] IHDR = "IHDR".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IDAT = "IDAT".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] IEND = "IEND".getBytes(StandardCharsets.US_ASCII);
+
+    // a korábbi 300x300-as képhez hasonló méret
+    private static final int TARGET_SIZE = 300;
+
+    private static final Map<EncodeHintType, Object> HINTS;
+
+    static {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, "UTF-8");
+        hints.put(EncodeHintType.MARGIN, 2);
+        HINTS = Map.copyOf(hints);
+    }
+
+    private static final int ENCODER_POOL_SIZE = 8;
+
+    // üres készletnél új kódoló készül, a tele készletbe már nem fér vissza kódolót lezárjuk
+    private final ArrayBlockingQueue<PngEncoder> encoders = new ArrayBlockingQueue<>(ENCODER_POOL_SIZE);
+    private volatile boolean closed;
+
+    private final QRCodeWriter qrCodeWriter = new QRCodeWriter(); // állapotmentes, szálbiztos
+
+    public byte @NonNull [] renderPng(@NonNull String content) throws WriterException {
+        // 0x0 méret: modulonként egy pont, a csendes zónával együtt
+        BitMatrix matrix = qrCodeWriter.encode(content, BarcodeFormat.QR_CODE, 0, 0, HINTS);
+        int scale = Math.max(1, TARGET_SIZE / matrix.getWidth());
+
+        PngEncoder encoder = encoders.poll();
+        if (encoder == null) {
+            encoder = new PngEncoder();
+        }
+
+        try {
+            return encoder.encode(matrix, scale);
+        } finally {
+            release(encoder);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        closed = true;
+
+        PngEncoder encoder;
+        while ((encoder = encoders.poll()) != null) {
+            encoder.close();
+        }
+    }
+
+    // leállás után visszaadott kódolót nem tartunk meg; ha a leállás épp a visszarakás közben történt, innen zárjuk le
+    private void release(@NonNull PngEncoder encoder) {
+        if (closed || !encoders.offer(encoder)) {
+            encoder.close();
+        } else if (closed && encoders.remove(encoder)) {
+            encoder.close();
+        }
+    }
+
+    private static final class PngEncoder implements AutoCloseable {
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final CRC32 crc = new CRC32();
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream(1024);
+        private byte[] scanline = new byte[0];
+        private byte[] compressed = new byte[4096];
+        private int compressedLength;
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+
+        private byte @NonNull [] encode(@NonNull BitMatrix matrix, int scale) {
+            int size = matrix.getWidth() * scale;
+            int rowBytes = (size + 7) / 8;
+
+            if (scanline.length != rowBytes + 1) {
+                scanline = new byte[rowBytes + 1];
+            }
+
+            deflater.reset();
+            compressedLength = 0;
+
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                fillScanline(matrix, y, scale);
+
+                // egy modulsor scale darab azonos pixelsor
+                for (int repeat = 0; repeat < scale; repeat++) {
+                    deflate(scanline, false);
+                }
+            }
+            deflate(scanline, true);
+
+            output.reset();
+            output.writeBytes(PNG_SIGNATURE);
+            writeChunk(IHDR, header(size));
+            writeChunk(IDAT, Arrays.copyOf(compressed, compressedLength));
+            writeChunk(IEND, new byte[0]);
+
+            return output.toByteArray();
+        }
+
+        // 0. szűrő (None), utána 1 bit / pixel: 0 = fekete (sötét modul), 1 = fehér
+        private void fillScanline(@NonNull BitMatrix matrix, int y, int scale) {
+            Arrays.fill(scanline, (byte) 0);
+
+            int x = 0;
+            for (int module = 0; module < matrix.getWidth(); module++) {
+                boolean light = !matrix.get(module, y);
+
+                for (int repeat = 0; repeat < scale; repeat++, x++) {
+                    if (light) {
+                        scanline[1 + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                    }
+                }
+            }
+        }
+
+        private void deflate(byte @NonNull [] input, boolean finish) {
+            if (finish) {
+                deflater.finish();
+            } else {
+                deflater.setInput(input);
+            }
+
+            while (finish ? !deflater.finished() : !deflater.needsInput()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+
+                compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+            }
+        }
+
+        private static byte @NonNull [] header(int size) {
+            return new byte[]{
+                    (byte) (size >>> 24), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size, // szélesség
+                    (byte) (size >>> 24), (byte) (size >>> 16), (byte) (size >>> 8), (byte) size, // magasság
+                    1, // bitmélység
+                    0, // szürkeárnyalatos
+                    0, 0, 0 // tömörítés, szűrés, interlace
+            };
+        }
+
+        private void writeChunk(byte @NonNull [] type, byte @NonNull [] data) {
+            writeInt(data.length);
+            output.writeBytes(type);
+            output.writeBytes(data);
+
+            crc.reset();
+            crc.update(type);
+            crc.update(data);
+            writeInt((int) crc.getValue());
+        }
+
+        private void writeInt(int value) {
+            output.write(value >>> 24);
+            output.write(value >>> 16);
+            output.write(value >>> 8);
+            output.write(value);
+        }
+    }
+}
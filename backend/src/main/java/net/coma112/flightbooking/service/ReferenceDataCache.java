@@ -0,0 +1,189 @@
+package net.coma112.flightbooking.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.dto.AirportDTO;
+import net.coma112.flightbooking.exception.ResourceNotFoundException;
+import net.coma112.flightbooking.model.Aircraft;
+import net.coma112.flightbooking.model.Airport;
+import net.coma112.flightbooking.model.enums.AircraftType;
+import net.coma112.flightbooking.repository.AircraftRepository;
+import net.coma112.flightbooking.repository.AirportRepository;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Reptér és repülőgép törzsadatok a memóriában.
+ * Induláskor egyszer betöltjük, utána egy megváltoztathatatlan pillanatképből szolgáljuk ki a kereséseket,
+ * így a keresésnek és a DTO konverziónak nem kell joinolnia az airports/aircraft táblákat.
+ * Ha egy kód vagy id hiányzik (pl. a mock adatok az indulás után kerültek be), újratöltünk.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceDataCache {
+    private final AirportRepository airportRepository;
+    private final AircraftRepository aircraftRepository;
+
+    // két hiány miatti újratöltés között legalább ennyi idő teljen el, hogy egy rossz kód ne terhelje az adatbázist
+    @Value("${reference-data.min-refresh-interval-ms:5000}")
+    private long minRefreshIntervalMs;
+
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), Map.of(), Map.of());
+    private volatile long lastRefreshMillis;
+
+    // egyszerre egy újratöltés fut; a betöltés JDBC hívás, monitor alatt a virtuális szál a hordozójához ragadna
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        refresh();
+    }
+
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            Map<Long, AirportRef> airportsById = new HashMap<>();
+            Map<String, AirportRef> airportsByIata = new HashMap<>();
+            Map<Long, AircraftRef> aircraftById = new HashMap<>();
+
+            for (Airport airport : airportRepository.findAll()) {
+                AirportRef ref = new AirportRef(
+                        airport.getId(),
+                        airport.getIataCode(),
+                        airport.getName(),
+                        airport.getCity(),
+                        airport.getCountry()
+                );
+
+                airportsById.put(ref.id(), ref);
+                airportsByIata.put(ref.iataCode(), ref);
+            }
+
+            for (Aircraft aircraft : aircraftRepository.findAll()) {
+                aircraftById.put(aircraft.getId(), new AircraftRef(
+                        aircraft.getId(),
+                        aircraft.getModel(),
+                        aircraft.getRegistrationNumber(),
+                        aircraft.getTotalSeats(),
+                        aircraft.getEconomySeats(),
+                        aircraft.getBusinessSeats(),
+                        aircraft.getFirstSeats()
+                ));
+            }
+
+            snapshot = new Snapshot(Map.copyOf(airportsById), Map.copyOf(airportsByIata), Map.copyOf(aircraftById));
+            lastRefreshMillis = System.currentTimeMillis();
+
+            log.info("Törzsadatok betöltve: {} reptér, {} repülőgép", airportsById.size(), aircraftById.size());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    public @NonNull Optional<AirportRef> findAirport(@NonNull String iataCode) {
+        Snapshot current = snapshot;
+        AirportRef airport = current.airportsByIata().get(iataCode);
+
+        if (airport == null && refreshOnMiss(current)) {
+            airport = snapshot.airportsByIata().get(iataCode);
+        }
+
+        return Optional.ofNullable(airport);
+    }
+
+    public @NonNull AirportRef getAirport(@NonNull Long id) {
+        return findAirportById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Nem található a reptér: " + id));
+    }
+
+    public @NonNull Optional<AirportRef> findAirportById(@NonNull Long id) {
+        Snapshot current = snapshot;
+        AirportRef airport = current.airportsById().get(id);
+
+        if (airport == null && refreshOnMiss(current)) {
+            airport = snapshot.airportsById().get(id);
+        }
+
+        return Optional.ofNullable(airport);
+    }
+
+    public @NonNull Optional<AircraftRef> findAircraft(@NonNull Long id) {
+        Snapshot current = snapshot;
+        AircraftRef aircraft = current.aircraftById().get(id);
+
+        if (aircraft == null && refreshOnMiss(current)) {
+            aircraft = snapshot.aircraftById().get(id);
+        }
+
+        return Optional.ofNullable(aircraft);
+    }
+
+    /**
+     * A missed az a pillanatkép, amiben a keresett elem nem volt; true, ha azóta van újabb, amit érdemes újra olvasni.
+     * A nemrég frissült adatnál zár nélkül válaszolunk, így a felhasználótól jött rossz kódok nem állnak sorba.
+     * Ha épp más frissít, megvárjuk, és az ő eredményét olvassuk újra ahelyett, hogy mi is betöltenénk.
+     */
+    private boolean refreshOnMiss(@NonNull Snapshot missed) {
+        if (snapshot != missed) {
+            return true;
+        }
+
+        if (refreshedRecently()) {
+            return false;
+        }
+
+        boolean otherRefreshRunning = !refreshLock.tryLock();
+        if (otherRefreshRunning) {
+            refreshLock.lock();
+        }
+
+        try {
+            if (snapshot != missed) {
+                return true;
+            }
+
+            if (otherRefreshRunning || refreshedRecently()) {
+                return false;
+            }
+
+            refresh();
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private boolean refreshedRecently() {
+        return System.currentTimeMillis() - lastRefreshMillis < minRefreshIntervalMs;
+    }
+
+    public record AirportRef(Long id, String iataCode, String name, String city, String country) {
+        public @NonNull AirportDTO toDto() {
+            return new AirportDTO(iataCode, name, city, country);
+        }
+    }
+
+    public record AircraftRef(
+            Long id,
+            AircraftType model,
+            String registrationNumber,
+            Integer totalSeats,
+            Integer economySeats,
+            Integer businessSeats,
+            Integer firstSeats
+    ) {}
+
+    private record Snapshot(
+            Map<Long, AirportRef> airportsById,
+            Map<String, AirportRef> airportsByIata,
+            Map<Long, AircraftRef> aircraftById
+    ) {}
+}
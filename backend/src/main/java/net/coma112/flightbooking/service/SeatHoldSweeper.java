@@ -0,0 +1,118 @@
+package net.coma112.flightbooking.service;
+
+import com.stripe.exception.StripeException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.repository.BookingRepository;
+import net.coma112.flightbooking.repository.SeatRepository;
+import net.coma112.flightbooking.repository.projection.ExpiredHold;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lejárt helyfoglalások takarítása.
+ * A ki nem fizetett (PENDING) foglalásokat a hold_expires_at lejárta után kötegekben mondjuk le,
+ * és a hozzájuk tartozó üléseket egyetlen UPDATE-tel szabadítjuk fel.
+ * A közben megerősített foglalásokhoz nem nyúlunk: a zárolás SKIP LOCKED, a lemondás pedig status = PENDING feltételes.
+ * Ha a foglaláshoz már készült PaymentIntent, azt a köteg commitja után, sorzár nélkül mondjuk le a Stripe-nál, hogy a
+ * lejárt foglalást ne lehessen utólag kifizetni. Ha ez nem sikerül (pl. a fizetés épp most ment át), a beérkező
+ * esemény a PaymentEventConsumer-nél gazdátlan fizetésként jelenik meg.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SeatHoldSweeper {
+    private final BookingRepository bookingRepository;
+    private final SeatRepository seatRepository;
+    private final SeatInventory seatInventory;
+    private final StripeGateway stripeGateway;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${seat-hold.sweep-batch-size:500}")
+    private int batchSize;
+
+    private final AtomicLong releasedHolds = new AtomicLong();
+    private final AtomicLong sweepRuns = new AtomicLong();
+    private final AtomicLong cancelledIntents = new AtomicLong();
+    private final AtomicLong failedIntentCancellations = new AtomicLong();
+
+    @Scheduled(fixedDelayString = "${seat-hold.sweep-interval-ms:60000}")
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        long released = 0;
+        int batch;
+
+        do {
+            List<ExpiredHold> holds = transactionTemplate.execute(status -> sweepBatch(now));
+            batch = holds.size();
+            released += batch;
+
+            cancelPaymentIntents(holds);
+        } while (batch == batchSize);
+
+        sweepRuns.incrementAndGet();
+
+        if (released > 0) {
+            releasedHolds.addAndGet(released);
+            log.info("{} lejárt foglalás lemondva, ülések felszabadítva", released);
+        }
+    }
+
+    public long getReleasedHolds() {
+        return releasedHolds.get();
+    }
+
+    public long getSweepRuns() {
+        return sweepRuns.get();
+    }
+
+    public long getCancelledIntents() {
+        return cancelledIntents.get();
+    }
+
+    public long getFailedIntentCancellations() {
+        return failedIntentCancellations.get();
+    }
+
+    private List<ExpiredHold> sweepBatch(LocalDateTime now) {
+        List<ExpiredHold> holds = bookingRepository.lockExpiredHolds(now, batchSize);
+
+        if (holds.isEmpty()) {
+            return holds;
+        }
+
+        // a sorok zárolva vannak, így a feltételes UPDATE az összeset lemondja
+        bookingRepository.cancelPending(holds.stream().map(ExpiredHold::getBookingId).toList());
+        seatRepository.releaseSeats(holds.stream().map(ExpiredHold::getSeatId).toList());
+
+        // a memóriabeli készlet csak commit után látja a felszabadult helyeket, a keresési cache-t is ő értesíti
+        for (ExpiredHold hold : holds) {
+            seatInventory.release(hold.getFlightId(), hold.getSeatNumber());
+        }
+
+        return holds;
+    }
+
+    // a köteg tranzakcióján kívül fut: a Stripe hívás alatt egy foglalás sora sincs zárolva
+    private void cancelPaymentIntents(List<ExpiredHold> holds) {
+        for (ExpiredHold hold : holds) {
+            if (hold.getPaymentIntentId() == null) {
+                continue;
+            }
+
+            try {
+                stripeGateway.cancelPaymentIntent(hold.getPaymentIntentId(), "payment-intent-cancel-" + hold.getPaymentIntentId());
+                cancelledIntents.incrementAndGet();
+            } catch (StripeException | RuntimeException exception) {
+                failedIntentCancellations.incrementAndGet();
+                log.warn("A lejárt foglalás PaymentIntent-je nem mondható le: {} ({})", hold.getPaymentIntentId(), exception.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,613 @@
+package net.coma112.flightbooking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coma112.flightbooking.event.SeatAvailabilityChangedEvent;
+import net.coma112.flightbooking.exception.BusinessException;
+import net.coma112.flightbooking.exception.ResourceNotFoundException;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.repository.SeatRepository;
+import net.coma112.flightbooking.repository.projection.SeatAvailabilityCount;
+import net.coma112.flightbooking.repository.projection.SeatSnapshot;
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Memóriabeli ülés készlet járatonként.
+ * - a szabad/foglalt állapot egy bitsetben van (1 bit = 1 ülés), a foglalás és a felszabadítás CAS művelet
+ * - a szabad helyek száma osztályonként számlálóban van, így a keresésnek nem kell COUNT lekérdezés
+ * - ugyanezekből a számlálókból jön a kabinok telítettsége az árazónak; induláskor a jövőbeli járatokat betöltjük,
+ *   időnként pedig összevetjük a számlálókat az adatbázissal
+ * - a végleges döntés az adatbázisé: a BookingServiceImpl feltételes UPDATE-tel foglal a tranzakció végén,
+ *   ez az osztály csak gyors előszűrés és olvasási modell
+ * - egy újratöltés (invalidate után) a még le nem zárult foglalásokat szabadnak látja: ezért egy tranzakciós írás
+ *   lezárulásakor a közben betöltött térképet eldobjuk, a betöltés pedig nem tartja meg a pillanatképét, ha alatta
+ *   a járaton írás zárult le; a következő olvasás így már a commit utáni állapotot tölti be
+ * - a SeatAvailabilityChangedEvent eseményt is innen küldjük, a lezárult írás rendezése után
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SeatInventory {
+    private static final int ADJACENT_CLAIM_ATTEMPTS = 3;
+
+    // ennyi járatot töltünk be / vetünk össze egy lekérdezéssel
+    private static final int LOAD_CHUNK_SIZE = 500;
+
+    // az ülések nélküli járatot ennyi ideig nem keressük újra (a mock betöltő később is beszúrhat üléseket)
+    private static final long EMPTY_FLIGHT_TTL_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final SeatRepository seatRepository;
+    private final FlightRepository flightRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<Long, FlightSeatMap> flights = new ConcurrentHashMap<>();
+
+    // ülések nélküli járatok -> a negatív találat lejárata (System.nanoTime); ezekre nem megyünk újra az adatbázishoz
+    private final ConcurrentHashMap<Long, Long> emptyFlights = new ConcurrentHashMap<>();
+
+    // járatonként a lezárult (commit vagy rollback) tranzakciós foglalások és felszabadítások száma
+    private final ConcurrentHashMap<Long, Long> writeVersions = new ConcurrentHashMap<>();
+
+    // az előző egyeztetésnél eltérést mutató járatok
+    private final Set<Long> driftedFlights = ConcurrentHashMap.newKeySet();
+    private final LongAdder reconciledFlights = new LongAdder();
+
+    // foglalt helyre érkezett foglalási kísérletek: a memóriában, illetve csak az adatbázisban kiderült ütközések
+    private final LongAdder claimConflicts = new LongAdder();
+    private final LongAdder databaseClaimConflicts = new LongAdder();
+
+    /**
+     * Lefoglal egy ülést a memóriában, és visszaadja az ülés azonosítóját.
+     * Ha tranzakcióban hívjuk, rollback esetén a hely felszabadul.
+     */
+    public long claim(@NonNull Long flightId, @NonNull String seatNumber) {
+        FlightSeatMap seatMap = getSeatMap(flightId);
+        int index = seatMap.indexOf(seatNumber);
+
+        if (!seatMap.claim(index)) {
+            claimConflicts.increment();
+            throw new BusinessException("A(z) " + seatNumber + " ülés már foglalt");
+        }
+
+        long seatId = seatMap.seatIds[index];
+        afterCompletion(flightId, seatMap, () -> {}, () -> seatMap.release(index));
+
+        return seatId;
+    }
+
+    /**
+     * Több ülés foglalása egyben: vagy mind sikerül, vagy egyik sem (a már lefoglaltakat visszaadjuk).
+     * Ülésszám -> ülés id, a kérés sorrendjében.
+     */
+    public @NonNull Map<String, Long> claimAll(@NonNull Long flightId, @NonNull List<String> seatNumbers) {
+        FlightSeatMap seatMap = getSeatMap(flightId);
+        List<Integer> indexes = new ArrayList<>(seatNumbers.size());
+
+        for (String seatNumber : seatNumbers) {
+            indexes.add(seatMap.indexOf(seatNumber));
+        }
+
+        Map<String, Long> seatIds = new LinkedHashMap<>();
+
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+
+            if (!seatMap.claim(index)) {
+                claimConflicts.increment();
+                indexes.subList(0, i).forEach(seatMap::release);
+                throw new BusinessException("A(z) " + seatNumbers.get(i) + " ülés már foglalt");
+            }
+
+            seatIds.put(seatNumbers.get(i), seatMap.seatIds[index]);
+        }
+
+        afterCompletion(flightId, seatMap, () -> {}, () -> indexes.forEach(seatMap::release));
+
+        return seatIds;
+    }
+
+    /**
+     * N egymás melletti szabad ülés foglalása egy osztályban (azonos sor, egymást követő betűk).
+     * Ha közben valaki elvitte valamelyiket, újrakeresünk.
+     */
+    public @NonNull Map<String, Long> claimAdjacent(@NonNull Long flightId, @NonNull SeatClass seatClass, int count) {
+        FlightSeatMap seatMap = getSeatMap(flightId);
+
+        for (int attempt = 0; attempt < ADJACENT_CLAIM_ATTEMPTS; attempt++) {
+            List<String> seatNumbers = seatMap.findAdjacentAvailable(seatClass, count);
+
+            if (seatNumbers.isEmpty()) {
+                break;
+            }
+
+            try {
+                return claimAll(flightId, seatNumbers);
+            } catch (BusinessException exception) {
+                // versenyhelyzet, próbáljuk a következő szabad blokkot
+            }
+        }
+
+        throw new BusinessException("Nincs " + count + " egymás melletti szabad hely " + seatClass + " osztályon");
+    }
+
+    /**
+     * Felszabadít egy ülést. Tranzakción belül csak sikeres commit után lép életbe.
+     * Be nem töltött járatnál nem olvasunk: a még nyitott tranzakció a saját, esetleg visszagörgetett
+     * felszabadítását látná, a következő olvasás pedig úgyis a lezárult állapotot tölti be.
+     */
+    public void release(@NonNull Long flightId, @NonNull String seatNumber) {
+        FlightSeatMap seatMap = flights.get(flightId);
+
+        if (seatMap == null) {
+            afterCompletion(flightId, null, () -> {}, () -> {});
+            return;
+        }
+
+        int index = seatMap.indexOf(seatNumber);
+
+        afterCompletion(flightId, seatMap, () -> seatMap.release(index), () -> {});
+    }
+
+    /**
+     * Eldobja a járat memóriabeli állapotát, a következő olvasás újratölti az adatbázisból.
+     * Akkor kell, ha az adatbázis mást mond, mint a memória (pl. a feltételes UPDATE nem nyert).
+     */
+    public void invalidate(@NonNull Long flightId) {
+        flights.remove(flightId);
+        emptyFlights.remove(flightId);
+    }
+
+    // a memória szerint szabad hely az adatbázisban már foglalt volt: a járatot újratöltjük
+    public void recordDatabaseConflict(@NonNull Long flightId) {
+        databaseClaimConflicts.increment();
+        invalidate(flightId);
+    }
+
+    public @NonNull Map<Long, Map<SeatClass, Integer>> getAvailableSeatCounts(@NonNull Collection<Long> flightIds) {
+        Map<Long, FlightSeatMap> loaded = loadMissing(flightIds);
+
+        Map<Long, Map<SeatClass, Integer>> availability = new HashMap<>();
+        for (Long flightId : flightIds) {
+            FlightSeatMap seatMap = flights.getOrDefault(flightId, loaded.get(flightId));
+            availability.put(flightId, seatMap != null ? seatMap.availableCounts() : emptyCounts());
+        }
+
+        return availability;
+    }
+
+    /**
+     * Egy osztály telítettsége (eladott / összes hely, 0..1) a memóriabeli számlálókból.
+     * Csak akkor megy az adatbázishoz, ha a járat még nincs betöltve; ülések nélküli osztálynál 0.
+     * Az ülések nélküli járatot is megjegyezzük (EMPTY_FLIGHT_TTL_NANOS ideig), így az árazás nem kérdez minden hívásnál.
+     */
+    public double getLoadFactor(@NonNull Long flightId, @NonNull SeatClass seatClass) {
+        FlightSeatMap seatMap = flights.get(flightId);
+
+        if (seatMap == null) {
+            seatMap = loadMissing(List.of(flightId)).get(flightId);
+        }
+
+        return seatMap != null ? seatMap.loadFactor(seatClass) : 0.0;
+    }
+
+    // ennyi járatot töltöttünk újra, mert a számlálói eltértek az adatbázistól
+    public long getReconciledFlights() {
+        return reconciledFlights.sum();
+    }
+
+    public long getClaimConflicts() {
+        return claimConflicts.sum();
+    }
+
+    public long getDatabaseClaimConflicts() {
+        return databaseClaimConflicts.sum();
+    }
+
+    public @NonNull List<SeatView> getAvailableSeats(@NonNull Long flightId, @NonNull SeatClass seatClass) {
+        return getSeatMap(flightId).availableSeats(seatClass);
+    }
+
+    // a teljes kabin (szabad és foglalt ülések), az ülés térképhez
+    public @NonNull List<SeatState> getSeatStates(@NonNull Long flightId) {
+        return getSeatMap(flightId).seatStates();
+    }
+
+    // a már elindult járatokat nem tartjuk memóriában
+    @Scheduled(fixedDelayString = "${seat-inventory.evict-interval-ms:600000}")
+    public void evictDeparted() {
+        LocalDateTime now = LocalDateTime.now();
+        flights.entrySet().removeIf(entry -> {
+            LocalDateTime departureTime = entry.getValue().departureTime;
+
+            if (departureTime == null || !departureTime.isBefore(now)) {
+                return false;
+            }
+
+            writeVersions.remove(entry.getKey());
+            return true;
+        });
+
+        long nanos = System.nanoTime();
+        emptyFlights.values().removeIf(expiresAt -> expiresAt - nanos <= 0);
+    }
+
+    // induláskor a még el nem indult járatokat betöltjük, hogy az első keresések és árajánlatok se várjanak az adatbázisra
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<Long> flightIds = flightRepository.findIdsDepartingAfter(LocalDateTime.now());
+
+        for (int from = 0; from < flightIds.size(); from += LOAD_CHUNK_SIZE) {
+            loadMissing(flightIds.subList(from, Math.min(from + LOAD_CHUNK_SIZE, flightIds.size())));
+        }
+
+        log.info("Ülés készlet betöltve: {} járat", flights.size());
+    }
+
+    /**
+     * A memóriabeli számlálók összevetése az adatbázissal (osztályonként egy GROUP BY COUNT).
+     * Egy folyamatban lévő foglalás rövid ideig eltérést okozhat (a memóriában már foglalt, az adatbázisban még nem),
+     * ezért csak azt a járatot töltjük újra, amelyik két egymást követő egyeztetésnél is eltér.
+     */
+    @Scheduled(fixedDelayString = "${seat-inventory.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        List<Long> flightIds = List.copyOf(flights.keySet());
+        Set<Long> drifted = new HashSet<>();
+
+        for (int from = 0; from < flightIds.size(); from += LOAD_CHUNK_SIZE) {
+            List<Long> chunk = flightIds.subList(from, Math.min(from + LOAD_CHUNK_SIZE, flightIds.size()));
+
+            Map<Long, int[]> availableInDb = new HashMap<>();
+            for (SeatAvailabilityCount row : seatRepository.countAvailableByFlightIds(chunk)) {
+                availableInDb.computeIfAbsent(row.getFlightId(), id -> new int[SeatClass.values().length])
+                        [row.getSeatClass().ordinal()] = row.getAvailable().intValue();
+            }
+
+            for (Long flightId : chunk) {
+                FlightSeatMap seatMap = flights.get(flightId);
+
+                if (seatMap != null && !seatMap.matchesAvailable(availableInDb.getOrDefault(flightId, new int[SeatClass.values().length]))) {
+                    drifted.add(flightId);
+                }
+            }
+        }
+
+        Set<Long> previouslyDrifted = Set.copyOf(driftedFlights);
+        driftedFlights.clear();
+
+        for (Long flightId : drifted) {
+            if (previouslyDrifted.contains(flightId)) {
+                log.warn("A(z) {} járat ülés számlálói eltérnek az adatbázistól, újratöltjük", flightId);
+                invalidate(flightId);
+                reconciledFlights.increment();
+            } else {
+                driftedFlights.add(flightId);
+            }
+        }
+    }
+
+    private @NonNull FlightSeatMap getSeatMap(@NonNull Long flightId) {
+        FlightSeatMap seatMap = flights.get(flightId);
+        if (seatMap != null) {
+            return seatMap;
+        }
+
+        seatMap = loadMissing(List.of(flightId)).get(flightId);
+
+        if (seatMap == null) {
+            throw new ResourceNotFoundException("Nincsenek ülések a járathoz: " + flightId);
+        }
+
+        return seatMap;
+    }
+
+    /**
+     * A hiányzó járatokat egyetlen lekérdezéssel tölti be; a betöltött (vagy közben más által betöltött) térképeket
+     * adja vissza. Ha a lekérdezés alatt a járaton lezárult egy írás, a pillanatkép a tranzakció előtti állapotot
+     * mutathatja: ezt a hívást még kiszolgálja, de nem tartjuk meg.
+     */
+    private @NonNull Map<Long, FlightSeatMap> loadMissing(@NonNull Collection<Long> flightIds) {
+        long nanos = System.nanoTime();
+        Map<Long, FlightSeatMap> loaded = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+
+        // a hívó a flights.get után ért ide: ha azóta egy másik szál betöltötte a járatot, azt adjuk vissza
+        for (Long flightId : new LinkedHashSet<>(flightIds)) {
+            FlightSeatMap cached = flights.get(flightId);
+
+            if (cached != null) {
+                loaded.put(flightId, cached);
+            } else if (!knownEmpty(flightId, nanos)) {
+                missing.add(flightId);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return loaded;
+        }
+
+        Map<Long, Long> versions = new HashMap<>();
+        for (Long flightId : missing) {
+            versions.put(flightId, writeVersions.get(flightId));
+        }
+
+        Map<Long, List<SeatSnapshot>> byFlight = new HashMap<>();
+        for (SeatSnapshot snapshot : seatRepository.findSnapshotsByFlightIds(missing)) {
+            byFlight.computeIfAbsent(snapshot.getFlightId(), id -> new ArrayList<>()).add(snapshot);
+        }
+
+        for (Long flightId : missing) {
+            if (!byFlight.containsKey(flightId)) {
+                emptyFlights.put(flightId, nanos + EMPTY_FLIGHT_TTL_NANOS);
+            }
+        }
+
+        byFlight.forEach((flightId, snapshots) -> {
+            FlightSeatMap seatMap = new FlightSeatMap(snapshots);
+            FlightSeatMap cached = flights.putIfAbsent(flightId, seatMap);
+
+            // ha közben egy másik szál már betöltötte, az övé marad (abban lehetnek friss foglalások)
+            if (cached != null) {
+                loaded.put(flightId, cached);
+                return;
+            }
+
+            // a beillesztés után ellenőrzünk: a közben lezárult írás vagy itt látszik, vagy a settle() dobja el a térképet
+            if (!Objects.equals(writeVersions.get(flightId), versions.get(flightId))) {
+                flights.remove(flightId, seatMap);
+            }
+
+            loaded.put(flightId, seatMap);
+        });
+
+        return loaded;
+    }
+
+    private boolean knownEmpty(@NonNull Long flightId, long nanos) {
+        Long expiresAt = emptyFlights.get(flightId);
+        return expiresAt != null && expiresAt - nanos > 0;
+    }
+
+    // lezárult egy tranzakciós írás: ha közben a járatot újratöltötték, az új térkép a commit előtti állapotot
+    // láthatta, ezért eldobjuk; a következő olvasás már a commit utáni állapotot tölti be
+    private void settle(@NonNull Long flightId, @Nullable FlightSeatMap seatMap) {
+        writeVersions.merge(flightId, 1L, Long::sum);
+
+        FlightSeatMap current = flights.get(flightId);
+        if (current != null && current != seatMap) {
+            flights.remove(flightId, current);
+        }
+    }
+
+    private static @NonNull Map<SeatClass, Integer> emptyCounts() {
+        Map<SeatClass, Integer> counts = new HashMap<>();
+        for (SeatClass seatClass : SeatClass.values()) {
+            counts.put(seatClass, 0);
+        }
+        return counts;
+    }
+
+    // a keresési cache-t csak a készlet rendeződése után értesítjük, különben egy közbeni keresés a régi számokat tenné el
+    private void afterCompletion(@NonNull Long flightId, @Nullable FlightSeatMap seatMap, @NonNull Runnable onCommit, @NonNull Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(flightId));
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+
+                settle(flightId, seatMap);
+                eventPublisher.publishEvent(new SeatAvailabilityChangedEvent(flightId));
+            }
+        });
+    }
+
+    public record SeatView(long id, String seatNumber, SeatClass seatClass, BigDecimal price) {}
+
+    public record SeatState(String seatNumber, SeatClass seatClass, boolean available) {}
+
+    /**
+     * Egy járat ülései tömbökben, a szabad állapot bitenként egy AtomicLongArray-ben.
+     */
+    private static final class FlightSeatMap {
+        private final long[] seatIds;
+        private final String[] seatNumbers;
+        private final SeatClass[] seatClasses;
+        private final BigDecimal[] prices;
+        private final Map<String, Integer> indexBySeatNumber;
+        private final LocalDateTime departureTime;
+
+        private final AtomicLongArray availableBits;
+        private final int[] totalByClass = new int[SeatClass.values().length];
+        private final AtomicIntegerArray availableByClass = new AtomicIntegerArray(SeatClass.values().length);
+
+        private FlightSeatMap(@NonNull List<SeatSnapshot> snapshots) {
+            int size = snapshots.size();
+
+            seatIds = new long[size];
+            seatNumbers = new String[size];
+            seatClasses = new SeatClass[size];
+            prices = new BigDecimal[size];
+            indexBySeatNumber = new HashMap<>(size * 2);
+            departureTime = size > 0 ? snapshots.getFirst().getDepartureTime() : null;
+
+            long[] words = new long[(size + 63) >>> 6];
+
+            for (int i = 0; i < size; i++) {
+                SeatSnapshot snapshot = snapshots.get(i);
+
+                seatIds[i] = snapshot.getId();
+                seatNumbers[i] = snapshot.getSeatNumber();
+                seatClasses[i] = snapshot.getSeatClass();
+                prices[i] = snapshot.getPrice();
+                indexBySeatNumber.putIfAbsent(snapshot.getSeatNumber(), i);
+                totalByClass[snapshot.getSeatClass().ordinal()]++;
+
+                if (Boolean.TRUE.equals(snapshot.getAvailable())) {
+                    words[i >>> 6] |= 1L << i;
+                    availableByClass.incrementAndGet(snapshot.getSeatClass().ordinal());
+                }
+            }
+
+            availableBits = new AtomicLongArray(words);
+        }
+
+        private int indexOf(@NonNull String seatNumber) {
+            Integer index = indexBySeatNumber.get(seatNumber);
+
+            if (index == null) {
+                throw new ResourceNotFoundException("Nem található az ülés: " + seatNumber);
+            }
+
+            return index;
+        }
+
+        private boolean claim(int index) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+
+            while (true) {
+                long current = availableBits.get(word);
+
+                if ((current & mask) == 0) {
+                    return false;
+                }
+
+                if (availableBits.compareAndSet(word, current, current & ~mask)) {
+                    availableByClass.decrementAndGet(seatClasses[index].ordinal());
+                    return true;
+                }
+            }
+        }
+
+        private void release(int index) {
+            int word = index >>> 6;
+            long mask = 1L << index;
+
+            while (true) {
+                long current = availableBits.get(word);
+
+                if ((current & mask) != 0) {
+                    return;
+                }
+
+                if (availableBits.compareAndSet(word, current, current | mask)) {
+                    availableByClass.incrementAndGet(seatClasses[index].ordinal());
+                    return;
+                }
+            }
+        }
+
+        private @NonNull Map<SeatClass, Integer> availableCounts() {
+            Map<SeatClass, Integer> counts = new HashMap<>();
+            for (SeatClass seatClass : SeatClass.values()) {
+                counts.put(seatClass, availableByClass.get(seatClass.ordinal()));
+            }
+            return counts;
+        }
+
+        private double loadFactor(@NonNull SeatClass seatClass) {
+            int total = totalByClass[seatClass.ordinal()];
+            return total == 0 ? 0.0 : (double) (total - availableByClass.get(seatClass.ordinal())) / total;
+        }
+
+        private boolean matchesAvailable(int @NonNull [] available) {
+            for (int i = 0; i < available.length; i++) {
+                if (availableByClass.get(i) != available[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // az ülésszám formátuma "<sor><betű>", pl. 12C
+        private @NonNull List<String> findAdjacentAvailable(@NonNull SeatClass seatClass, int count) {
+            TreeMap<Integer, TreeMap<Character, String>> availableByRow = new TreeMap<>();
+
+            for (int i = 0; i < seatIds.length; i++) {
+                String seatNumber = seatNumbers[i];
+
+                if (seatClasses[i] != seatClass || seatNumber == null || seatNumber.length() < 2
+                        || (availableBits.get(i >>> 6) & (1L << i)) == 0) {
+                    continue;
+                }
+
+                char column = seatNumber.charAt(seatNumber.length() - 1);
+                String rowPart = seatNumber.substring(0, seatNumber.length() - 1);
+
+                if (!Character.isLetter(column) || !rowPart.chars().allMatch(Character::isDigit)) {
+                    continue;
+                }
+
+                availableByRow.computeIfAbsent(Integer.parseInt(rowPart), row -> new TreeMap<>()).put(column, seatNumber);
+            }
+
+            for (TreeMap<Character, String> row : availableByRow.values()) {
+                List<String> run = new ArrayList<>(count);
+                char previous = 0;
+
+                for (Map.Entry<Character, String> seat : row.entrySet()) {
+                    if (run.isEmpty() || seat.getKey() != previous + 1) {
+                        run.clear();
+                    }
+
+                    run.add(seat.getValue());
+                    previous = seat.getKey();
+
+                    if (run.size() == count) {
+                        return run;
+                    }
+                }
+            }
+
+            return List.of();
+        }
+
+        private @NonNull List<SeatView> availableSeats(@NonNull SeatClass seatClass) {
+            List<SeatView> seats = new ArrayList<>();
+
+            for (int i = 0; i < seatIds.length; i++) {
+                if (seatClasses[i] == seatClass && (availableBits.get(i >>> 6) & (1L << i)) != 0) {
+                    seats.add(new SeatView(seatIds[i], seatNumbers[i], seatClasses[i], prices[i]));
+                }
+            }
+
+            return seats;
+        }
+
+        private @NonNull List<SeatState> seatStates() {
+            List<SeatState> seats = new ArrayList<>(seatIds.length);
+
+            for (int i = 0; i < seatIds.length; i++) {
+                seats.add(new SeatState(seatNumbers[i], seatClasses[i], (availableBits.get(i >>> 6) & (1L << i)) != 0));
+            }
+
+            return seats;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package net.coma112.flightbooking.service;
+
+import com.stripe.Stripe;
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.PaymentIntentCancelParams;
+import com.stripe.param.PaymentIntentCreateParams;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * A Stripe API hívásai, a stripe válaszfalon keresztül.
+ * A Stripe kliens saját időkorlátját a válaszfaléhoz igazítjuk, így az időtúllépés után a háttérben tovább
+ * futó hívás is hamar elengedi a helyét.
+ */
+@Component
+public class StripeGateway {
+    @Value("${stripe.secret.key:sk_test_placeholder}")
+    private String stripeSecretKey;
+
+    // helyi Stripe csonkhoz (terheléses teszt), üresen a valódi API
+    @Value("${stripe.api-base:}")
+    private String apiBase;
+
+    @Value("${bulkhead.stripe.max-concurrency:20}")
+    private int maxConcurrency;
+
+    @Value("${bulkhead.stripe.max-wait:PT0.2S}")
+    private Duration maxWait;
+
+    @Value("${bulkhead.stripe.timeout:PT10S}")
+    private Duration timeout;
+
+    private Bulkhead bulkhead;
+
+    @PostConstruct
+    public void init() {
+        Stripe.apiKey = stripeSecretKey;
+
+        if (!apiBase.isBlank()) {
+            Stripe.overrideApiBase(apiBase);
+        }
+
+        int timeoutMillis = Math.toIntExact(timeout.toMillis());
+        Stripe.setConnectTimeout(Math.min(timeoutMillis, Stripe.DEFAULT_CONNECT_TIMEOUT));
+        Stripe.setReadTimeout(timeoutMillis);
+
+        bulkhead = new Bulkhead("stripe", maxConcurrency, maxWait, timeout);
+    }
+
+    // azonos kulccsal a Stripe 24 órán belül ugyanazt a PaymentIntent-et adja vissza, újat nem hoz létre
+    @Timed(value = "stripe.requests", extraTags = {"operation", "create_payment_intent"}, histogram = true)
+    public @NonNull PaymentIntent createPaymentIntent(@NonNull PaymentIntentCreateParams params, @NonNull String idempotencyKey) throws StripeException {
+        RequestOptions options = RequestOptions.builder()
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+
+        return bulkhead.call(() -> PaymentIntent.create(params, options));
+    }
+
+    // a már sikeres vagy éppen feldolgozás alatt álló szándékot a Stripe nem engedi lemondani (StripeException)
+    @Timed(value = "stripe.requests", extraTags = {"operation", "cancel_payment_intent"}, histogram = true)
+    public @NonNull PaymentIntent cancelPaymentIntent(@NonNull String paymentIntentId, @NonNull String idempotencyKey) throws StripeException {
+        RequestOptions options = RequestOptions.builder()
+                .setIdempotencyKey(idempotencyKey)
+                .build();
+
+        PaymentIntentCancelParams params = PaymentIntentCancelParams.builder()
+                .setCancellationReason(PaymentIntentCancelParams.CancellationReason.ABANDONED)
+                .build();
+
+        PaymentIntent intent = new PaymentIntent();
+        intent.setId(paymentIntentId);
+
+        return bulkhead.call(() -> intent.cancel(params, options));
+    }
+
+    public @NonNull Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkhead.close();
+    }
+}
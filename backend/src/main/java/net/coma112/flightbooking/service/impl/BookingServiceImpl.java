@@ -1,25 +1,38 @@
 package net.coma112.flightbooking.service.impl;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import net.coma112.flightbooking.dto.*;
 import net.coma112.flightbooking.exception.BusinessException;
 import net.coma112.flightbooking.exception.ResourceNotFoundException;
 import net.coma112.flightbooking.model.*;
 import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.model.enums.OutboxStatus;
 import net.coma112.flightbooking.model.enums.SeatClass;
 import net.coma112.flightbooking.repository.*;
+import net.coma112.flightbooking.repository.projection.BookingView;
+import net.coma112.flightbooking.service.BookingReferenceAllocator;
 import net.coma112.flightbooking.service.BookingService;
 import net.coma112.flightbooking.service.PassengerService;
 import net.coma112.flightbooking.service.PricingService;
+import net.coma112.flightbooking.service.ReferenceDataCache;
+import net.coma112.flightbooking.service.SeatInventory;
 import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import tools.jackson.databind.json.JsonMapper;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -29,91 +42,342 @@ public class BookingServiceImpl implements BookingService {
     private final SeatRepository seatRepository;
     private final PassengerService passengerService;
     private final PricingService pricingService;
+    private final SeatInventory seatInventory;
+    private final BookingReferenceAllocator referenceAllocator;
+    private final ReferenceDataCache referenceData;
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JsonMapper jsonMapper;
+
+    // keyset lapozás: alapértelmezett és legnagyobb oldalméret
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // első oldal: minden foglalás a kurzor "előtt" van
+    private static final LocalDateTime FIRST_PAGE_DATE = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    // NDJSON stream: ennyi sor után ürítjük a kimenetet, hogy a kliens folyamatosan kapja az adatot
+    private static final int STREAM_FLUSH_EVERY = 100;
+
+    // ennyi ideig tartjuk a helyet fizetés nélkül
+    @Value("${seat-hold.ttl:PT15M}")
+    private Duration seatHoldTtl;
 
     @Override
     @Transactional
+    @Timed(value = "booking.create", extraTags = {"type", "single"}, histogram = true)
     public BookingResponse createBooking(BookingRequest request) {
         Flight flight = flightRepository.findById(request.getFlightId())
                 .orElseThrow(() -> new ResourceNotFoundException("Nem található a járat: " + request.getFlightId()));
 
-        Seat seat = seatRepository.findFirstByFlightAndSeatNumber(flight, request.getSeatNumber())
-                .orElseThrow(() -> new ResourceNotFoundException("Nem található az ülés: " + request.getSeatNumber()));
+        // az árat a foglalás előtti telítettséggel számoljuk, ugyanazt, amit a keresés mutatott
+        Map<SeatClass, BigDecimal> prices = pricingService.quoteAll(flight, LocalDateTime.now());
 
-        if (!seat.isAvailable()) {
-            throw new BusinessException("A(z) " + request.getSeatNumber() + " ülés már foglalt");
-        }
+        // gyors előszűrés a memóriában (CAS), rollback esetén a SeatInventory visszaadja a helyet
+        long seatId = seatInventory.claim(flight.getId(), request.getSeatNumber());
+
+        Seat seat = seatRepository.findById(seatId)
+                .orElseThrow(() -> new ResourceNotFoundException("Nem található az ülés: " + request.getSeatNumber()));
 
         Passenger passenger = passengerService.createOrUpdatePassenger(request.getPassengerDetails());
 
-        BigDecimal finalPrice = pricingService.calculatePrice(
-                flight,
-                seat.getSeatClass(),
-                LocalDateTime.now()
-        );
+        BigDecimal finalPrice = prices.get(seat.getSeatClass());
 
         Booking booking = new Booking();
-        booking.setBookingReference(generateBookingReference());
+        booking.setBookingReference(referenceAllocator.next());
         booking.setFlight(flight);
         booking.setPassenger(passenger);
         booking.setSeat(seat);
         booking.setTotalPrice(finalPrice);
         booking.setStatus(BookingStatus.PENDING);
         booking.setBookingDate(LocalDateTime.now());
-
-        seat.setAvailable(false);
-        seatRepository.save(seat);
+        booking.setHoldExpiresAt(booking.getBookingDate().plus(seatHoldTtl));
 
         Booking savedBooking = bookingRepository.save(booking);
 
+        // a tényleges foglalás a tranzakció legvégén, egy feltételes UPDATE-tel történik,
+        // így az ülés sorát csak a commitig tartjuk zárolva
+        if (seatRepository.claimSeat(seatId) == 0) {
+            seatInventory.recordDatabaseConflict(flight.getId());
+            throw new BusinessException("A(z) " + request.getSeatNumber() + " ülés már foglalt");
+        }
+
         return convertToBookingResponse(savedBooking);
     }
 
+    /**
+     * Csoportos foglalás egy tranzakcióban: vagy minden utas kap helyet, vagy senki.
+     * Az utasok és a foglalások kötegelve mennek ki, a helyeket a végén egyetlen feltételes UPDATE foglalja le.
+     */
+    @Override
+    @Transactional
+    @Timed(value = "booking.create", extraTags = {"type", "group"}, histogram = true)
+    public GroupBookingResponse createGroupBooking(GroupBookingRequest request) {
+        List<PassengerDTO> passengers = request.getPassengers();
+        List<String> seatNumbers = request.getSeatNumbers();
+
+        boolean explicitSeats = seatNumbers != null && !seatNumbers.isEmpty();
+
+        if (explicitSeats && (seatNumbers.size() != passengers.size() || new HashSet<>(seatNumbers).size() != seatNumbers.size())) {
+            throw new BusinessException("Minden utashoz pontosan egy, különböző ülés kell!");
+        }
+
+        if (!explicitSeats && request.getSeatClass() == null) {
+            throw new BusinessException("Adjon meg üléseket vagy egy osztályt!");
+        }
+
+        // az utasokat email alapján azonosítjuk, így két utas nem oszthat meg egy email címet
+        if (passengers.stream().map(PassengerDTO::getEmail).distinct().count() != passengers.size()) {
+            throw new BusinessException("Minden utasnak külön email cím kell!");
+        }
+
+        Flight flight = flightRepository.findById(request.getFlightId())
+                .orElseThrow(() -> new ResourceNotFoundException("Nem található a járat: " + request.getFlightId()));
+
+        // a csoport minden tagja a foglalás előtti telítettség szerinti árat kapja
+        LocalDateTime now = LocalDateTime.now();
+        Map<SeatClass, BigDecimal> prices = pricingService.quoteAll(flight, now);
+
+        Map<String, Long> claimedSeats = explicitSeats
+                ? seatInventory.claimAll(flight.getId(), seatNumbers)
+                : seatInventory.claimAdjacent(flight.getId(), request.getSeatClass(), passengers.size());
+
+        List<Long> seatIds = List.copyOf(claimedSeats.values());
+        Map<Long, Seat> seatsById = new HashMap<>();
+        seatRepository.findAllById(seatIds).forEach(seat -> seatsById.put(seat.getId(), seat));
+
+        List<Passenger> savedPassengers = passengerService.createOrUpdatePassengers(passengers);
+
+        String groupReference = referenceAllocator.next();
+        List<Booking> bookings = new ArrayList<>(passengers.size());
+
+        for (int i = 0; i < passengers.size(); i++) {
+            Seat seat = seatsById.get(seatIds.get(i));
+
+            Booking booking = new Booking();
+            booking.setBookingReference(referenceAllocator.next());
+            booking.setGroupReference(groupReference);
+            booking.setFlight(flight);
+            booking.setPassenger(savedPassengers.get(i));
+            booking.setSeat(seat);
+            booking.setTotalPrice(prices.get(seat.getSeatClass()));
+            booking.setStatus(BookingStatus.PENDING);
+            booking.setBookingDate(now);
+            booking.setHoldExpiresAt(now.plus(seatHoldTtl));
+
+            bookings.add(booking);
+        }
+
+        List<Booking> savedBookings = bookingRepository.saveAll(bookings);
+
+        // mind vagy egyik sem: ha nem mind az N sor változott, a kivétel az egész tranzakciót visszagörgeti
+        if (seatRepository.claimSeats(seatIds) != seatIds.size()) {
+            seatInventory.recordDatabaseConflict(flight.getId());
+            throw new BusinessException("A kiválasztott ülések közül valamelyik már foglalt");
+        }
+
+        List<BookingResponse> responses = savedBookings.stream()
+                .map(this::convertToBookingResponse)
+                .toList();
+
+        BigDecimal totalPrice = responses.stream()
+                .map(BookingResponse::getTotalPrice)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        return new GroupBookingResponse(groupReference, responses, totalPrice);
+    }
+
     @Override
     public BookingResponse getBookingByReference(String reference) {
-        Booking booking = bookingRepository.findByBookingReference(reference)
-                .orElseThrow(() -> new ResourceNotFoundException("Nem található a foglalás: " + reference));
+        return convertToBookingResponse(findView(reference));
+    }
 
-        return convertToBookingResponse(booking);
+    @Override
+    public BookingPage getBookingsByPassenger(String email, String cursor, int size) {
+        return page(cursor, size, (after, limit) -> bookingRepository.findViewsByPassengerEmail(email, after.bookingDate(), after.id(), limit));
+    }
+
+    @Override
+    public BookingPage getBookingsByStatus(BookingStatus status, String cursor, int size) {
+        return page(cursor, size, (after, limit) -> bookingRepository.findViewsByStatus(status, after.bookingDate(), after.id(), limit));
+    }
+
+    // a stream végig nyitva tartja a kapcsolatot és a kurzort, ezért kell köré (csak olvasó) tranzakció
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookingsByPassenger(String email, OutputStream output) throws IOException {
+        try (Stream<BookingView> bookings = bookingRepository.streamViewsByPassengerEmail(email)) {
+            writeNdjson(bookings, output);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBookingsByStatus(BookingStatus status, OutputStream output) throws IOException {
+        try (Stream<BookingView> bookings = bookingRepository.streamViewsByStatus(status)) {
+            writeNdjson(bookings, output);
+        }
     }
 
     @Override
     @Transactional
+    @Timed(value = "booking.cancel", histogram = true)
     public void cancelBooking(String reference) {
-        Booking booking = bookingRepository.findByBookingReference(reference)
-                .orElseThrow(() -> new ResourceNotFoundException("Nem található a foglalás: " + reference));
+        BookingView booking = findView(reference);
 
         if (booking.getStatus() == BookingStatus.CANCELLED) {
             throw new BusinessException("A foglalás már le van mondva!");
         }
 
-        Seat seat = booking.getSeat();
-        seat.setAvailable(true);
-        seatRepository.save(seat);
+        // feltételes UPDATE, így a SeatHoldSweeperrel párhuzamosan sem szabadítjuk fel kétszer a helyet
+        if (bookingRepository.cancelActive(booking.getId()) == 0) {
+            throw new BusinessException("A foglalás már le van mondva!");
+        }
 
-        booking.setStatus(BookingStatus.CANCELLED);
-        bookingRepository.save(booking);
+        seatRepository.releaseSeat(booking.getSeatId());
+        seatInventory.release(booking.getFlightId(), booking.getSeatNumber());
     }
 
     @Override
     @Transactional
+    @Timed(value = "booking.confirm", histogram = true)
     public BookingResponse confirmBooking(String reference) {
-        Booking booking = bookingRepository.findByBookingReference(reference)
-                .orElseThrow(() -> new ResourceNotFoundException("Nem található a foglalás: " + reference));
+        return confirm(reference);
+    }
+
+    @Override
+    @Transactional
+    @Timed(value = "booking.confirm", histogram = true)
+    public BookingResponse confirmBooking(String reference, String paymentMethod) {
+        BookingResponse response = confirm(reference);
+
+        // a visszaigazoló email a megerősítéssel egy tranzakcióban kerül az outboxba, a küldés a háttérben megy
+        LocalDateTime now = LocalDateTime.now();
+        emailOutboxRepository.save(new EmailOutbox(null, reference, paymentMethod, OutboxStatus.PENDING, 0, now, now, null, null));
+
+        return response;
+    }
+
+    private @NonNull BookingResponse confirm(@NonNull String reference) {
+        BookingView booking = findView(reference);
 
         if (booking.getStatus() != BookingStatus.PENDING) {
             throw new BusinessException("Csak PENDING státuszú foglalás erősíthető meg!");
         }
 
-        booking.setStatus(BookingStatus.CONFIRMED);
-        Booking confirmedBooking = bookingRepository.save(booking);
+        // ha a SeatHoldSweeper közben lejártnak vette és törölte, nem erősítjük meg
+        if (bookingRepository.confirmPending(booking.getId()) == 0) {
+            throw new BusinessException("A foglalás lejárt, kérjük foglaljon újra!");
+        }
+
+        BookingResponse response = convertToBookingResponse(booking);
+        response.setStatus(BookingStatus.CONFIRMED);
+
+        return response;
+    }
+
+    // size + 1 sort kérünk: ha megjön a plusz sor, van következő oldal, és nem kell külön COUNT
+    private @NonNull BookingPage page(String cursor, int size, @NonNull PageQuery query) {
+        int pageSize = size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+        List<BookingView> views = query.fetch(decodeCursor(cursor), Limit.of(pageSize + 1));
+
+        boolean hasNext = views.size() > pageSize;
+        List<BookingView> pageViews = hasNext ? views.subList(0, pageSize) : views;
+
+        List<BookingResponse> bookings = pageViews.stream()
+                .map(this::convertToBookingResponse)
+                .toList();
+
+        String nextCursor = hasNext ? encodeCursor(pageViews.getLast()) : null;
+
+        return new BookingPage(bookings, nextCursor);
+    }
+
+    // a stream soronként megy ki, így a memória a találatok számától független
+    private void writeNdjson(@NonNull Stream<BookingView> bookings, @NonNull OutputStream output) throws IOException {
+        Iterator<BookingView> iterator = bookings.iterator();
+        int written = 0;
+
+        while (iterator.hasNext()) {
+            output.write(jsonMapper.writeValueAsBytes(convertToBookingResponse(iterator.next())));
+            output.write('\n');
+
+            if (++written % STREAM_FLUSH_EVERY == 0) {
+                output.flush();
+            }
+        }
+
+        output.flush();
+    }
 
-        return convertToBookingResponse(confirmedBooking);
+    // a kurzor az utolsó sor (booking_date, id) párja, base64url-ben, hogy a kliens átlátszatlan tokenként kezelje
+    private static @NonNull String encodeCursor(@NonNull BookingView last) {
+        String key = last.getBookingDate() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static @NonNull PageCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return new PageCursor(FIRST_PAGE_DATE, Long.MAX_VALUE);
+        }
+
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = key.indexOf('|');
+
+            return new PageCursor(LocalDateTime.parse(key.substring(0, separator)), Long.parseLong(key.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException exception) {
+            throw new BusinessException("Érvénytelen lapozási kurzor!");
+        }
+    }
+
+    private record PageCursor(LocalDateTime bookingDate, Long id) {}
+
+    @FunctionalInterface
+    private interface PageQuery {
+        List<BookingView> fetch(PageCursor after, Limit limit);
+    }
+
+    private @NonNull BookingView findView(@NonNull String reference) {
+        return bookingRepository.findViewByReference(reference)
+                .orElseThrow(() -> new ResourceNotFoundException("Nem található a foglalás: " + reference));
+    }
+
+    private @NonNull BookingResponse convertToBookingResponse(@NonNull BookingView booking) {
+        BookingResponse response = new BookingResponse();
+
+        response.setBookingReference(booking.getBookingReference());
+        response.setGroupReference(booking.getGroupReference());
+        response.setStatus(booking.getStatus());
+        response.setBookingDate(booking.getBookingDate());
+        response.setTotalPrice(booking.getTotalPrice());
+        response.setSeatNumber(booking.getSeatNumber());
+
+        response.setFlight(convertToFlightResponse(
+                booking.getFlightId(),
+                booking.getFlightNumber(),
+                booking.getDepartureAirportId(),
+                booking.getArrivalAirportId(),
+                booking.getDepartureTime(),
+                booking.getArrivalTime()
+        ));
+
+        PassengerDTO passenger = new PassengerDTO();
+        passenger.setFirstName(booking.getFirstName());
+        passenger.setLastName(booking.getLastName());
+        passenger.setEmail(booking.getEmail());
+        passenger.setPhoneNumber(booking.getPhoneNumber());
+        passenger.setPassportNumber(booking.getPassportNumber());
+        passenger.setDateOfBirth(booking.getDateOfBirth());
+        response.setPassenger(passenger);
+
+        return response;
     }
 
     private @NonNull BookingResponse convertToBookingResponse(@NonNull Booking booking) {
         BookingResponse response = new BookingResponse();
 
         response.setBookingReference(booking.getBookingReference());
+        response.setGroupReference(booking.getGroupReference());
         response.setStatus(booking.getStatus());
         response.setBookingDate(booking.getBookingDate());
         response.setTotalPrice(booking.getTotalPrice());
@@ -125,34 +389,44 @@ public class BookingServiceImpl implements BookingService {
     }
 
     private @NonNull FlightResponse convertToFlightResponse(@NonNull Flight flight) {
+        return convertToFlightResponse(
+                flight.getId(),
+                flight.getFlightNumber(),
+                flight.getDepartureAirport().getId(),
+                flight.getArrivalAirport().getId(),
+                flight.getDepartureTime(),
+                flight.getArrivalTime()
+        );
+    }
+
+    // a foglalás a kifizetett árat (totalPrice) mutatja, a járat mai ára és szabad helyei nem tartoznak hozzá:
+    // így az előzmények, a stream és az e-mailek sorai nem nyúlnak az árazóhoz és az ülés készlethez
+    private @NonNull FlightResponse convertToFlightResponse(
+            @NonNull Long flightId,
+            @NonNull String flightNumber,
+            @NonNull Long departureAirportId,
+            @NonNull Long arrivalAirportId,
+            @NonNull LocalDateTime departureTime,
+            @NonNull LocalDateTime arrivalTime
+    ) {
         FlightResponse response = new FlightResponse();
 
-        response.setId(flight.getId());
-        response.setFlightNumber(flight.getFlightNumber());
-        response.setDepartureTime(flight.getDepartureTime());
-        response.setArrivalTime(flight.getArrivalTime());
+        response.setId(flightId);
+        response.setFlightNumber(flightNumber);
+        response.setDepartureTime(departureTime);
+        response.setArrivalTime(arrivalTime);
 
-        response.setDepartureAirport(convertToAirportDTO(flight.getDepartureAirport()));
-        response.setArrivalAirport(convertToAirportDTO(flight.getArrivalAirport()));
+        response.setDepartureAirport(convertToAirportDTO(departureAirportId));
+        response.setArrivalAirport(convertToAirportDTO(arrivalAirportId));
 
         response.setAvailableSeats(new HashMap<>());
-
-        Map<SeatClass, BigDecimal> prices = new HashMap<>();
-        prices.put(SeatClass.ECONOMY, flight.getBasePrice());
-        prices.put(SeatClass.BUSINESS, flight.getBasePrice().multiply(new BigDecimal("2.5")));
-        prices.put(SeatClass.FIRST, flight.getBasePrice().multiply(new BigDecimal("4.0")));
-        response.setPrices(prices);
+        response.setPrices(new HashMap<>());
 
         return response;
     }
 
-    private @NonNull AirportDTO convertToAirportDTO(@NonNull Airport airport) {
-        return new AirportDTO(
-                airport.getIataCode(),
-                airport.getName(),
-                airport.getCity(),
-                airport.getCountry()
-        );
+    private @NonNull AirportDTO convertToAirportDTO(@NonNull Long airportId) {
+        return referenceData.getAirport(airportId).toDto();
     }
 
     private @NonNull PassengerDTO convertToPassengerDTO(@NonNull Passenger passenger) {
@@ -165,16 +439,4 @@ public class BookingServiceImpl implements BookingService {
         dto.setDateOfBirth(passenger.getDateOfBirth());
         return dto;
     }
-
-    private @NonNull String generateBookingReference() {
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-        Random random = new Random();
-        StringBuilder reference = new StringBuilder(6);
-
-        for (int i = 0; i < 6; i++) {
-            reference.append(chars.charAt(random.nextInt(chars.length())));
-        }
-
-        return reference.toString();
-    }
 }
\ No newline at end of file
@@ -1,24 +1,34 @@
 package net.coma112.flightbooking.service.impl;
 
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import net.coma112.flightbooking.dto.AirportDTO;
+import net.coma112.flightbooking.dto.FareCalendarRequest;
+import net.coma112.flightbooking.dto.FareCalendarResponse;
 import net.coma112.flightbooking.dto.FlightResponse;
 import net.coma112.flightbooking.dto.FlightSearchRequest;
-import net.coma112.flightbooking.model.Airport;
+import net.coma112.flightbooking.dto.ItineraryResponse;
+import net.coma112.flightbooking.dto.SeatMapResponse;
 import net.coma112.flightbooking.model.Flight;
 import net.coma112.flightbooking.model.Seat;
+import net.coma112.flightbooking.model.enums.FlightStatus;
 import net.coma112.flightbooking.model.enums.SeatClass;
-import net.coma112.flightbooking.repository.AirportRepository;
 import net.coma112.flightbooking.repository.FlightRepository;
-import net.coma112.flightbooking.repository.SeatRepository;
+import net.coma112.flightbooking.service.ConnectionSearchEngine;
+import net.coma112.flightbooking.service.FlightSearchCache;
 import net.coma112.flightbooking.service.FlightService;
+import net.coma112.flightbooking.service.PricingService;
+import net.coma112.flightbooking.service.ReferenceDataCache;
+import net.coma112.flightbooking.service.ReferenceDataCache.AirportRef;
+import net.coma112.flightbooking.service.SeatInventory;
 import org.jspecify.annotations.NonNull;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -26,54 +36,243 @@ public class FlightServiceImpl implements FlightService {
 
     // DI
     private final FlightRepository flightRepository;
-    private final AirportRepository airportRepository;
-    private final SeatRepository seatRepository;
+    private final ReferenceDataCache referenceData;
+    private final FlightSearchCache searchCache;
+    private final SeatInventory seatInventory;
+    private final ConnectionSearchEngine connectionSearchEngine;
+    private final PricingService pricingService;
 
     @Override
+    @Timed(value = "flight.search", histogram = true)
     public List<FlightResponse> searchFlights(FlightSearchRequest request) {
-        Airport departureAirport = airportRepository.findByIataCode(request.getDepartureAirportCode())
+        return searchCache.get(request, () -> loadFlights(request));
+    }
+
+    private @NonNull List<FlightResponse> loadFlights(@NonNull FlightSearchRequest request) {
+        AirportRef departureAirport = referenceData.findAirport(request.getDepartureAirportCode())
                 .orElseThrow(() -> new RuntimeException("Nem található departure!"));
 
-        Airport arrivalAirport = airportRepository.findByIataCode(request.getArrivalAirportCode())
+        AirportRef arrivalAirport = referenceData.findAirport(request.getArrivalAirportCode())
                 .orElseThrow(() -> new RuntimeException("Nem található arrival!"));
 
         LocalDateTime startOfDay = request.getDepartureDate().atStartOfDay();
         LocalDateTime endOfDay = request.getDepartureDate().atTime(23, 59, 59);
 
-        List<Flight> flights = flightRepository.findByDepartureAirportAndArrivalAirportAndDepartureTimeBetween(
-                departureAirport,
-                arrivalAirport,
+        List<Flight> flights = flightRepository.findByDepartureAirportIdAndArrivalAirportIdAndDepartureTimeBetween(
+                departureAirport.id(),
+                arrivalAirport.id(),
                 startOfDay,
                 endOfDay
         );
 
-        List<FlightResponse> responses = Collections.synchronizedList(new ArrayList<>());
+        Map<Long, Map<SeatClass, Integer>> availability = loadAvailableSeats(flights);
+        List<FlightResponse> responses = new ArrayList<>(flights.size());
 
         for (Flight flight : flights) {
-            FlightResponse response = convertToFlightResponse(flight);
+            FlightResponse response = convertToFlightResponse(flight, availability);
             responses.add(response);
         }
 
         return responses;
     }
 
+    @Override
+    public List<ItineraryResponse> searchConnections(FlightSearchRequest request) {
+        AirportRef departureAirport = referenceData.findAirport(request.getDepartureAirportCode())
+                .orElseThrow(() -> new RuntimeException("Nem található departure!"));
+
+        AirportRef arrivalAirport = referenceData.findAirport(request.getArrivalAirportCode())
+                .orElseThrow(() -> new RuntimeException("Nem található arrival!"));
+
+        List<List<Long>> connections = connectionSearchEngine.findConnections(
+                departureAirport.id(),
+                arrivalAirport.id(),
+                request.getDepartureDate().atStartOfDay(),
+                request.getDepartureDate().atTime(23, 59, 59),
+                2
+        );
+
+        // az összes érintett járat egy lekérdezéssel, a szabad helyek a memóriából
+        Set<Long> flightIds = new HashSet<>();
+        connections.forEach(flightIds::addAll);
+
+        List<Flight> flights = flightRepository.findAllById(flightIds);
+        Map<Long, Map<SeatClass, Integer>> availability = loadAvailableSeats(flights);
+        Map<Long, FlightResponse> flightResponses = new HashMap<>();
+
+        for (Flight flight : flights) {
+            flightResponses.put(flight.getId(), convertToFlightResponse(flight, availability));
+        }
+
+        List<ItineraryResponse> itineraries = new ArrayList<>(connections.size());
+
+        for (List<Long> connection : connections) {
+            List<FlightResponse> legs = connection.stream()
+                    .map(flightResponses::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            // közben törölt járat
+            if (legs.size() == connection.size()) {
+                itineraries.add(convertToItineraryResponse(legs));
+            }
+        }
+
+        return itineraries;
+    }
+
+    /**
+     * Legolcsóbb ár naponta és osztályonként egy dátum ablakra.
+     * Egy tartomány lekérdezés a járatokra, a szabad helyek a memóriabeli készletből, a 7 külön keresés helyett.
+     */
+    @Override
+    public FareCalendarResponse getFareCalendar(FareCalendarRequest request) {
+        AirportRef departureAirport = referenceData.findAirport(request.getDepartureAirportCode())
+                .orElseThrow(() -> new RuntimeException("Nem található departure!"));
+
+        AirportRef arrivalAirport = referenceData.findAirport(request.getArrivalAirportCode())
+                .orElseThrow(() -> new RuntimeException("Nem található arrival!"));
+
+        LocalDate firstDay = request.getStartDate();
+        LocalDate lastDay = firstDay.plusDays(request.getDays() - 1);
+
+        List<Flight> flights = flightRepository.findByDepartureAirportIdAndArrivalAirportIdAndDepartureTimeBetween(
+                departureAirport.id(),
+                arrivalAirport.id(),
+                firstDay.atStartOfDay(),
+                lastDay.atTime(23, 59, 59)
+        );
+        flights = flights.stream()
+                .filter(flight -> flight.getStatus() != FlightStatus.CANCELLED)
+                .toList();
+
+        // (járat id, osztály) -> szabad helyek, csak ahol van hely; a memóriabeli készletből, amit az árazó is használ
+        Map<Long, Set<SeatClass>> bookableClasses = new HashMap<>();
+        loadAvailableSeats(flights).forEach((flightId, counts) -> counts.forEach((seatClass, available) -> {
+            if (available > 0) {
+                bookableClasses.computeIfAbsent(flightId, id -> EnumSet.noneOf(SeatClass.class)).add(seatClass);
+            }
+        }));
+
+        // a minimumot fillérben keressük, BigDecimal csak a válaszba kerül
+        Map<LocalDate, Map<SeatClass, Long>> lowestByDay = new TreeMap<>();
+        LocalDateTime now = LocalDateTime.now();
+
+        for (Flight flight : flights) {
+            Map<SeatClass, Long> lowest = lowestByDay.computeIfAbsent(flight.getDepartureTime().toLocalDate(), day -> new EnumMap<>(SeatClass.class));
+
+            for (SeatClass seatClass : bookableClasses.getOrDefault(flight.getId(), Set.of())) {
+                lowest.merge(seatClass, pricingService.quoteMinor(flight, seatClass, now), Math::min);
+            }
+        }
+
+        List<FareCalendarResponse.Day> days = new ArrayList<>(request.getDays());
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            Map<SeatClass, BigDecimal> lowestPrices = new EnumMap<>(SeatClass.class);
+            lowestByDay.getOrDefault(day, Map.of())
+                    .forEach((seatClass, price) -> lowestPrices.put(seatClass, PricingService.toAmount(price)));
+
+            days.add(new FareCalendarResponse.Day(day, lowestPrices));
+        }
+
+        return new FareCalendarResponse(departureAirport.iataCode(), arrivalAirport.iataCode(), days);
+    }
+
     @Override
     public FlightResponse getFlightById(Long id) {
         Flight flight = flightRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Nincs flight: " + id));
 
-        return convertToFlightResponse(flight);
+        return convertToFlightResponse(flight, loadAvailableSeats(List.of(flight)));
     }
 
     @Override
     public List<Seat> getAvailableSeats(Long flightId, SeatClass seatClass) {
+        // minden üléssel együtt a járat is szerializálódik, a lusta kapcsolatai a session nélkül már nem tölthetők be
+        Flight flight = flightRepository.findWithRouteById(flightId)
+                .orElseThrow(() -> new RuntimeException("Nincs flight: " + flightId));
+
+        return seatInventory.getAvailableSeats(flight.getId(), seatClass).stream()
+                .map(view -> new Seat(view.id(), flight, view.seatNumber(), view.seatClass(), true, view.price()))
+                .toList();
+    }
+
+    /**
+     * A teljes kabin egy hívásban: a járat adatai egyszer, az ülések osztályonként futáshossz kódolt rácsban.
+     * A foglaltság a memóriabeli készletből jön, a reptereket a törzsadat cache adja, így csak a járatot kérdezzük le.
+     */
+    @Override
+    public SeatMapResponse getSeatMap(Long flightId) {
         Flight flight = flightRepository.findById(flightId)
                 .orElseThrow(() -> new RuntimeException("Nincs flight: " + flightId));
 
-        return seatRepository.findByFlightAndSeatClassAndIsAvailable(flight, seatClass, true);
+        Map<SeatClass, TreeMap<Integer, Map<Character, Boolean>>> grid = new EnumMap<>(SeatClass.class);
+        List<String> otherAvailableSeats = new ArrayList<>();
+
+        for (SeatInventory.SeatState seat : seatInventory.getSeatStates(flight.getId())) {
+            String seatNumber = seat.seatNumber();
+            int rowLength = seatNumber == null ? 0 : seatNumber.length() - 1;
+
+            if (rowLength < 1 || !Character.isLetter(seatNumber.charAt(rowLength))
+                    || !seatNumber.substring(0, rowLength).chars().allMatch(Character::isDigit)) {
+                if (seat.available() && seatNumber != null) {
+                    otherAvailableSeats.add(seatNumber);
+                }
+                continue;
+            }
+
+            grid.computeIfAbsent(seat.seatClass(), seatClass -> new TreeMap<>())
+                    .computeIfAbsent(Integer.parseInt(seatNumber.substring(0, rowLength)), row -> new TreeMap<>())
+                    .put(seatNumber.charAt(rowLength), seat.available());
+        }
+
+        // első osztálytól hátrafelé
+        List<SeatMapResponse.Cabin> cabins = new ArrayList<>();
+        for (SeatClass seatClass : List.of(SeatClass.FIRST, SeatClass.BUSINESS, SeatClass.ECONOMY)) {
+            TreeMap<Integer, Map<Character, Boolean>> rows = grid.get(seatClass);
+
+            if (rows != null) {
+                cabins.add(convertToCabin(seatClass, rows));
+            }
+        }
+
+        return new SeatMapResponse(convertToFlightResponse(flight, loadAvailableSeats(List.of(flight))), cabins, otherAvailableSeats);
     }
 
-    private @NonNull FlightResponse convertToFlightResponse(@NonNull Flight flight) {
+    private static SeatMapResponse.@NonNull Cabin convertToCabin(@NonNull SeatClass seatClass, @NonNull TreeMap<Integer, Map<Character, Boolean>> rows) {
+        TreeSet<Character> columnSet = new TreeSet<>();
+        rows.values().forEach(row -> columnSet.addAll(row.keySet()));
+
+        StringBuilder columns = new StringBuilder(columnSet.size());
+        columnSet.forEach(columns::append);
+
+        StringBuilder seats = new StringBuilder();
+        char runSymbol = 0;
+        int runLength = 0;
+
+        for (int row = rows.firstKey(); row <= rows.lastKey(); row++) {
+            Map<Character, Boolean> seatsInRow = rows.getOrDefault(row, Map.of());
+
+            for (char column : columnSet) {
+                Boolean available = seatsInRow.get(column);
+                char symbol = available == null ? '-' : available ? 'a' : 'x';
+
+                if (symbol != runSymbol && runLength > 0) {
+                    seats.append(runLength).append(runSymbol);
+                    runLength = 0;
+                }
+
+                runSymbol = symbol;
+                runLength++;
+            }
+        }
+
+        seats.append(runLength).append(runSymbol);
+
+        return new SeatMapResponse.Cabin(seatClass, rows.firstKey(), rows.lastKey(), columns.toString(), seats.toString());
+    }
+
+    private @NonNull FlightResponse convertToFlightResponse(@NonNull Flight flight, @NonNull Map<Long, Map<SeatClass, Integer>> availability) {
         FlightResponse response = new FlightResponse();
 
         response.setId(flight.getId());
@@ -81,42 +280,49 @@ public class FlightServiceImpl implements FlightService {
         response.setDepartureTime(flight.getDepartureTime());
         response.setArrivalTime(flight.getArrivalTime());
 
-        response.setDepartureAirport(convertToAirportDTO(flight.getDepartureAirport()));
-        response.setArrivalAirport(convertToAirportDTO(flight.getArrivalAirport()));
-
-        Map<SeatClass, Integer> availableSeats = new HashMap<>();
-        for (SeatClass seatClass : SeatClass.values()) {
-            int count = seatRepository.countByFlightAndSeatClassAndIsAvailable(
-                    flight,
-                    seatClass,
-                    true  // csak a szabad ülések
-            );
-            availableSeats.put(seatClass, count);
-        }
-        response.setAvailableSeats(availableSeats);
+        // a reptereket a törzsadat cache-ből vesszük, a lazy proxy-ból csak az id kell
+        response.setDepartureAirport(convertToAirportDTO(flight.getDepartureAirport().getId()));
+        response.setArrivalAirport(convertToAirportDTO(flight.getArrivalAirport().getId()));
+
+        response.setAvailableSeats(availability.get(flight.getId()));
 
-        Map<SeatClass, BigDecimal> prices = calculatePrices(flight.getBasePrice());
-        response.setPrices(prices);
+        // ugyanaz az ártábla, mint foglaláskor, így a keresés és a foglalás ára megegyezik
+        response.setPrices(pricingService.quoteAll(flight, LocalDateTime.now()));
 
         return response;
     }
 
-    private @NonNull AirportDTO convertToAirportDTO(@NonNull Airport airport) {
-        AirportDTO dto = new AirportDTO();
-        dto.setIataCode(airport.getIataCode());
-        dto.setName(airport.getName());
-        dto.setCity(airport.getCity());
-        dto.setCountry(airport.getCountry());
-        return dto;
+    private @NonNull ItineraryResponse convertToItineraryResponse(@NonNull List<FlightResponse> legs) {
+        LocalDateTime departureTime = legs.getFirst().getDepartureTime();
+        LocalDateTime arrivalTime = legs.getLast().getArrivalTime();
+
+        Map<SeatClass, BigDecimal> totalPrices = new HashMap<>();
+        for (FlightResponse leg : legs) {
+            leg.getPrices().forEach((seatClass, price) -> totalPrices.merge(seatClass, price, BigDecimal::add));
+        }
+
+        return new ItineraryResponse(
+                legs,
+                legs.size() - 1,
+                departureTime,
+                arrivalTime,
+                Duration.between(departureTime, arrivalTime).toMinutes(),
+                totalPrices
+        );
     }
 
-    private @NonNull ConcurrentHashMap<SeatClass, BigDecimal> calculatePrices(BigDecimal basePrice) {
-        ConcurrentHashMap<SeatClass, BigDecimal> prices = new ConcurrentHashMap<>();
+    // a szabad helyek száma a memóriabeli készletből jön, adatbázis nélkül
+    private @NonNull Map<Long, Map<SeatClass, Integer>> loadAvailableSeats(@NonNull List<Flight> flights) {
+        if (flights.isEmpty()) {
+            return new HashMap<>();
+        }
 
-        prices.put(SeatClass.ECONOMY, basePrice);
-        prices.put(SeatClass.BUSINESS, basePrice.multiply(new BigDecimal("2.5")));
-        prices.put(SeatClass.FIRST, basePrice.multiply(new BigDecimal("4.0")));
+        return seatInventory.getAvailableSeatCounts(flights.stream()
+                .map(Flight::getId)
+                .toList());
+    }
 
-        return prices;
+    private @NonNull AirportDTO convertToAirportDTO(@NonNull Long airportId) {
+        return referenceData.getAirport(airportId).toDto();
     }
 }
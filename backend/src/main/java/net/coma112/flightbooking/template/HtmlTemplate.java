@@ -0,0 +1,288 @@
+package net.coma112.flightbooking.template;
+
+import org.jspecify.annotations.NonNull;
+import org.jspecify.annotations.Nullable;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Egyszer lefordított HTML sablon.
+ * A forrást induláskor literális UTF-8 bájt szakaszokra és helyőrzőkre bontjuk:
+ * {@code {{nev}}} HTML-escape-elt szöveg, {@code {{{nev}}}} megbízható, változatlanul beírt HTML darab.
+ * Rendereléskor a szakaszokat és az értékeket egy közös, korlátos készletből kölcsönzött, előre méretezett bufferbe
+ * másoljuk, köztes stringek nélkül. A készlet nem szálhoz kötött: virtuális szálakon egy ThreadLocal minden
+ * renderelésnél új buffert jelentene, itt viszont legfeljebb BUFFER_POOL_SIZE buffer él, függetlenül a szálak számától. Az eredmény UTF-8 bájt tömb, amit a levél HTML része változatlanul átvesz;
+ * String-et nem építünk belőle, mert a visszakódolás többe kerülne, mint a sima konkatenáció.
+ */
+public final class HtmlTemplate {
+    private static final int INITIAL_SLOT_CAPACITY = 256;
+    private static final int MAX_RETAINED_BUFFER = 1 << 20;
+    private static final int BUFFER_POOL_SIZE = 16;
+
+    // ASCII karakter -> HTML entitás, null ha nem kell escape-elni
+    private static final byte[][] ESCAPES = new byte[128][];
+
+    static {
+        ESCAPES['&'] = "&amp;".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['<'] = "&lt;".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['>'] = "&gt;".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['"'] = "&quot;".getBytes(StandardCharsets.US_ASCII);
+        ESCAPES['\''] = "&#39;".getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static final Pattern LEADING_INDENT = Pattern.compile("\n[ \t]+");
+
+    // üres készletnél új buffer készül, tele készletnél a visszaadott buffert eldobjuk
+    private static final ArrayBlockingQueue<RenderBuffer> BUFFERS = new ArrayBlockingQueue<>(BUFFER_POOL_SIZE);
+
+    private final byte[][] literals; // literals.length == slots.length + 1
+    private final Slot[] slots;
+    private final List<String> names; // különböző helyőrző nevek, az értékek ebben a sorrendben jönnek
+    private final Map<String, Integer> nameIndex;
+    private final int literalLength;
+
+    private HtmlTemplate(byte[][] literals, Slot[] slots, List<String> names) {
+        this.literals = literals;
+        this.slots = slots;
+        this.names = List.copyOf(names);
+
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            index.put(names.get(i), i);
+        }
+        this.nameIndex = Map.copyOf(index);
+
+        int length = 0;
+        for (byte[] literal : literals) {
+            length += literal.length;
+        }
+        this.literalLength = length;
+    }
+
+    public static @NonNull HtmlTemplate load(@NonNull Resource resource) {
+        try (InputStream inputStream = resource.getInputStream()) {
+            return compile(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Nem olvasható a sablon: " + resource, exception);
+        }
+    }
+
+    public static @NonNull HtmlTemplate compile(@NonNull String source) {
+        List<byte[]> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        int position = 0;
+        int open;
+
+        while ((open = source.indexOf("{{", position)) >= 0) {
+            boolean raw = source.startsWith("{{{", open);
+            String closing = raw ? "}}}" : "}}";
+            int nameStart = open + (raw ? 3 : 2);
+            int close = source.indexOf(closing, nameStart);
+
+            if (close < 0) {
+                throw new IllegalArgumentException("Lezáratlan helyőrző a sablonban a(z) " + open + ". pozíción");
+            }
+
+            String name = source.substring(nameStart, close).trim();
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Üres helyőrző a sablonban a(z) " + open + ". pozíción");
+            }
+
+            int nameIndex = names.indexOf(name);
+            if (nameIndex < 0) {
+                nameIndex = names.size();
+                names.add(name);
+            }
+
+            literals.add(literal(source.substring(position, open)));
+            slots.add(new Slot(nameIndex, !raw));
+            position = close + closing.length();
+        }
+
+        literals.add(literal(source.substring(position)));
+
+        return new HtmlTemplate(literals.toArray(byte[][]::new), slots.toArray(Slot[]::new), names);
+    }
+
+    // a sorok eleji behúzás HTML-ben nem számít, de a levél méretét növeli
+    private static byte @NonNull [] literal(@NonNull String text) {
+        return LEADING_INDENT.matcher(text).replaceAll("\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // a helyőrzők nevei első előfordulás szerint
+    public @NonNull List<String> getSlotNames() {
+        return names;
+    }
+
+    public @NonNull Values values() {
+        return new Values();
+    }
+
+    public byte @NonNull [] render(@NonNull Values values) {
+        if (values.owner() != this) {
+            throw new IllegalArgumentException("Az értékek egy másik sablonhoz tartoznak");
+        }
+
+        return render(values.values);
+    }
+
+    // az értékek a getSlotNames() sorrendjében
+    public byte @NonNull [] render(@Nullable CharSequence... values) {
+        RenderBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            buffer = new RenderBuffer(0);
+        }
+
+        try {
+            buffer.reset(literalLength + slots.length * INITIAL_SLOT_CAPACITY);
+            renderInto(buffer, values);
+            return buffer.toByteArray();
+        } finally {
+            // egy kivételesen nagy renderelés után nem tartjuk meg a buffert
+            if (buffer.capacity() <= MAX_RETAINED_BUFFER) {
+                BUFFERS.offer(buffer);
+            }
+        }
+    }
+
+    private void renderInto(@NonNull RenderBuffer buffer, @Nullable CharSequence[] values) {
+        if (values == null || values.length != names.size()) {
+            throw new IllegalArgumentException("A sablon " + names.size() + " értéket vár");
+        }
+
+        for (int i = 0; i < slots.length; i++) {
+            buffer.write(literals[i]);
+
+            CharSequence value = values[slots[i].nameIndex()];
+            if (value != null) {
+                buffer.writeUtf8(value, slots[i].escaped());
+            }
+        }
+
+        buffer.write(literals[slots.length]);
+    }
+
+    private record Slot(int nameIndex, boolean escaped) {}
+
+    // egy rendereléshez tartozó értékek, név szerint beállítva
+    public final class Values {
+        private final CharSequence[] values = new CharSequence[names.size()];
+
+        private Values() {}
+
+        public @NonNull Values set(@NonNull String name, @Nullable CharSequence value) {
+            Integer index = nameIndex.get(name);
+
+            if (index == null) {
+                throw new IllegalArgumentException("Ismeretlen helyőrző: " + name);
+            }
+
+            values[index] = value;
+            return this;
+        }
+
+        private HtmlTemplate owner() {
+            return HtmlTemplate.this;
+        }
+    }
+
+    // növekvő bájt buffer, a szöveget közvetlenül UTF-8-ba kódolja (és escape-eli)
+    private static final class RenderBuffer {
+        private byte[] bytes;
+        private int length;
+
+        private RenderBuffer(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void reset(int expectedLength) {
+            length = 0;
+            ensureCapacity(expectedLength);
+        }
+
+        private int capacity() {
+            return bytes.length;
+        }
+
+        private byte @NonNull [] toByteArray() {
+            return Arrays.copyOf(bytes, length);
+        }
+
+        private void write(byte[] literal) {
+            ensureCapacity(length + literal.length);
+            System.arraycopy(literal, 0, bytes, length, literal.length);
+            length += literal.length;
+        }
+
+        private void writeUtf8(@NonNull CharSequence value, boolean escape) {
+            int valueLength = value.length();
+
+            // legrosszabb eset: escape-elve &quot; (6 bájt), egyébként 3 bájtos UTF-8 karakterenként
+            ensureCapacity(length + valueLength * (escape ? 6 : 3));
+
+            int i = 0;
+
+            // gyors út: a String ASCII eleje escape nélkül, bájtonként másolva
+            if (value instanceof String string) {
+                for (; i < valueLength; i++) {
+                    char c = string.charAt(i);
+
+                    if (c >= 0x80 || (escape && ESCAPES[c] != null)) {
+                        break;
+                    }
+
+                    bytes[length++] = (byte) c;
+                }
+            }
+
+            for (; i < valueLength; i++) {
+                char c = value.charAt(i);
+
+                if (c < 0x80) {
+                    byte[] entity = escape ? ESCAPES[c] : null;
+
+                    if (entity == null) {
+                        bytes[length++] = (byte) c;
+                    } else {
+                        System.arraycopy(entity, 0, bytes, length, entity.length);
+                        length += entity.length;
+                    }
+                } else if (c < 0x800) {
+                    bytes[length++] = (byte) (0xC0 | (c >> 6));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < valueLength && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    bytes[length++] = (byte) (0xF0 | (codePoint >> 18));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    bytes[length++] = '?'; // párosítatlan surrogate
+                } else {
+                    bytes[length++] = (byte) (0xE0 | (c >> 12));
+                    bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    bytes[length++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+-- Atallas IDENTITY oszloprol pooled szekvenciara (seats, flights, passengers, bookings).
+-- A Hibernate (ddl-auto=update) letrehozza a <tabla>_seq szekvenciakat, ez a szkript utana fut, es tobbszor is lefuttathato:
+--   1. a regi IDENTITY-t eldobjuk (uj adatbazison nincs mit),
+--   2. a szekvenciat a meglevo legnagyobb id fole allitjuk (visszafele soha nem leptetjuk),
+--   3. az id oszlop alapertelmezese a szekvencia lesz, igy a mock adatbetolto id nelkuli INSERT-jei tovabbra is mukodnek.
+-- A DB oldali nextval egy teljes 50-es blokkot foglal, igy nem utkozik a Hibernate altal kiosztott tartomanyokkal.
+
+ALTER TABLE seats ALTER COLUMN id DROP IDENTITY IF EXISTS;
+SELECT setval('seats_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM seats), (SELECT last_value FROM seats_seq)));
+ALTER TABLE seats ALTER COLUMN id SET DEFAULT nextval('seats_seq');
+
+ALTER TABLE flights ALTER COLUMN id DROP IDENTITY IF EXISTS;
+SELECT setval('flights_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM flights), (SELECT last_value FROM flights_seq)));
+ALTER TABLE flights ALTER COLUMN id SET DEFAULT nextval('flights_seq');
+
+ALTER TABLE passengers ALTER COLUMN id DROP IDENTITY IF EXISTS;
+SELECT setval('passengers_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM passengers), (SELECT last_value FROM passengers_seq)));
+ALTER TABLE passengers ALTER COLUMN id SET DEFAULT nextval('passengers_seq');
+
+ALTER TABLE bookings ALTER COLUMN id DROP IDENTITY IF EXISTS;
+SELECT setval('bookings_seq', GREATEST((SELECT COALESCE(MAX(id), 1) FROM bookings), (SELECT last_value FROM bookings_seq)));
+ALTER TABLE bookings ALTER COLUMN id SET DEFAULT nextval('bookings_seq');
+
+-- a korabbi @OneToOne Booking.seat egyedi kulcsot generalt a seat_id-ra, ami miatt egy lemondott ules nem volt ujrafoglalhato
+DO '
+DECLARE
+    constraint_name text;
+BEGIN
+    FOR constraint_name IN
+        SELECT con.conname
+        FROM pg_constraint con
+        JOIN pg_attribute att ON att.attrelid = con.conrelid AND att.attnum = ANY (con.conkey)
+        WHERE con.conrelid = ''bookings''::regclass
+          AND con.contype = ''u''
+          AND att.attname = ''seat_id''
+          AND cardinality(con.conkey) = 1
+    LOOP
+        EXECUTE format(''ALTER TABLE bookings DROP CONSTRAINT %I'', constraint_name);
+    END LOOP;
+END';
+
+-- a foglalasi kod allokator blokk szamlaloja (egy lepes = 1000 kod), lasd BookingReferenceAllocator
+CREATE SEQUENCE IF NOT EXISTS booking_reference_seq;
+
+-- az enum CHECK megkotest a ddl-auto=update nem frissiti, az uj ORPHANED_PAYMENT es AMOUNT_MISMATCH statusz miatt ujra kell epiteni
+ALTER TABLE payment_events DROP CONSTRAINT IF EXISTS payment_events_status_check;
+ALTER TABLE payment_events ADD CONSTRAINT payment_events_status_check CHECK (status IN ('PENDING', 'PROCESSED', 'ORPHANED_PAYMENT', 'AMOUNT_MISMATCH'));
+
+-- az email_outbox uj SENDING statusza (kuldes alatt) miatt ugyanigy
+ALTER TABLE email_outbox DROP CONSTRAINT IF EXISTS email_outbox_status_check;
+ALTER TABLE email_outbox ADD CONSTRAINT email_outbox_status_check CHECK (status IN ('PENDING', 'SENDING', 'SENT', 'FAILED'));
@@ -1 +1,9 @@
 package net.coma112.flightbooking;
+
+import org.junit.jupiter.api.Test;
+
+class FlightBookingApplicationTests extends IntegrationTest {
+    @Test
+    void contextLoads() {
+    }
+}
@@ -0,0 +1,169 @@
+package net.coma112.flightbooking;
+
+import net.coma112.flightbooking.config.SqlStatementCounter;
+import net.coma112.flightbooking.dto.BookingRequest;
+import net.coma112.flightbooking.dto.PassengerDTO;
+import net.coma112.flightbooking.model.Aircraft;
+import net.coma112.flightbooking.model.Airport;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.Seat;
+import net.coma112.flightbooking.model.enums.AircraftType;
+import net.coma112.flightbooking.model.enums.FlightStatus;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.repository.AircraftRepository;
+import net.coma112.flightbooking.repository.AirportRepository;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.repository.SeatRepository;
+import net.coma112.flightbooking.service.ReferenceDataCache;
+import org.jspecify.annotations.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Közös alap a teljes alkalmazást (H2 adatbázissal) indító tesztekhez.
+ * Az azonos beállítású tesztosztályok egy Spring kontextuson és adatbázison osztoznak, ezért minden
+ * mintaadat (reptérkód, járatszám, email) egyedi, és egy teszt sem számíthat üres táblákra.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public abstract class IntegrationTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    // a 3 betűs reptérkódok tere kicsi (26^3), ezért külön számlálóból jönnek
+    private static final AtomicInteger AIRPORTS = new AtomicInteger();
+    private static final String SEAT_LETTERS = "ABCDEF";
+
+    @Autowired
+    protected MockMvc mockMvc;
+
+    @Autowired
+    protected JsonMapper jsonMapper;
+
+    @Autowired
+    protected AirportRepository airportRepository;
+
+    @Autowired
+    protected AircraftRepository aircraftRepository;
+
+    @Autowired
+    protected FlightRepository flightRepository;
+
+    @Autowired
+    protected SeatRepository seatRepository;
+
+    @Autowired
+    protected ReferenceDataCache referenceDataCache;
+
+    // két új reptér; a törzsadat cache-t rögtön frissítjük, hogy a mért kérések ne a hiány miatti újratöltést mérjék
+    protected @NonNull Route route() {
+        Airport from = airportRepository.save(new Airport(null, airportCode(), "Indulási reptér", "Budapest", "HU"));
+        Airport to = airportRepository.save(new Airport(null, airportCode(), "Érkezési reptér", "London", "UK"));
+
+        referenceDataCache.refresh();
+
+        return new Route(from, to);
+    }
+
+    /**
+     * Egy járat a megadott számú, 6 üléses sorral: az első sor business, a többi economy.
+     */
+    protected @NonNull Flight flight(@NonNull Route route, @NonNull LocalDateTime departure, int seatRows) {
+        Aircraft aircraft = aircraftRepository.save(new Aircraft(null, AircraftType.AIRBUS_A320_200, "T-" + uniqueCode(4),
+                seatRows * SEAT_LETTERS.length(), (seatRows - 1) * SEAT_LETTERS.length(), SEAT_LETTERS.length(), 0));
+
+        Flight flight = new Flight();
+        flight.setFlightNumber("T" + uniqueCode(5));
+        flight.setDepartureAirport(route.from());
+        flight.setArrivalAirport(route.to());
+        flight.setAircraft(aircraft);
+        flight.setDepartureTime(departure);
+        flight.setArrivalTime(departure.plusHours(2));
+        flight.setBasePrice(new BigDecimal("30000"));
+        flight.setStatus(FlightStatus.SCHEDULED);
+        flight = flightRepository.save(flight);
+
+        List<Seat> seats = new ArrayList<>(seatRows * SEAT_LETTERS.length());
+        for (int row = 1; row <= seatRows; row++) {
+            SeatClass seatClass = row == 1 ? SeatClass.BUSINESS : SeatClass.ECONOMY;
+
+            for (char letter : SEAT_LETTERS.toCharArray()) {
+                seats.add(new Seat(null, flight, row + String.valueOf(letter), seatClass, true, flight.getBasePrice()));
+            }
+        }
+        seatRepository.saveAll(seats);
+
+        return flight;
+    }
+
+    protected @NonNull LocalDateTime departureInDays(int days) {
+        return LocalDate.now().plusDays(days).atTime(10, 0);
+    }
+
+    protected @NonNull PassengerDTO passenger() {
+        PassengerDTO passenger = new PassengerDTO();
+        passenger.setFirstName("Teszt");
+        passenger.setLastName("Utas");
+        passenger.setEmail("utas-" + SEQUENCE.incrementAndGet() + "@example.hu");
+        passenger.setPhoneNumber("+36301234567");
+        passenger.setPassportNumber("HU1234567");
+        passenger.setDateOfBirth(LocalDate.of(1987, 4, 12));
+        return passenger;
+    }
+
+    protected @NonNull BookingRequest bookingRequest(@NonNull Flight flight, @NonNull String seatNumber) {
+        BookingRequest request = new BookingRequest();
+        request.setFlightId(flight.getId());
+        request.setSeatNumber(seatNumber);
+        request.setPassengerDetails(passenger());
+        return request;
+    }
+
+    protected @NonNull String json(@NonNull Object value) {
+        return jsonMapper.writeValueAsString(value);
+    }
+
+    // a megadott művelet alatt, ezen a szálon futtatott SQL utasítások száma (MockMvc-vel a teljes kérés ide tartozik)
+    protected long statements(@NonNull Action action) throws Exception {
+        long before = SqlStatementCounter.current();
+        action.run();
+        return SqlStatementCounter.current() - before;
+    }
+
+    // nagybetűs, ütközésmentes kód (lajstromjel, járatszám)
+    protected static @NonNull String uniqueCode(int length) {
+        return letters(SEQUENCE.incrementAndGet(), length);
+    }
+
+    private static @NonNull String airportCode() {
+        return letters(AIRPORTS.incrementAndGet(), 3);
+    }
+
+    private static @NonNull String letters(int value, int length) {
+        char[] code = new char[length];
+
+        for (int i = length - 1; i >= 0; i--) {
+            code[i] = (char) ('A' + value % 26);
+            value /= 26;
+        }
+
+        return new String(code);
+    }
+
+    public record Route(Airport from, Airport to) {}
+
+    @FunctionalInterface
+    protected interface Action {
+        void run() throws Exception;
+    }
+}
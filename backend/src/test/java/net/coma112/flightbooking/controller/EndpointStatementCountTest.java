@@ -0,0 +1,307 @@
+package net.coma112.flightbooking.controller;
+
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.dto.FareCalendarRequest;
+import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.dto.GroupBookingRequest;
+import net.coma112.flightbooking.dto.PassengerDTO;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.service.BookingService;
+import net.coma112.flightbooking.service.SeatInventory;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Végpontonkénti SQL utasításkeret: minden végpontra egy felső korlát, amit a kérés (a filterekkel és a JSON
+ * szerializálással együtt) nem léphet túl. Ahol a válasz mérete változhat, kis és nagy adathalmazon is mérünk,
+ * és a kettőnek egyeznie kell: egy N+1 lekérdezés így akkor is elbuktatja a buildet, ha a korlát alatt marad.
+ * A mérések hideg gyorsítótárakkal (új járatokkal) futnak, a készlet betöltése tehát benne van a számban.
+ */
+class EndpointStatementCountTest extends IntegrationTest {
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Test
+    void searchStatementsDoNotGrowWithResultSize() throws Exception {
+        LocalDateTime departure = departureInDays(12);
+        Route single = route();
+        Route busy = route();
+
+        flight(single, departure, 3);
+        for (int i = 0; i < 50; i++) {
+            flight(busy, departure.plusMinutes(10L * i), 3);
+        }
+
+        long oneFlight = statements(() -> assertResults(perform(post("/api/flights/search"), search(single, departure.toLocalDate())), 1));
+        long fiftyFlights = statements(() -> assertResults(perform(post("/api/flights/search"), search(busy, departure.toLocalDate())), 50));
+
+        // a járatok egy lekérdezéssel, a készletük egy másikkal
+        assertThat(oneFlight).isLessThanOrEqualTo(2);
+        assertThat(fiftyFlights).isEqualTo(oneFlight);
+    }
+
+    @Test
+    void connectionSearchStatementsDoNotGrowWithResultSize() throws Exception {
+        LocalDateTime departure = departureInDays(13);
+        Route single = route();
+        Route singleOnward = new Route(single.to(), route().to());
+        Route busy = route();
+        Route busyOnward = new Route(busy.to(), route().to());
+
+        flight(single, departure, 2);
+        flight(singleOnward, departure.plusHours(4), 2);
+        for (int i = 0; i < 50; i++) {
+            flight(busy, departure.minusMinutes(5L * i), 2);
+        }
+        flight(busyOnward, departure.plusHours(4), 2);
+
+        long oneItinerary = statements(() -> assertResults(perform(post("/api/flights/search/connections"),
+                search(new Route(single.from(), singleOnward.to()), departure.toLocalDate())), 1));
+        long fiftyItineraries = statements(() -> assertResults(perform(post("/api/flights/search/connections"),
+                search(new Route(busy.from(), busyOnward.to()), departure.toLocalDate())), 50));
+
+        assertThat(oneItinerary).isLessThanOrEqualTo(2);
+        assertThat(fiftyItineraries).isEqualTo(oneItinerary);
+    }
+
+    @Test
+    void fareCalendarStatementsDoNotGrowWithResultSize() throws Exception {
+        LocalDate startDate = LocalDate.now().plusDays(20);
+        Route single = route();
+        Route busy = route();
+
+        flight(single, startDate.atTime(9, 0), 2);
+        for (int i = 0; i < 50; i++) {
+            flight(busy, startDate.plusDays(i % 7).atTime(6, 0).plusMinutes(10L * i), 2);
+        }
+
+        long oneFlight = statements(() -> perform(post("/api/flights/calendar"), calendar(single, startDate)));
+        long fiftyFlights = statements(() -> perform(post("/api/flights/calendar"), calendar(busy, startDate)));
+
+        // egy tartomány lekérdezés és egy készlet betöltés
+        assertThat(oneFlight).isLessThanOrEqualTo(2);
+        assertThat(fiftyFlights).isEqualTo(oneFlight);
+    }
+
+    @Test
+    void flightStatementsDoNotGrowWithCabinSize() throws Exception {
+        Route route = route();
+        Flight small = flight(route, departureInDays(14), 2);
+        Flight large = flight(route, departureInDays(14).plusHours(3), 70);
+
+        long smallFlight = statements(() -> perform(get("/api/flights/{id}", small.getId())));
+        long largeFlight = statements(() -> perform(get("/api/flights/{id}", large.getId())));
+
+        assertThat(smallFlight).isLessThanOrEqualTo(2);
+        assertThat(largeFlight).isEqualTo(smallFlight);
+    }
+
+    @Test
+    void seatMapStatementsDoNotGrowWithCabinSize() throws Exception {
+        Route route = route();
+        Flight small = flight(route, departureInDays(15), 2);
+        Flight large = flight(route, departureInDays(15).plusHours(3), 70);
+
+        long smallCabin = statements(() -> perform(get("/api/flights/{id}/seat-map", small.getId())));
+        long largeCabin = statements(() -> perform(get("/api/flights/{id}/seat-map", large.getId())));
+
+        // a járat és a készlete
+        assertThat(smallCabin).isLessThanOrEqualTo(2);
+        assertThat(largeCabin).isEqualTo(smallCabin);
+    }
+
+    @Test
+    void seatListStatementsDoNotGrowWithCabinSize() throws Exception {
+        Route route = route();
+        Flight small = flight(route, departureInDays(15), 2);
+        Flight large = flight(route, departureInDays(15).plusHours(3), 70);
+
+        long smallCabin = statements(() -> perform(get("/api/flights/{id}/seats", small.getId()).param("seatClass", "ECONOMY")));
+        long largeCabin = statements(() -> perform(get("/api/flights/{id}/seats", large.getId()).param("seatClass", "ECONOMY")));
+
+        // a régi, entitásokat visszaadó végpont: a járat a repterekkel és a géppel egy joinban, és a készlete
+        assertThat(smallCabin).isLessThanOrEqualTo(2);
+        assertThat(largeCabin).isEqualTo(smallCabin);
+    }
+
+    @Test
+    void bookingLifecycleStatementsStayWithinBudget() throws Exception {
+        Route route = route();
+        Flight small = flight(route, departureInDays(16), 2);
+        Flight large = flight(route, departureInDays(16).plusHours(3), 70);
+
+        // az első foglalás kérhet új foglalási kód blokkot és betölti a járat készletét, azt nem mérjük
+        createBooking(small, "2F");
+        createBooking(large, "2F");
+
+        long[] created = new long[2];
+        String[] references = new String[2];
+        created[0] = statements(() -> references[0] = createBooking(small, "2A"));
+        created[1] = statements(() -> references[1] = createBooking(large, "2A"));
+
+        // járat, ülés, utas upsert, foglalás beszúrás és a feltételes ülés UPDATE
+        assertThat(created[0]).isLessThanOrEqualTo(6);
+        assertThat(created[1]).isEqualTo(created[0]);
+
+        long lookup = statements(() -> perform(get("/api/bookings/{reference}", references[0])));
+        assertThat(lookup).isEqualTo(1);
+
+        long confirm = statements(() -> perform(put("/api/bookings/{reference}/confirm", references[0])));
+        assertThat(confirm).isLessThanOrEqualTo(2);
+
+        long cancel = statements(() -> perform(delete("/api/bookings/{reference}", references[1])));
+        assertThat(cancel).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void groupBookingStatementsDoNotGrowWithGroupSize() throws Exception {
+        Route route = route();
+        Flight flight = flight(route, departureInDays(17), 12);
+
+        createBooking(flight, "12F");
+
+        long twoPassengers = statements(() -> perform(post("/api/bookings/group"), group(flight, 2)));
+        long sixPassengers = statements(() -> perform(post("/api/bookings/group"), group(flight, 6)));
+
+        // ülések, utasok és foglalások kötegben
+        assertThat(twoPassengers).isLessThanOrEqualTo(6);
+        assertThat(sixPassengers).isEqualTo(twoPassengers);
+    }
+
+    @Test
+    void bookingHistoryStatementsDoNotGrowWithPageSize() throws Exception {
+        Route route = route();
+        Flight flight = flight(route, departureInDays(18), 6);
+
+        PassengerDTO frequentFlyer = passenger();
+        PassengerDTO occasionalFlyer = passenger();
+        List<String> references = new ArrayList<>();
+
+        for (int i = 0; i < 20; i++) {
+            references.add(createBooking(flight, (2 + i / 6) + String.valueOf("ABCDEF".charAt(i % 6)), frequentFlyer));
+        }
+        createBooking(flight, "6A", occasionalFlyer);
+
+        long onePage = statements(() -> perform(get("/api/bookings/passenger/{email}", occasionalFlyer.getEmail())));
+        long fullPage = statements(() -> perform(get("/api/bookings/passenger/{email}", frequentFlyer.getEmail())));
+
+        assertThat(onePage).isEqualTo(1);
+        assertThat(fullPage).isEqualTo(onePage);
+
+        long statusPage = statements(() -> perform(get("/api/bookings/status/{status}", "PENDING")));
+        assertThat(statusPage).isEqualTo(1);
+        assertThat(references).hasSize(20);
+    }
+
+    @Test
+    void bookingHistoryAndStreamStatementsDoNotGrowWithTheNumberOfFlights() throws Exception {
+        Route route = route();
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            flights.add(flight(route, departureInDays(19).plusHours(i), 2));
+        }
+
+        PassengerDTO oneFlight = passenger();
+        PassengerDTO tenFlights = passenger();
+
+        createBooking(flights.getFirst(), "2A", oneFlight);
+        for (Flight flight : flights) {
+            createBooking(flight, "2B", tenFlights);
+        }
+
+        // hideg készlettel mérünk: ha egy sor még mindig árazna, itt járatonként egy ülés térkép betöltést látnánk
+        flights.forEach(flight -> seatInventory.invalidate(flight.getId()));
+
+        long onePage = statements(() -> perform(get("/api/bookings/passenger/{email}", oneFlight.getEmail())));
+        long tenFlightPage = statements(() -> perform(get("/api/bookings/passenger/{email}", tenFlights.getEmail())));
+
+        assertThat(onePage).isEqualTo(1);
+        assertThat(tenFlightPage).isEqualTo(onePage);
+
+        // az NDJSON válasz másik szálon fut, a számláló pedig szálanként mér: a szolgáltatást ezen a szálon hívjuk
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        long oneStream = statements(() -> bookingService.streamBookingsByPassenger(oneFlight.getEmail(), new ByteArrayOutputStream()));
+        long tenFlightStream = statements(() -> bookingService.streamBookingsByPassenger(tenFlights.getEmail(), output));
+
+        // a stream végig egyetlen lekérdezés kurzora
+        assertThat(oneStream).isEqualTo(1);
+        assertThat(tenFlightStream).isEqualTo(oneStream);
+        assertThat(output.toString(StandardCharsets.UTF_8).lines()).hasSize(10);
+    }
+
+    private @NonNull String createBooking(@NonNull Flight flight, @NonNull String seatNumber) throws Exception {
+        return createBooking(flight, seatNumber, passenger());
+    }
+
+    private @NonNull String createBooking(@NonNull Flight flight, @NonNull String seatNumber, @NonNull PassengerDTO passenger) throws Exception {
+        var request = bookingRequest(flight, seatNumber);
+        request.setPassengerDetails(passenger);
+
+        MvcResult result = perform(post("/api/bookings"), request);
+        return jsonMapper.readTree(result.getResponse().getContentAsString()).get("bookingReference").asString();
+    }
+
+    private @NonNull FlightSearchRequest search(@NonNull Route route, @NonNull LocalDate date) {
+        FlightSearchRequest request = new FlightSearchRequest();
+        request.setDepartureAirportCode(route.from().getIataCode());
+        request.setArrivalAirportCode(route.to().getIataCode());
+        request.setDepartureDate(date);
+        request.setPassengers(1);
+        return request;
+    }
+
+    private @NonNull FareCalendarRequest calendar(@NonNull Route route, @NonNull LocalDate startDate) {
+        FareCalendarRequest request = new FareCalendarRequest();
+        request.setDepartureAirportCode(route.from().getIataCode());
+        request.setArrivalAirportCode(route.to().getIataCode());
+        request.setStartDate(startDate);
+        request.setDays(7);
+        return request;
+    }
+
+    private @NonNull GroupBookingRequest group(@NonNull Flight flight, int size) {
+        GroupBookingRequest request = new GroupBookingRequest();
+        request.setFlightId(flight.getId());
+        request.setSeatClass(SeatClass.ECONOMY);
+        request.setPassengers(IntStream.range(0, size).mapToObj(i -> passenger()).toList());
+        return request;
+    }
+
+    private @NonNull MvcResult perform(@NonNull RequestBuilder request) throws Exception {
+        return mockMvc.perform(request)
+                .andExpect(status().is2xxSuccessful())
+                .andReturn();
+    }
+
+    private @NonNull MvcResult perform(@NonNull MockHttpServletRequestBuilder request, @NonNull Object body) throws Exception {
+        return perform(request.contentType(MediaType.APPLICATION_JSON).content(json(body)));
+    }
+
+    private void assertResults(@NonNull MvcResult result, int expected) throws Exception {
+        assertThat(jsonMapper.readTree(result.getResponse().getContentAsString()).size()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,45 @@
+package net.coma112.flightbooking.controller;
+
+import net.coma112.flightbooking.IntegrationTest;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A naptár kérés napjainak száma: hiányzó mező esetén az alapértelmezett 7 nap, explicit null vagy a
+ * tartományon kívüli érték 400, nem a szolgáltatásban elszálló kivétel.
+ */
+class FareCalendarValidationTest extends IntegrationTest {
+    @Test
+    void missingDaysFallsBackToAWeek() throws Exception {
+        Route route = route();
+        flight(route, departureInDays(80), 2);
+
+        calendar(route, "").andExpect(status().isOk())
+                .andExpect(jsonPath("$.days.length()").value(7));
+    }
+
+    @Test
+    void nullOrOutOfRangeDaysIsABadRequest() throws Exception {
+        Route route = route();
+
+        calendar(route, ",\"days\":null").andExpect(status().isBadRequest());
+        calendar(route, ",\"days\":0").andExpect(status().isBadRequest());
+        calendar(route, ",\"days\":61").andExpect(status().isBadRequest());
+    }
+
+    private @NonNull ResultActions calendar(@NonNull Route route, @NonNull String days) throws Exception {
+        String body = """
+                {"departureAirportCode":"%s","arrivalAirportCode":"%s","startDate":"%s"%s}
+                """.formatted(route.from().getIataCode(), route.to().getIataCode(), LocalDate.now().plusDays(80), days);
+
+        return mockMvc.perform(post("/api/flights/calendar").contentType(MediaType.APPLICATION_JSON).content(body));
+    }
+}
@@ -0,0 +1,248 @@
+package net.coma112.flightbooking.controller;
+
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpServer;
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.service.BookingService;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Terheléses teszt valódi HTTP-n: a keresés p99 késleltetése nem nőhet meg attól, hogy közben a fizetési végpontot
+ * egy lassú Stripe csonk ellen terheljük. A fizetések a stripe válaszfalban várnak (vagy 503-at kapnak), nem
+ * foglalnak adatbázis kapcsolatot és nem tartják fel a keresést kiszolgáló szálakat.
+ * Saját adatbázissal és kontextussal fut; a keresési cache ki van kapcsolva, hogy minden kérés elérje az adatbázist.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:search-load;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;INIT=CREATE SEQUENCE IF NOT EXISTS booking_reference_seq",
+        "flight-search-cache.ttl=PT0.001S"
+})
+class SearchUnderSlowStripeLoadTest extends IntegrationTest {
+    private static final long STRIPE_LATENCY_MS = 2_000;
+    // kétszer annyi fizető, mint a válaszfal szélessége (bulkhead.stripe.max-concurrency=20): mindig van, aki kiszorul
+    private static final int PAYMENT_CLIENTS = 40;
+    private static final int SEARCH_CLIENTS = 4;
+
+    private static HttpServer stripe;
+    private static final LongAdder stripeCalls = new LongAdder();
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Value("${stripe.api-base}")
+    private String configuredApiBase;
+
+    @BeforeAll
+    static void startStripe() throws IOException {
+        stripe = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1_000);
+        stripe.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stripe.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            stripeCalls.increment();
+
+            try {
+                Thread.sleep(STRIPE_LATENCY_MS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+
+            String id = "pi_slow_" + stripeCalls.sum();
+            byte[] body = """
+                    {"id":"%s","object":"payment_intent","client_secret":"%s_secret","status":"requires_payment_method"}
+                    """.formatted(id, id).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stripe.start();
+    }
+
+    @AfterAll
+    static void stopStripe() {
+        stripe.stop(0);
+    }
+
+    @BeforeEach
+    void useSlowStripe() {
+        Stripe.overrideApiBase("http://127.0.0.1:" + stripe.getAddress().getPort());
+    }
+
+    @AfterEach
+    void restoreStripe() {
+        Stripe.overrideApiBase(configuredApiBase);
+    }
+
+    @Test
+    void searchLatencyStaysFlatWhileStripeIsSlow() throws Exception {
+        LocalDateTime departure = departureInDays(40);
+        Route route = route();
+        List<Flight> flights = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            flights.add(flight(route, departure.plusHours(i), 20));
+        }
+
+        // minden fizetési kérés saját, még ki nem fizetett foglalásra megy, így mindegyik valódi Stripe hívás
+        ConcurrentLinkedQueue<String> unpaid = new ConcurrentLinkedQueue<>();
+        for (Flight flight : flights) {
+            for (int row = 2; row <= 20; row++) {
+                for (char letter : "ABCDEF".toCharArray()) {
+                    unpaid.add(bookingService.createBooking(bookingRequest(flight, row + String.valueOf(letter))).getBookingReference());
+                }
+            }
+        }
+
+        String search = """
+                {"departureAirportCode":"%s","arrivalAirportCode":"%s","departureDate":"%s","passengers":1}
+                """.formatted(route.from().getIataCode(), route.to().getIataCode(), departure.toLocalDate());
+
+        measureSearch(search, Duration.ofSeconds(2)); // bemelegítés
+        Latency idle = measureSearch(search, Duration.ofSeconds(3));
+
+        AtomicBoolean stop = new AtomicBoolean();
+        Map<Integer, LongAdder> paymentStatuses = new ConcurrentHashMap<>();
+        List<Thread> payers = new ArrayList<>(PAYMENT_CLIENTS);
+
+        for (int i = 0; i < PAYMENT_CLIENTS; i++) {
+            payers.add(Thread.ofVirtual().start(() -> {
+                String reference;
+
+                while (!stop.get() && (reference = unpaid.poll()) != null) {
+                    int status = post("/api/payments/create-intent", "{\"bookingReference\":\"" + reference + "\"}");
+                    paymentStatuses.computeIfAbsent(status, code -> new LongAdder()).increment();
+
+                    // elutasított kérésnél nem volt Stripe hívás, a foglalás később újra próbálható
+                    if (status == 503) {
+                        unpaid.add(reference);
+                        pause(500);
+                    }
+                }
+            }));
+        }
+
+        pause(500); // a válaszfal megtelik
+        Latency loaded = measureSearch(search, Duration.ofSeconds(4));
+
+        stop.set(true);
+        for (Thread payer : payers) {
+            payer.join(Duration.ofSeconds(20));
+        }
+
+        // a Stripe valóban telítve volt: a válaszfal elutasított kéréseket, és közben sorban mentek a hívások
+        assertThat(stripeCalls.sum()).isGreaterThanOrEqualTo(20);
+        assertThat(paymentStatuses.getOrDefault(503, new LongAdder()).sum()).as("fizetési válaszok: %s", paymentStatuses).isPositive();
+
+        assertThat(idle.errors()).isZero();
+        assertThat(loaded.errors()).isZero();
+        assertThat(loaded.requests()).as("keresési áteresztés").isGreaterThanOrEqualTo(idle.requests() / 2);
+        assertThat(loaded.p50Millis())
+                .as("keresés terhelés nélkül: %s, lassú Stripe mellett: %s", idle, loaded)
+                .isLessThanOrEqualTo(idle.p50Millis() * 2 + 50);
+        // egyetlen keresés sem várt a Stripe-ra (vagy egy általa lefoglalt adatbázis kapcsolatra)
+        assertThat(loaded.p99Millis())
+                .as("keresés terhelés nélkül: %s, lassú Stripe mellett: %s", idle, loaded)
+                .isLessThan(STRIPE_LATENCY_MS / 2.0);
+    }
+
+    private @NonNull Latency measureSearch(@NonNull String body, @NonNull Duration duration) throws InterruptedException {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+        long end = System.nanoTime() + duration.toNanos();
+        List<Thread> clients = new ArrayList<>(SEARCH_CLIENTS);
+
+        for (int i = 0; i < SEARCH_CLIENTS; i++) {
+            clients.add(Thread.ofVirtual().start(() -> {
+                while (System.nanoTime() < end) {
+                    long start = System.nanoTime();
+
+                    if (post("/api/flights/search", body) != 200) {
+                        errors.incrementAndGet();
+                    }
+
+                    latencies.add(System.nanoTime() - start);
+                }
+            }));
+        }
+
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        return new Latency(sorted.size(), errors.get(), percentile(sorted, 0.50), percentile(sorted, 0.99));
+    }
+
+    private static double percentile(@NonNull List<Long> sorted, double quantile) {
+        return sorted.get((int) (sorted.size() * quantile)) / 1e6;
+    }
+
+    // a HTTP státusz, kapcsolati hibánál -1
+    private int post(@NonNull String path, @NonNull String body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException exception) {
+            return -1;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record Latency(int requests, int errors, double p50Millis, double p99Millis) {}
+}
@@ -0,0 +1,106 @@
+package net.coma112.flightbooking.controller;
+
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.dto.SeatMapResponse;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.service.BookingService;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A teljes kabin egy 402 üléses gépen: a tömör seat-map válasz és a régi, osztályonként Seat entitásokat
+ * (bennük a teljes járattal) visszaadó /seats végpont mérete és utasításszáma.
+ */
+class SeatMapPayloadTest extends IntegrationTest {
+    private static final int ROWS = 67;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Test
+    void seatMapIsAFractionOfTheSeatListAndAgreesWithIt() throws Exception {
+        Flight flight = flight(route(), departureInDays(70), ROWS);
+        Set<String> taken = Set.of("1B", "2A", "2B", "2C", "40F", "67A");
+        for (String seatNumber : taken) {
+            bookingService.createBooking(bookingRequest(flight, seatNumber));
+        }
+
+        long[] seatListBytes = new long[1];
+        Set<String> listedSeats = new HashSet<>();
+        long seatListStatements = statements(() -> {
+            for (SeatClass seatClass : SeatClass.values()) {
+                MvcResult result = perform(get("/api/flights/{id}/seats", flight.getId()).param("seatClass", seatClass.name()));
+                seatListBytes[0] += result.getResponse().getContentAsByteArray().length;
+                jsonMapper.readTree(result.getResponse().getContentAsString())
+                        .forEach(seat -> listedSeats.add(seat.get("seatNumber").asString()));
+            }
+        });
+
+        MvcResult[] seatMapResult = new MvcResult[1];
+        long seatMapStatements = statements(() -> seatMapResult[0] = perform(get("/api/flights/{id}/seat-map", flight.getId())));
+        long seatMapBytes = seatMapResult[0].getResponse().getContentAsByteArray().length;
+
+        // a járat adatai egyszer, az ülések cellánként legfeljebb pár bájton
+        assertThat(seatMapBytes).as("seat-map %d bájt, seats %d bájt", seatMapBytes, seatListBytes[0])
+                .isLessThan(seatListBytes[0] / 20);
+        assertThat(seatMapBytes).isLessThan(2_000);
+        assertThat(seatMapStatements).isLessThanOrEqualTo(2);
+        assertThat(seatMapStatements).isLessThan(seatListStatements);
+
+        // ugyanaz a kabin: a rácsban szabad ülések pontosan a listázottak
+        SeatMapResponse seatMap = jsonMapper.readValue(seatMapResult[0].getResponse().getContentAsString(), SeatMapResponse.class);
+        Set<String> mappedSeats = availableSeats(seatMap);
+
+        assertThat(mappedSeats).hasSize(ROWS * 6 - taken.size()).doesNotContainAnyElementsOf(taken);
+        assertThat(mappedSeats).isEqualTo(listedSeats);
+        assertThat(seatMap.getOtherAvailableSeats()).isEmpty();
+    }
+
+    // a futáshossz kódolt rácsok kibontása: "<darab><jel>", soronként a columns betűi szerint
+    private static @NonNull Set<String> availableSeats(@NonNull SeatMapResponse seatMap) {
+        Set<String> available = new HashSet<>();
+
+        for (SeatMapResponse.Cabin cabin : seatMap.getCabins()) {
+            StringBuilder cells = new StringBuilder();
+            String encoded = cabin.getSeats();
+            int count = 0;
+
+            for (char symbol : encoded.toCharArray()) {
+                if (Character.isDigit(symbol)) {
+                    count = count * 10 + (symbol - '0');
+                } else {
+                    cells.repeat(symbol, count);
+                    count = 0;
+                }
+            }
+
+            int columns = cabin.getColumns().length();
+            assertThat(cells).hasSize((cabin.getLastRow() - cabin.getFirstRow() + 1) * columns);
+
+            for (int i = 0; i < cells.length(); i++) {
+                if (cells.charAt(i) == 'a') {
+                    available.add((cabin.getFirstRow() + i / columns) + String.valueOf(cabin.getColumns().charAt(i % columns)));
+                }
+            }
+        }
+
+        return available;
+    }
+
+    private @NonNull MvcResult perform(@NonNull RequestBuilder request) throws Exception {
+        return mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn();
+    }
+}
@@ -0,0 +1,99 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.repository.BookingRepository;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A kiosztott kódok egyediségét adatbázis nélkül ellenőrizzük: a szekvenciát egy számláló helyettesíti.
+ * A 10 millió kódot több szál kéri egyszerre, így a blokkcserék (10 000 darab) is versenyben futnak.
+ */
+class BookingReferenceAllocatorTest {
+    private static final int REFERENCES = 10_000_000;
+    private static final int THREADS = 8;
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    @Test
+    void tenMillionReferencesAreUnique() throws Exception {
+        BookingReferenceAllocator allocator = new BookingReferenceAllocator(sequence(), "test-booking-reference-secret");
+        long[] values = new long[REFERENCES];
+        int perThread = REFERENCES / THREADS;
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            List<Future<?>> futures = new ArrayList<>(THREADS);
+
+            for (int thread = 0; thread < THREADS; thread++) {
+                int from = thread * perThread;
+
+                futures.add(executor.submit(() -> {
+                    for (int i = from; i < from + perThread; i++) {
+                        values[i] = decode(allocator.next());
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        Arrays.sort(values);
+
+        for (int i = 1; i < values.length; i++) {
+            assertThat(values[i]).as("ismétlődő kód").isNotEqualTo(values[i - 1]);
+        }
+    }
+
+    @Test
+    void sameSecretGivesTheSameSequenceAndOtherSecretsDiffer() {
+        BookingReferenceAllocator first = new BookingReferenceAllocator(sequence(), "test-booking-reference-secret");
+        BookingReferenceAllocator second = new BookingReferenceAllocator(sequence(), "test-booking-reference-secret");
+        BookingReferenceAllocator other = new BookingReferenceAllocator(sequence(), "another-secret");
+
+        List<String> firstReferences = new ArrayList<>();
+        List<String> secondReferences = new ArrayList<>();
+        List<String> otherReferences = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            firstReferences.add(first.next());
+            secondReferences.add(second.next());
+            otherReferences.add(other.next());
+        }
+
+        assertThat(firstReferences).allMatch(reference -> reference.matches("^[A-Z0-9]{6}$"));
+        assertThat(secondReferences).isEqualTo(firstReferences);
+        assertThat(otherReferences).isNotEqualTo(firstReferences);
+    }
+
+    // a booking_reference_seq helyett: minden hívás a következő blokk sorszáma, 1-től
+    private static @NonNull BookingRepository sequence() {
+        AtomicLong blocks = new AtomicLong();
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+
+        when(bookingRepository.nextReferenceBlock()).thenAnswer(invocation -> blocks.incrementAndGet());
+
+        return bookingRepository;
+    }
+
+    private static long decode(@NonNull String reference) {
+        long value = 0;
+
+        for (int i = 0; i < reference.length(); i++) {
+            value = value * ALPHABET.length() + ALPHABET.indexOf(reference.charAt(i));
+        }
+
+        return value;
+    }
+}
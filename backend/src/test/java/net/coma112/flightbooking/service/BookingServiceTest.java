@@ -0,0 +1,215 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.dto.BookingRequest;
+import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.dto.GroupBookingRequest;
+import net.coma112.flightbooking.dto.GroupBookingResponse;
+import net.coma112.flightbooking.dto.PassengerDTO;
+import net.coma112.flightbooking.exception.BusinessException;
+import net.coma112.flightbooking.model.Booking;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.repository.BookingRepository;
+import org.hibernate.Hibernate;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Foglalás a szolgáltatás szintjén: a létrehozás utasításszáma nem függhet a kabin méretétől és a foglaltságától,
+ * azaz nincs ülésenkénti lekérdezés, a helyet egy feltételes UPDATE foglalja le.
+ * A foglalás olvasása egyetlen projekciós lekérdezés, az entitás kapcsolatai pedig lusták.
+ * A csoportos foglalás mind vagy egyik sem, és a csoport méretétől független számú (kötegelt) utasítás.
+ */
+class BookingServiceTest extends IntegrationTest {
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void createBookingDoesNoPerSeatLookups() throws Exception {
+        Route route = route();
+        Flight small = flight(route, departureInDays(62), 2);
+        Flight large = flight(route, departureInDays(62).plusHours(2), 40);
+
+        // a nagy gépen a 3-39. sor foglalt, a foglalás a kabin végére esik
+        for (int row = 3; row < 40; row++) {
+            for (char letter : "ABCDEF".toCharArray()) {
+                bookingService.createBooking(bookingRequest(large, row + String.valueOf(letter)));
+            }
+        }
+        // az első foglalás járatonként betölti a készletet, azt nem mérjük
+        bookingService.createBooking(bookingRequest(small, "2F"));
+
+        long smallCabin = statements(() -> bookingService.createBooking(bookingRequest(small, "2A")));
+        long fullCabin = statements(() -> bookingService.createBooking(bookingRequest(large, "40A")));
+
+        assertThat(smallCabin).isLessThanOrEqualTo(6);
+        assertThat(fullCabin).isEqualTo(smallCabin);
+    }
+
+    @Test
+    void lookupIsOneStatementWithEveryResponseField() throws Exception {
+        Route route = route();
+        Flight flight = flight(route, departureInDays(63), 3);
+        BookingRequest request = bookingRequest(flight, "3D");
+        String reference = bookingService.createBooking(request).getBookingReference();
+
+        BookingResponse[] booking = new BookingResponse[1];
+        long lookup = statements(() -> booking[0] = bookingService.getBookingByReference(reference));
+
+        assertThat(lookup).isEqualTo(1);
+        assertThat(booking[0].getBookingReference()).isEqualTo(reference);
+        assertThat(booking[0].getStatus()).isEqualTo(BookingStatus.PENDING);
+        assertThat(booking[0].getSeatNumber()).isEqualTo("3D");
+        assertThat(booking[0].getTotalPrice()).isPositive();
+        assertThat(booking[0].getBookingDate()).isNotNull();
+        assertThat(booking[0].getFlight().getFlightNumber()).isEqualTo(flight.getFlightNumber());
+        assertThat(booking[0].getFlight().getDepartureAirport().getIataCode()).isEqualTo(route.from().getIataCode());
+        assertThat(booking[0].getFlight().getArrivalAirport().getCity()).isEqualTo(route.to().getCity());
+        assertThat(booking[0].getPassenger().getEmail()).isEqualTo(request.getPassengerDetails().getEmail());
+        assertThat(booking[0].getPassenger().getPassportNumber()).isEqualTo(request.getPassengerDetails().getPassportNumber());
+    }
+
+    @Test
+    void bookingEntityDoesNotLoadItsRelations() throws Exception {
+        String reference = bookingService.createBooking(bookingRequest(flight(route(), departureInDays(64), 2), "2B")).getBookingReference();
+
+        // a kapcsolatok állapotát még a tranzakción belül olvassuk ki
+        List<Boolean> initialized = new ArrayList<>();
+        long load = statements(() -> transactionTemplate.executeWithoutResult(status -> {
+            Booking booking = bookingRepository.findByBookingReference(reference).orElseThrow();
+            initialized.add(Hibernate.isInitialized(booking.getFlight()));
+            initialized.add(Hibernate.isInitialized(booking.getPassenger()));
+            initialized.add(Hibernate.isInitialized(booking.getSeat()));
+        }));
+
+        assertThat(load).isEqualTo(1);
+        assertThat(initialized).containsExactly(false, false, false);
+    }
+
+    @Test
+    void groupBookingSharesOneReferenceAndKeepsSeatOrder() {
+        Flight flight = flight(route(), departureInDays(65), 4);
+        List<String> seatNumbers = List.of("3A", "3B", "3C", "4A", "4B");
+        List<PassengerDTO> passengers = passengers(5);
+
+        GroupBookingResponse group = bookingService.createGroupBooking(group(flight, passengers, seatNumbers));
+
+        assertThat(group.getGroupReference()).matches("^[A-Z0-9]{6}$");
+        assertThat(group.getBookings()).extracting(BookingResponse::getSeatNumber).containsExactlyElementsOf(seatNumbers);
+        assertThat(group.getBookings()).extracting(booking -> booking.getPassenger().getEmail())
+                .containsExactlyElementsOf(passengers.stream().map(PassengerDTO::getEmail).toList());
+        assertThat(group.getBookings()).extracting(BookingResponse::getBookingReference).doesNotHaveDuplicates();
+        assertThat(group.getTotalPrice()).isEqualByComparingTo(group.getBookings().stream()
+                .map(BookingResponse::getTotalPrice).reduce(BigDecimal.ZERO, BigDecimal::add));
+
+        for (BookingResponse booking : group.getBookings()) {
+            BookingResponse stored = bookingService.getBookingByReference(booking.getBookingReference());
+            assertThat(stored.getGroupReference()).isEqualTo(group.getGroupReference());
+            assertThat(stored.getStatus()).isEqualTo(BookingStatus.PENDING);
+        }
+    }
+
+    @Test
+    void groupIsNotHalfBookedWhenOneSeatIsAlreadyTaken() {
+        Flight flight = flight(route(), departureInDays(66), 3);
+        bookingService.createBooking(bookingRequest(flight, "2C"));
+        List<PassengerDTO> passengers = passengers(4);
+
+        // a memória szerint is foglalt: a foglalás el sem indul
+        assertThatThrownBy(() -> bookingService.createGroupBooking(group(flight, passengers, List.of("2A", "2B", "2C", "2D"))))
+                .isInstanceOf(BusinessException.class);
+        assertNothingBooked(flight, passengers, List.of("2A", "2B", "2D"));
+
+        // csak az adatbázis szerint foglalt (mintha egy másik példány vitte volna el): a feltételes UPDATE bukik el,
+        // és az addigra beszúrt foglalások is visszagörgetődnek
+        jdbcTemplate.update("UPDATE seats SET is_available = FALSE WHERE flight_id = ? AND seat_number = '3F'", flight.getId());
+
+        assertThatThrownBy(() -> bookingService.createGroupBooking(group(flight, passengers, List.of("3C", "3D", "3E", "3F"))))
+                .isInstanceOf(BusinessException.class);
+        assertNothingBooked(flight, passengers, List.of("3C", "3D", "3E"));
+        assertThat(seatInventory.getAvailableSeats(flight.getId(), SeatClass.ECONOMY))
+                .extracting(SeatInventory.SeatView::seatNumber)
+                .contains("3C", "3D", "3E").doesNotContain("3F");
+    }
+
+    @Test
+    void adjacentSeatsAreChosenInOneRow() {
+        Flight flight = flight(route(), departureInDays(67), 3);
+        bookingService.createBooking(bookingRequest(flight, "2C"));
+
+        GroupBookingRequest request = new GroupBookingRequest();
+        request.setFlightId(flight.getId());
+        request.setSeatClass(SeatClass.ECONOMY);
+        request.setPassengers(passengers(4));
+
+        List<String> seats = bookingService.createGroupBooking(request).getBookings().stream()
+                .map(BookingResponse::getSeatNumber)
+                .toList();
+
+        // a 2. sorban a C foglalt, ott csak 2 és 3 egymás melletti hely van
+        assertThat(seats).hasSize(4).allMatch(seat -> seat.startsWith("3"));
+        assertThat(seats.stream().map(seat -> seat.charAt(1) - 'A').sorted().toList())
+                .satisfies(columns -> assertThat(columns.getLast() - columns.getFirst()).isEqualTo(3));
+    }
+
+    @Test
+    void groupBookingStatementsDoNotGrowWithGroupSize() throws Exception {
+        Flight flight = flight(route(), departureInDays(68), 4);
+        bookingService.createBooking(bookingRequest(flight, "4F"));
+
+        long onePassenger = statements(() -> bookingService.createGroupBooking(group(flight, passengers(1), List.of("2A"))));
+        long ninePassengers = statements(() -> bookingService.createGroupBooking(
+                group(flight, passengers(9), List.of("2B", "2C", "2D", "2E", "2F", "3A", "3B", "3C", "3D"))));
+
+        // járat, ülések, utasok, foglalások és a feltételes UPDATE: mind egy-egy köteg
+        assertThat(ninePassengers).isEqualTo(onePassenger);
+    }
+
+    private void assertNothingBooked(@NonNull Flight flight, @NonNull List<PassengerDTO> passengers, @NonNull List<String> seatNumbers) {
+        for (PassengerDTO passenger : passengers) {
+            assertThat(bookingService.getBookingsByPassenger(passenger.getEmail(), null, 10).getBookings()).isEmpty();
+        }
+
+        Integer taken = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM seats WHERE flight_id = ? AND is_available = FALSE AND seat_number IN (?, ?, ?)",
+                Integer.class, flight.getId(), seatNumbers.get(0), seatNumbers.get(1), seatNumbers.get(2));
+        assertThat(taken).isZero();
+    }
+
+    private @NonNull List<PassengerDTO> passengers(int count) {
+        return IntStream.range(0, count).mapToObj(i -> passenger()).toList();
+    }
+
+    private static @NonNull GroupBookingRequest group(@NonNull Flight flight, @NonNull List<PassengerDTO> passengers, @NonNull List<String> seatNumbers) {
+        GroupBookingRequest request = new GroupBookingRequest();
+        request.setFlightId(flight.getId());
+        request.setPassengers(passengers);
+        request.setSeatNumbers(seatNumbers);
+        return request;
+    }
+}
@@ -0,0 +1,87 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.exception.ServiceUnavailableException;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A válaszfal helyei nem fogyhatnak el attól, hogy a hívók feladják a várakozást: akár fut már a hívás
+ * (időtúllépés), akár még el sem indult (a hívót megszakították), a helynek vissza kell jönnie.
+ */
+class BulkheadTest {
+    private static final int MAX_CONCURRENCY = 4;
+
+    @Test
+    void slowCallsThatTimeOutGiveTheirPermitsBack() throws Exception {
+        try (Bulkhead bulkhead = new Bulkhead("test", MAX_CONCURRENCY, Duration.ofSeconds(10), Duration.ofMillis(5));
+             ExecutorService callers = Executors.newFixedThreadPool(MAX_CONCURRENCY * 2)) {
+            List<Future<?>> futures = new ArrayList<>();
+
+            for (int caller = 0; caller < MAX_CONCURRENCY * 2; caller++) {
+                futures.add(callers.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        assertThatThrownBy(() -> bulkhead.call(() -> {
+                            Thread.sleep(10_000);
+                            return null;
+                        })).isInstanceOf(ServiceUnavailableException.class);
+                    }
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertThat(bulkhead.getTimedOutCalls()).isEqualTo(MAX_CONCURRENCY * 2 * 50);
+            awaitAllPermitsBack(bulkhead);
+            assertThat(bulkhead.call(() -> "ok")).isEqualTo("ok");
+        }
+    }
+
+    @Test
+    void callsAbandonedBeforeTheyStartGiveTheirPermitsBack() throws Exception {
+        AtomicInteger started = new AtomicInteger();
+
+        try (Bulkhead bulkhead = new Bulkhead("test", MAX_CONCURRENCY, Duration.ZERO, Duration.ofSeconds(10))) {
+            for (int i = 0; i < 1_000; i++) {
+                // a megszakított hívó azonnal feladja, a virtuális szál jellemzően még el sem indult
+                Thread.currentThread().interrupt();
+
+                assertThatThrownBy(() -> bulkhead.call(() -> {
+                    started.incrementAndGet();
+                    Thread.sleep(10_000);
+                    return null;
+                })).isInstanceOf(ServiceUnavailableException.class);
+
+                assertThat(Thread.interrupted()).isTrue();
+            }
+
+            // ha egyszer sem fogyott el a hely, egyik hívást sem utasította el túlterheltség miatt
+            assertThat(bulkhead.getRejectedCalls()).isZero();
+            awaitAllPermitsBack(bulkhead);
+            assertThat(bulkhead.call(() -> "ok")).isEqualTo("ok");
+            assertThat(started.get()).isLessThan(1_000);
+        }
+    }
+
+    private static void awaitAllPermitsBack(@NonNull Bulkhead bulkhead) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+
+        while (bulkhead.getActiveCalls() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(bulkhead.getActiveCalls()).as("foglalt helyek").isZero();
+    }
+}
@@ -0,0 +1,183 @@
+package net.coma112.flightbooking.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetup;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.internet.MimeMultipart;
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.dto.BookingResponse;
+import net.coma112.flightbooking.model.EmailOutbox;
+import net.coma112.flightbooking.model.enums.OutboxStatus;
+import net.coma112.flightbooking.repository.EmailOutboxRepository;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Az outbox és a küldés egy helyi SMTP szerver (GreenMail) ellen, a tesztprofil spring.mail.port portján.
+ * A megerősítés csak az outbox sort írja; a levél a dispatcher kézi futtatásakor megy ki.
+ */
+class EmailOutboxDispatcherTest extends IntegrationTest {
+    @RegisterExtension
+    static final GreenMailExtension smtp = new GreenMailExtension(new ServerSetup(2525, null, ServerSetup.PROTOCOL_SMTP))
+            .withPerMethodLifecycle(true);
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private EmailOutboxDispatcher dispatcher;
+
+    @Autowired
+    private EmailOutboxRepository outboxRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void confirmationIsQueuedWithTheBookingAndSentByTheDispatcher() throws Exception {
+        BookingResponse booking = bookingService.createBooking(bookingRequest(flight(route(), departureInDays(50), 2), "2A"));
+        String reference = booking.getBookingReference();
+        String recipient = booking.getPassenger().getEmail();
+
+        bookingService.confirmBooking(reference, "card");
+
+        // a megerősítés nem vár az SMTP-re
+        assertThat(receivedBy(recipient)).isEmpty();
+        assertThat(outbox(reference).getStatus()).isEqualTo(OutboxStatus.PENDING);
+
+        dispatcher.drain();
+
+        List<MimeMessage> received = receivedBy(recipient);
+        assertThat(received).hasSize(1);
+
+        MimeMessage message = received.getFirst();
+        assertThat(message.getSubject()).contains(reference);
+        assertThat(message.getMessageID()).isEqualTo(emailService.confirmationMessageId(reference));
+
+        // multipart/mixed -> multipart/related: a HTML rész és a hozzá csatolt inline QR kép
+        MimeMultipart mixed = (MimeMultipart) message.getContent();
+        MimeMultipart related = (MimeMultipart) mixed.getBodyPart(0).getContent();
+        assertThat(related.getCount()).isEqualTo(2);
+        assertThat(related.getBodyPart(0).getContentType()).startsWith("text/html");
+        assertThat(related.getBodyPart(1).getContentType()).startsWith("image/png");
+
+        assertThat(outbox(reference).getStatus()).isEqualTo(OutboxStatus.SENT);
+
+        // a már elküldött sort a következő futás nem veszi fel újra
+        dispatcher.drain();
+        assertThat(receivedBy(recipient)).hasSize(1);
+    }
+
+    @Test
+    void failedSendIsRetriedWithBackoffAndDeliveredOnce() throws Exception {
+        BookingResponse booking = bookingService.createBooking(bookingRequest(flight(route(), departureInDays(51), 2), "2A"));
+        String reference = booking.getBookingReference();
+        String recipient = booking.getPassenger().getEmail();
+        bookingService.confirmBooking(reference, "card");
+
+        smtp.stop();
+        long failedBefore = dispatcher.getFailedAttempts();
+        dispatcher.drain();
+
+        EmailOutbox failed = outbox(reference);
+        assertThat(failed.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).isNotBlank();
+        assertThat(failed.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(dispatcher.getFailedAttempts()).isGreaterThan(failedBefore);
+
+        smtp.start();
+
+        // a várakozás alatt nem próbálkozik újra
+        dispatcher.drain();
+        assertThat(receivedBy(recipient)).isEmpty();
+
+        jdbcTemplate.update("UPDATE email_outbox SET next_attempt_at = ? WHERE booking_reference = ?", LocalDateTime.now().minusSeconds(1), reference);
+        dispatcher.drain();
+
+        assertThat(receivedBy(recipient)).hasSize(1);
+        assertThat(outbox(reference).getStatus()).isEqualTo(OutboxStatus.SENT);
+    }
+
+    @Test
+    void aFailedSentMarkDoesNotSendTheConfirmationAgain() throws Exception {
+        BookingResponse booking = bookingService.createBooking(bookingRequest(flight(route(), departureInDays(52), 2), "2A"));
+        String reference = booking.getBookingReference();
+        String recipient = booking.getPassenger().getEmail();
+        bookingService.confirmBooking(reference, "card");
+
+        // a valódi repository, csak a SENT jelölés dob: a levél kiment, az adatbázis írás nem
+        EmailOutboxRepository failingMarkSent = mock(EmailOutboxRepository.class, delegatesTo(outboxRepository));
+        doThrow(new DataAccessResourceFailureException("az adatbázis nem elérhető")).when(failingMarkSent).markSent(any(), any());
+        EmailOutboxDispatcher failingDispatcher = new EmailOutboxDispatcher(failingMarkSent, bookingService, emailService, transactionTemplate, meterRegistry);
+
+        for (String setting : List.of("batchSize", "maxAttempts", "initialBackoff", "maxBackoff", "lease")) {
+            ReflectionTestUtils.setField(failingDispatcher, setting, ReflectionTestUtils.getField(dispatcher, setting));
+        }
+
+        long failedBefore = dispatcher.getFailedAttempts();
+
+        try {
+            failingDispatcher.drain();
+        } finally {
+            failingDispatcher.shutdown();
+        }
+
+        assertThat(receivedBy(recipient)).hasSize(1);
+        assertThat(outbox(reference).getStatus()).isEqualTo(OutboxStatus.SENDING);
+        assertThat(dispatcher.getFailedAttempts()).isEqualTo(failedBefore);
+
+        // a kivett sort a lease lejártáig senki nem küldi újra
+        dispatcher.drain();
+        assertThat(receivedBy(recipient)).hasSize(1);
+    }
+
+    // a közös adatbázisban más tesztek foglalásai is az outboxba kerülnek, ezért címzett szerint szűrünk
+    private static @NonNull List<MimeMessage> receivedBy(@NonNull String recipient) {
+        return Arrays.stream(smtp.getReceivedMessages())
+                .filter(message -> hasRecipient(message, recipient))
+                .toList();
+    }
+
+    private static boolean hasRecipient(@NonNull MimeMessage message, @NonNull String recipient) {
+        try {
+            return Arrays.stream(message.getRecipients(Message.RecipientType.TO)).anyMatch(address -> address.toString().equals(recipient));
+        } catch (jakarta.mail.MessagingException exception) {
+            return false;
+        }
+    }
+
+    private @NonNull EmailOutbox outbox(@NonNull String reference) {
+        return outboxRepository.findAll().stream()
+                .filter(message -> message.getBookingReference().equals(reference))
+                .findFirst()
+                .orElseThrow();
+    }
+}
@@ -0,0 +1,102 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.dto.FlightResponse;
+import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.event.FlightChangedEvent;
+import net.coma112.flightbooking.event.SeatAvailabilityChangedEvent;
+import net.coma112.flightbooking.service.ReferenceDataCache.AirportRef;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Egy betöltés közben érkező érvénytelenítés csak akkor akadályozza meg az eredmény eltételét,
+ * ha a betöltött járatokat vagy a keresés útvonalát és napját érinti; a máshol zajló foglalások nem.
+ */
+class FlightSearchCacheTest {
+    private static final long BUD = 1L;
+    private static final long LHR = 2L;
+    private static final LocalDate DAY = LocalDate.now().plusDays(10);
+
+    private final ReferenceDataCache referenceData = mock(ReferenceDataCache.class);
+    private final AtomicInteger loads = new AtomicInteger();
+    private FlightSearchCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(referenceData.findAirportById(BUD)).thenReturn(Optional.of(new AirportRef(BUD, "BUD", "Budapest", "Budapest", "HU")));
+        when(referenceData.findAirportById(LHR)).thenReturn(Optional.of(new AirportRef(LHR, "LHR", "Heathrow", "London", "GB")));
+        cache = new FlightSearchCache(referenceData, 100, Duration.ofMinutes(5));
+    }
+
+    @Test
+    void bookingsOnOtherFlightsDuringTheLoadDoNotKeepTheResultOutOfTheCache() {
+        search(() -> cache.onSeatAvailabilityChanged(new SeatAvailabilityChangedEvent(99L)));
+        search(() -> {});
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void aBookingOnALoadedFlightDuringTheLoadKeepsTheResultOutOfTheCache() {
+        search(() -> cache.onSeatAvailabilityChanged(new SeatAvailabilityChangedEvent(11L)));
+        search(() -> {});
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void aNewFlightOnTheSameRouteAndDayDuringTheLoadKeepsTheResultOutOfTheCache() {
+        search(() -> cache.onFlightChanged(new FlightChangedEvent(99L, BUD, LHR, DAY)));
+        search(() -> {});
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void aNewFlightOnAnotherDayDuringTheLoadDoesNotKeepTheResultOutOfTheCache() {
+        search(() -> cache.onFlightChanged(new FlightChangedEvent(99L, BUD, LHR, DAY.plusDays(1))));
+        search(() -> {});
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void aBookingAfterTheResultWasCachedEvictsIt() {
+        search(() -> {});
+        cache.onSeatAvailabilityChanged(new SeatAvailabilityChangedEvent(12L));
+        search(() -> {});
+
+        assertThat(loads).hasValue(2);
+    }
+
+    // a duringLoad a betöltés közben fut le, mintha egy másik szálon épp akkor zárult volna le egy írás
+    private void search(@NonNull Runnable duringLoad) {
+        FlightSearchRequest request = new FlightSearchRequest();
+        request.setDepartureAirportCode("BUD");
+        request.setArrivalAirportCode("LHR");
+        request.setDepartureDate(DAY);
+
+        cache.get(request, () -> {
+            loads.incrementAndGet();
+            duringLoad.run();
+            return List.of(flight(11L), flight(12L));
+        });
+    }
+
+    private static @NonNull FlightResponse flight(long id) {
+        FlightResponse flight = new FlightResponse();
+        flight.setId(id);
+        return flight;
+    }
+}
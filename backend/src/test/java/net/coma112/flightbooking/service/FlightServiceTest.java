@@ -0,0 +1,89 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.dto.FlightResponse;
+import net.coma112.flightbooking.dto.FlightSearchRequest;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A keresési találatok szabad helyei osztályonként: egy csoportosított lekérdezésből, bármennyi járatra.
+ * A flight() járatain az első sor (6 hely) business, a többi economy.
+ */
+class FlightServiceTest extends IntegrationTest {
+    @Autowired
+    private FlightService flightService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Test
+    void searchCountsAvailableSeatsPerClassWithAConstantNumberOfStatements() throws Exception {
+        LocalDateTime departure = departureInDays(60);
+        Route single = route();
+        Route busy = route();
+
+        flight(single, departure, 3);
+        List<Flight> busyFlights = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            busyFlights.add(flight(busy, departure.plusMinutes(15L * i), 3));
+        }
+
+        Flight booked = busyFlights.get(7);
+        bookingService.createBooking(bookingRequest(booked, "1A"));
+        bookingService.createBooking(bookingRequest(booked, "2A"));
+        bookingService.createBooking(bookingRequest(booked, "3F"));
+
+        List<List<FlightResponse>> results = new ArrayList<>();
+        long oneFlight = statements(() -> results.add(flightService.searchFlights(search(single, departure.toLocalDate()))));
+        long fortyFlights = statements(() -> results.add(flightService.searchFlights(search(busy, departure.toLocalDate()))));
+
+        // a járatok és a szabad helyeik: két utasítás, a találatok számától függetlenül
+        assertThat(oneFlight).isLessThanOrEqualTo(2);
+        assertThat(fortyFlights).isEqualTo(oneFlight);
+
+        assertThat(results.get(0)).singleElement().extracting(FlightResponse::getAvailableSeats)
+                .isEqualTo(seats(6, 12));
+        assertThat(results.get(1)).hasSize(40).allSatisfy(flight -> assertThat(flight.getAvailableSeats())
+                .isEqualTo(flight.getId().equals(booked.getId())
+                        ? seats(5, 10)
+                        : seats(6, 12)));
+    }
+
+    @Test
+    void flightLookupUsesTheSameAggregation() throws Exception {
+        Flight flight = flight(route(), departureInDays(61), 4);
+        bookingService.createBooking(bookingRequest(flight, "4C"));
+
+        FlightResponse[] response = new FlightResponse[1];
+        long lookup = statements(() -> response[0] = flightService.getFlightById(flight.getId()));
+
+        assertThat(lookup).isLessThanOrEqualTo(2);
+        assertThat(response[0].getAvailableSeats()).isEqualTo(seats(6, 17));
+    }
+
+    // minden osztály szerepel a válaszban, az ülés nélküliek is (0)
+    private static @NonNull Map<SeatClass, Integer> seats(int business, int economy) {
+        return Map.of(SeatClass.FIRST, 0, SeatClass.BUSINESS, business, SeatClass.ECONOMY, economy);
+    }
+
+    private static @NonNull FlightSearchRequest search(@NonNull Route route, @NonNull LocalDate date) {
+        FlightSearchRequest request = new FlightSearchRequest();
+        request.setDepartureAirportCode(route.from().getIataCode());
+        request.setArrivalAirportCode(route.to().getIataCode());
+        request.setDepartureDate(date);
+        request.setPassengers(1);
+        return request;
+    }
+}
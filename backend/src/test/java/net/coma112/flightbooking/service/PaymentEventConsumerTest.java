@@ -0,0 +1,222 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.model.EmailOutbox;
+import net.coma112.flightbooking.model.Flight;
+import net.coma112.flightbooking.model.PaymentEvent;
+import net.coma112.flightbooking.model.enums.BookingStatus;
+import net.coma112.flightbooking.model.enums.PaymentEventStatus;
+import net.coma112.flightbooking.repository.EmailOutboxRepository;
+import net.coma112.flightbooking.repository.PaymentEventRepository;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A Stripe webhook és a kötegelt megerősítés együtt: aláírt eseményeket küldünk a végpontra, majd a fogyasztót
+ * kézzel futtatjuk le (az ütemezett futás a tesztekben ki van kapcsolva).
+ */
+class PaymentEventConsumerTest extends IntegrationTest {
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private PaymentEventConsumer paymentEventConsumer;
+
+    @Autowired
+    private PaymentEventRepository paymentEventRepository;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Value("${stripe.webhook.secret}")
+    private String webhookSecret;
+
+    @Test
+    void confirmsPaidBookingsInOneBatchAndDropsDuplicateEvents() throws Exception {
+        Flight flight = flight(route(), departureInDays(20), 6);
+        List<String> references = book(flight, 30);
+
+        // minden esemény kétszer érkezik (a Stripe újraküld), a második nem kerül a sorba
+        for (int i = 0; i < references.size(); i++) {
+            webhook(paymentSucceeded("evt_batch_" + i, references.get(i)));
+        }
+        for (int i = 0; i < references.size(); i++) {
+            webhook(paymentSucceeded("evt_batch_" + i, references.get(i)));
+        }
+
+        assertThat(events(references)).hasSize(30);
+
+        long batchStatements = statements(paymentEventConsumer::drain);
+
+        assertThat(references).allSatisfy(reference ->
+                assertThat(bookingService.getBookingByReference(reference).getStatus()).isEqualTo(BookingStatus.CONFIRMED));
+        assertThat(events(references)).extracting(PaymentEvent::getStatus).containsOnly(PaymentEventStatus.PROCESSED);
+        assertThat(outboxCounts(references)).hasSize(30).allSatisfy((reference, count) -> assertThat(count).isEqualTo(1L));
+
+        // a köteg mérete nem növeli a lekérdezések számát: két esemény feldolgozása ugyanannyi utasítás
+        List<String> pair = book(flight(route(), departureInDays(20), 1), 2);
+        webhook(paymentSucceeded("evt_pair_0", pair.get(0)));
+        webhook(paymentSucceeded("evt_pair_1", pair.get(1)));
+
+        long pairStatements = statements(paymentEventConsumer::drain);
+
+        assertThat(batchStatements).isLessThanOrEqualTo(pairStatements + 1);
+    }
+
+    @Test
+    void parksPaymentsForCancelledBookingsAsOrphaned() throws Exception {
+        Flight flight = flight(route(), departureInDays(21), 2);
+        List<String> references = book(flight, 3);
+        String cancelled = references.get(0);
+        String alreadyConfirmed = references.get(1);
+        String pending = references.get(2);
+
+        bookingService.cancelBooking(cancelled);
+        bookingService.confirmBooking(alreadyConfirmed, "card");
+        long orphanedBefore = paymentEventConsumer.getOrphanedPayments();
+
+        webhook(paymentSucceeded("evt_orphan_cancelled", cancelled));
+        webhook(paymentSucceeded("evt_orphan_confirmed", alreadyConfirmed));
+        webhook(paymentSucceeded("evt_orphan_pending", pending));
+        paymentEventConsumer.drain();
+
+        Map<String, PaymentEventStatus> statuses = events(references).stream()
+                .collect(Collectors.toMap(PaymentEvent::getBookingReference, PaymentEvent::getStatus));
+
+        assertThat(statuses).containsEntry(cancelled, PaymentEventStatus.ORPHANED_PAYMENT)
+                .containsEntry(alreadyConfirmed, PaymentEventStatus.PROCESSED)
+                .containsEntry(pending, PaymentEventStatus.PROCESSED);
+        assertThat(bookingService.getBookingByReference(cancelled).getStatus()).isEqualTo(BookingStatus.CANCELLED);
+        assertThat(bookingService.getBookingByReference(pending).getStatus()).isEqualTo(BookingStatus.CONFIRMED);
+        assertThat(outboxCounts(references)).doesNotContainKey(cancelled);
+        assertThat(paymentEventConsumer.getOrphanedPayments()).isEqualTo(orphanedBefore + 1);
+        assertThat(paymentEventConsumer.getOrphanedQueueDepth()).isPositive();
+    }
+
+    @Test
+    void leavesBookingsPendingWhenTheAmountOrCurrencyDiffers() throws Exception {
+        Flight flight = flight(route(), departureInDays(22), 2);
+        List<String> references = book(flight, 4);
+        String underpaid = references.get(0);
+        String wrongCurrency = references.get(1);
+        String noAmount = references.get(2);
+        String paid = references.get(3);
+        long mismatchedBefore = paymentEventConsumer.getMismatchedPayments();
+
+        webhook(paymentSucceeded("evt_mismatch_underpaid", underpaid, stripeAmount(underpaid) - 100, "huf"));
+        webhook(paymentSucceeded("evt_mismatch_currency", wrongCurrency, stripeAmount(wrongCurrency), "eur"));
+        webhook(paymentSucceeded("evt_mismatch_no_amount", noAmount, null, "huf"));
+        webhook(paymentSucceeded("evt_mismatch_paid", paid));
+        paymentEventConsumer.drain();
+
+        Map<String, PaymentEventStatus> statuses = events(references).stream()
+                .collect(Collectors.toMap(PaymentEvent::getBookingReference, PaymentEvent::getStatus));
+
+        assertThat(statuses).containsEntry(underpaid, PaymentEventStatus.AMOUNT_MISMATCH)
+                .containsEntry(wrongCurrency, PaymentEventStatus.AMOUNT_MISMATCH)
+                .containsEntry(noAmount, PaymentEventStatus.AMOUNT_MISMATCH)
+                .containsEntry(paid, PaymentEventStatus.PROCESSED);
+        assertThat(List.of(underpaid, wrongCurrency, noAmount)).allSatisfy(reference ->
+                assertThat(bookingService.getBookingByReference(reference).getStatus()).isEqualTo(BookingStatus.PENDING));
+        assertThat(bookingService.getBookingByReference(paid).getStatus()).isEqualTo(BookingStatus.CONFIRMED);
+        assertThat(outboxCounts(references)).containsOnlyKeys(paid);
+        assertThat(paymentEventConsumer.getMismatchedPayments()).isEqualTo(mismatchedBefore + 3);
+        assertThat(paymentEventConsumer.getAmountMismatchQueueDepth()).isGreaterThanOrEqualTo(3);
+    }
+
+    @Test
+    void rejectsMissingOrInvalidSignatureWithBadRequest() throws Exception {
+        String payload = paymentSucceeded("evt_unsigned", "ABC123", 3_000_000L, "huf");
+
+        mockMvc.perform(webhookRequest(payload))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(webhookRequest(payload).header("Stripe-Signature", " "))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(webhookRequest(payload).header("Stripe-Signature", "t=1,v1=deadbeef"))
+                .andExpect(status().isBadRequest());
+
+        assertThat(paymentEventRepository.findAll()).extracting(PaymentEvent::getEventId).doesNotContain("evt_unsigned");
+    }
+
+    // az első count ülés sorban (1A, 1B, ... 2A), a flight() hat üléses soraiból
+    private @NonNull List<String> book(@NonNull Flight flight, int count) {
+        List<String> references = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String seatNumber = (i / 6 + 1) + String.valueOf("ABCDEF".charAt(i % 6));
+            references.add(bookingService.createBooking(bookingRequest(flight, seatNumber)).getBookingReference());
+        }
+
+        return references;
+    }
+
+    private void webhook(@NonNull String payload) throws Exception {
+        mockMvc.perform(webhookRequest(payload).header("Stripe-Signature", sign(payload)))
+                .andExpect(status().isOk());
+    }
+
+    private @NonNull MockHttpServletRequestBuilder webhookRequest(@NonNull String payload) {
+        return post("/api/payments/webhook").contentType(MediaType.APPLICATION_JSON).content(payload);
+    }
+
+    private @NonNull List<PaymentEvent> events(@NonNull Collection<String> references) {
+        return paymentEventRepository.findAll().stream()
+                .filter(event -> references.contains(event.getBookingReference()))
+                .toList();
+    }
+
+    private @NonNull Map<String, Long> outboxCounts(@NonNull Collection<String> references) {
+        return emailOutboxRepository.findAll().stream()
+                .map(EmailOutbox::getBookingReference)
+                .filter(references::contains)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    // a foglalás árát hozó esemény, ahogy a Stripe küldi
+    private @NonNull String paymentSucceeded(@NonNull String eventId, @NonNull String bookingReference) {
+        return paymentSucceeded(eventId, bookingReference, stripeAmount(bookingReference), "huf");
+    }
+
+    // amount == null esetén az amount_received mező kimarad
+    private static @NonNull String paymentSucceeded(@NonNull String eventId, @NonNull String bookingReference, Long amount, @NonNull String currency) {
+        String amountField = amount == null ? "" : "\"amount_received\":" + amount + ",";
+
+        return """
+                {"id":"%s","object":"event","type":"payment_intent.succeeded","data":{"object":{"id":"pi_%s","object":"payment_intent",%s"currency":"%s","metadata":{"bookingReference":"%s"}}}}
+                """.formatted(eventId, eventId, amountField, currency, bookingReference).strip();
+    }
+
+    private long stripeAmount(@NonNull String bookingReference) {
+        return PaymentService.toStripeAmount(bookingService.getBookingByReference(bookingReference).getTotalPrice());
+    }
+
+    // a Stripe-Signature fejléc: t=<időbélyeg>,v1=<HMAC-SHA256("<időbélyeg>.<törzs>")>
+    private @NonNull String sign(@NonNull String payload) throws Exception {
+        long timestamp = Instant.now().getEpochSecond();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+
+        byte[] digest = mac.doFinal((timestamp + "." + payload).getBytes(StandardCharsets.UTF_8));
+        return "t=" + timestamp + ",v1=" + HexFormat.of().formatHex(digest);
+    }
+}
@@ -0,0 +1,232 @@
+package net.coma112.flightbooking.service;
+
+import com.stripe.Stripe;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.coma112.flightbooking.IntegrationTest;
+import net.coma112.flightbooking.dto.PaymentIntentResponse;
+import net.coma112.flightbooking.model.Flight;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * PaymentIntent létrehozás és lemondás egy helyi Stripe csonk ellen.
+ * A csonk az Idempotency-Key fejléc szerint ad vissza szándékot, mint a valódi API, és minden választ
+ * késleltet, hogy a párhuzamos kérések biztosan egymásra fussanak.
+ */
+class PaymentServiceTest extends IntegrationTest {
+    private static final long STRIPE_LATENCY_MS = 300;
+
+    private static HttpServer stripe;
+    private static final List<StripeRequest> requests = new CopyOnWriteArrayList<>();
+    private static final Map<String, String> intentsByKey = new ConcurrentHashMap<>();
+    private static final AtomicInteger intentIds = new AtomicInteger();
+    private static volatile boolean failing;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private SeatHoldSweeper seatHoldSweeper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${stripe.api-base}")
+    private String configuredApiBase;
+
+    @BeforeAll
+    static void startStripe() throws IOException {
+        stripe = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 100);
+        stripe.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        stripe.createContext("/", PaymentServiceTest::handle);
+        stripe.start();
+    }
+
+    @AfterAll
+    static void stopStripe() {
+        stripe.stop(0);
+    }
+
+    // a StripeGateway az alkalmazás indulásakor állítja be a címet, a megosztott kontextus miatt itt írjuk át
+    @BeforeEach
+    void useLocalStripe() {
+        Stripe.overrideApiBase("http://127.0.0.1:" + stripe.getAddress().getPort());
+        requests.clear();
+        failing = false;
+    }
+
+    @AfterEach
+    void restoreStripe() {
+        Stripe.overrideApiBase(configuredApiBase);
+    }
+
+    @Test
+    void concurrentRequestsForOneBookingShareOneIntent() throws Exception {
+        String reference = book(flight(route(), departureInDays(30), 1), "1A");
+
+        List<PaymentIntentResponse> responses = concurrently(50, () -> paymentService.createPaymentIntent(reference));
+
+        assertThat(responses).extracting(PaymentIntentResponse::getPaymentIntentId).containsOnly(responses.getFirst().getPaymentIntentId());
+        assertThat(responses).extracting(PaymentIntentResponse::getAmount).containsOnly(bookingAmount(reference));
+        assertThat(requests).hasSize(1);
+
+        // a tárolt szándékot Stripe hívás nélkül kapja vissza az újrapróbálás
+        assertThat(paymentService.createPaymentIntent(reference).getPaymentIntentId()).isEqualTo(responses.getFirst().getPaymentIntentId());
+        assertThat(requests).hasSize(1);
+    }
+
+    @Test
+    void lostIntentIsRecoveredWithTheSameIdempotencyKey() throws Exception {
+        String reference = book(flight(route(), departureInDays(31), 1), "1A");
+        String intentId = paymentService.createPaymentIntent(reference).getPaymentIntentId();
+
+        // mintha a példány a Stripe válasza után, a mentés előtt állt volna le
+        jdbcTemplate.update("UPDATE bookings SET payment_intent_id = NULL WHERE booking_reference = ?", reference);
+
+        assertThat(paymentService.createPaymentIntent(reference).getPaymentIntentId()).isEqualTo(intentId);
+        assertThat(requests).hasSize(2);
+        assertThat(requests).extracting(StripeRequest::idempotencyKey).containsOnly(requests.getFirst().idempotencyKey());
+    }
+
+    @Test
+    void confirmedBookingCannotBePaidAgain() throws Exception {
+        String reference = book(flight(route(), departureInDays(32), 1), "1A");
+        bookingService.confirmBooking(reference, "card");
+
+        assertThatThrownBy(() -> paymentService.createPaymentIntent(reference)).hasMessageContaining("PENDING");
+        assertThat(requests).isEmpty();
+    }
+
+    @Test
+    void mockFallbackUsesTheBookingAmountWhenTheRequestHasNone() throws Exception {
+        String reference = book(flight(route(), departureInDays(33), 1), "1A");
+        failing = true;
+
+        mockMvc.perform(post("/api/payments/create-intent")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"bookingReference\":\"" + reference + "\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.amount").value(bookingAmount(reference)));
+    }
+
+    @Test
+    void sweeperCancelsTheIntentOfAnExpiredHold() throws Exception {
+        String reference = book(flight(route(), departureInDays(34), 1), "1A");
+        String intentId = paymentService.createPaymentIntent(reference).getPaymentIntentId();
+
+        jdbcTemplate.update("UPDATE bookings SET hold_expires_at = ? WHERE booking_reference = ?", LocalDateTime.now().minusMinutes(1), reference);
+        seatHoldSweeper.sweep();
+
+        assertThat(requests).contains(new StripeRequest("/v1/payment_intents/" + intentId + "/cancel", "payment-intent-cancel-" + intentId));
+        assertThat(bookingService.getBookingByReference(reference).getStatus().name()).isEqualTo("CANCELLED");
+    }
+
+    private @NonNull String book(@NonNull Flight flight, @NonNull String seatNumber) {
+        return bookingService.createBooking(bookingRequest(flight, seatNumber)).getBookingReference();
+    }
+
+    // a foglalás (dinamikus) ára egész forintra kerekítve
+    private long bookingAmount(@NonNull String reference) {
+        return bookingService.getBookingByReference(reference).getTotalPrice().setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static <T> @NonNull List<T> concurrently(int threads, @NonNull Callable<T> call) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> futures = new ArrayList<>(threads);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.call();
+                }));
+            }
+            start.countDown();
+
+            List<T> results = new ArrayList<>(threads);
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+    }
+
+    private static void handle(@NonNull HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+
+        String path = exchange.getRequestURI().getPath();
+        String idempotencyKey = exchange.getRequestHeaders().getFirst("Idempotency-Key");
+        requests.add(new StripeRequest(path, idempotencyKey));
+
+        try {
+            Thread.sleep(STRIPE_LATENCY_MS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failing) {
+            respond(exchange, 500, "{\"error\":{\"type\":\"api_error\",\"message\":\"helyi csonk hiba\"}}");
+            return;
+        }
+
+        if (path.endsWith("/cancel")) {
+            String id = path.substring("/v1/payment_intents/".length(), path.length() - "/cancel".length());
+            respond(exchange, 200, intent(id, "canceled"));
+            return;
+        }
+
+        String id = intentsByKey.computeIfAbsent(idempotencyKey, key -> "pi_local_" + intentIds.incrementAndGet());
+        respond(exchange, 200, intent(id, "requires_payment_method"));
+    }
+
+    private static @NonNull String intent(@NonNull String id, @NonNull String status) {
+        return """
+                {"id":"%s","object":"payment_intent","client_secret":"%s_secret","status":"%s","amount":3000000,"currency":"huf"}
+                """.formatted(id, id, status);
+    }
+
+    private static void respond(@NonNull HttpExchange exchange, int status, @NonNull String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private record StripeRequest(String path, String idempotencyKey) {}
+}
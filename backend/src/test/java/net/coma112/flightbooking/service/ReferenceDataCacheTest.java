@@ -0,0 +1,98 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.model.Airport;
+import net.coma112.flightbooking.repository.AircraftRepository;
+import net.coma112.flightbooking.repository.AirportRepository;
+import net.coma112.flightbooking.service.ReferenceDataCache.AirportRef;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A hiány miatti újratöltés: a rossz kódok nem mennek az adatbázishoz és nem várnak zárra,
+ * a másik szál frissítésére váró keresés pedig az új pillanatképből válaszol.
+ */
+class ReferenceDataCacheTest {
+    private static final Airport BUDAPEST = new Airport(1L, "BUD", "Liszt Ferenc Nemzetközi Repülőtér", "Budapest", "HU");
+
+    private final AirportRepository airportRepository = mock(AirportRepository.class);
+    private final AircraftRepository aircraftRepository = mock(AircraftRepository.class);
+
+    @Test
+    void unknownCodesWithinTheRefreshIntervalDoNotReachTheDatabase() {
+        when(airportRepository.findAll()).thenReturn(List.of(BUDAPEST));
+        ReferenceDataCache cache = cache();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(cache.findAirport("XXX")).isEmpty();
+        }
+
+        verify(airportRepository, times(1)).findAll();
+    }
+
+    @Test
+    void aLookupThatWaitedForAnotherRefreshReadsItsResult() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+
+        when(airportRepository.findAll())
+                .thenReturn(List.of())
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    resume.await();
+                    return List.of(BUDAPEST);
+                });
+
+        ReferenceDataCache cache = cache();
+        // az induló betöltés régen volt, az első hiány újratölt
+        ReflectionTestUtils.setField(cache, "lastRefreshMillis", 0L);
+        ReentrantLock refreshLock = (ReentrantLock) ReflectionTestUtils.getField(cache, "refreshLock");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Optional<AirportRef>> refreshing = executor.submit(() -> cache.findAirport("BUD"));
+            assertThat(loading.await(10, TimeUnit.SECONDS)).isTrue();
+
+            Future<Optional<AirportRef>> waiting = executor.submit(() -> cache.findAirport("BUD"));
+            awaitQueued(refreshLock);
+            resume.countDown();
+
+            assertThat(refreshing.get()).isPresent();
+            assertThat(waiting.get()).isPresent();
+        }
+
+        // a váró szál nem töltött újra
+        verify(airportRepository, times(2)).findAll();
+    }
+
+    private ReferenceDataCache cache() {
+        ReferenceDataCache cache = new ReferenceDataCache(airportRepository, aircraftRepository);
+        ReflectionTestUtils.setField(cache, "minRefreshIntervalMs", Duration.ofMinutes(1).toMillis());
+        cache.init();
+        return cache;
+    }
+
+    private static void awaitQueued(ReentrantLock lock) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+
+        while (!lock.hasQueuedThreads() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertThat(lock.hasQueuedThreads()).as("a második keresés a zárra vár").isTrue();
+    }
+}
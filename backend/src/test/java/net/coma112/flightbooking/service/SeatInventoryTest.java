@@ -0,0 +1,381 @@
+package net.coma112.flightbooking.service;
+
+import net.coma112.flightbooking.event.SeatAvailabilityChangedEvent;
+import net.coma112.flightbooking.exception.BusinessException;
+import net.coma112.flightbooking.model.enums.SeatClass;
+import net.coma112.flightbooking.repository.FlightRepository;
+import net.coma112.flightbooking.repository.SeatRepository;
+import net.coma112.flightbooking.repository.projection.SeatSnapshot;
+import org.jspecify.annotations.NonNull;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A memóriabeli készlet adatbázis nélkül: a SeatRepository-t egy tömb helyettesíti, ami a commitolt állapotot tartja.
+ */
+class SeatInventoryTest {
+    private static final long FLIGHT_ID = 1L;
+    private static final int ROWS = 30;
+    private static final String LETTERS = "ABCDEF";
+    private static final int SEATS = ROWS * LETTERS.length();
+
+    private final AtomicIntegerArray committed = new AtomicIntegerArray(SEATS); // 1 = szabad
+
+    {
+        for (int i = 0; i < SEATS; i++) {
+            committed.set(i, 1);
+        }
+    }
+
+    @Test
+    void concurrentClaimsNeverSellASeatTwice() throws Exception {
+        SeatInventory inventory = new SeatInventory(seatRepository(snapshots -> snapshots), flightRepository(), event -> {});
+        AtomicIntegerArray owners = new AtomicIntegerArray(SEATS); // 0 = senkié, egyébként a szál sorszáma + 1
+        AtomicLong doubleSales = new AtomicLong();
+        AtomicLong claims = new AtomicLong();
+        int threads = 400;
+        CountDownLatch start = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(threads);
+
+            for (int thread = 0; thread < threads; thread++) {
+                int owner = thread + 1;
+
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    List<Integer> held = new ArrayList<>();
+
+                    for (int round = 0; round < 2_000; round++) {
+                        if (!held.isEmpty() && random.nextInt(3) == 0) {
+                            int seat = held.remove(random.nextInt(held.size()));
+                            owners.set(seat, 0);
+                            inventory.release(FLIGHT_ID, seatNumber(seat));
+                            continue;
+                        }
+
+                        int seat = random.nextInt(SEATS);
+                        try {
+                            inventory.claim(FLIGHT_ID, seatNumber(seat));
+                        } catch (BusinessException exception) {
+                            continue; // foglalt
+                        }
+
+                        claims.incrementAndGet();
+                        if (!owners.compareAndSet(seat, 0, owner)) {
+                            doubleSales.incrementAndGet();
+                        }
+                        held.add(seat);
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        int owned = 0;
+        for (int i = 0; i < SEATS; i++) {
+            owned += owners.get(i) != 0 ? 1 : 0;
+        }
+
+        Map<SeatClass, Integer> available = inventory.getAvailableSeatCounts(List.of(FLIGHT_ID)).get(FLIGHT_ID);
+
+        assertThat(claims.get()).isPositive();
+        assertThat(doubleSales.get()).isZero();
+        assertThat(available.values().stream().mapToInt(Integer::intValue).sum()).isEqualTo(SEATS - owned);
+        assertThat(inventory.getSeatStates(FLIGHT_ID).stream().filter(seat -> !seat.available()).count()).isEqualTo(owned);
+    }
+
+    @Test
+    void concurrentGroupClaimsAreAllOrNothing() throws Exception {
+        SeatInventory inventory = new SeatInventory(seatRepository(snapshots -> snapshots), flightRepository(), event -> {});
+        AtomicIntegerArray owners = new AtomicIntegerArray(SEATS);
+        AtomicLong doubleSales = new AtomicLong();
+        int threads = 200;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>(threads);
+
+            for (int thread = 0; thread < threads; thread++) {
+                int owner = thread + 1;
+
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    List<Integer> group = random.ints(0, SEATS).distinct().limit(3).boxed().toList();
+
+                    try {
+                        inventory.claimAll(FLIGHT_ID, group.stream().map(SeatInventoryTest::seatNumber).toList());
+                    } catch (BusinessException exception) {
+                        return null;
+                    }
+
+                    for (int seat : group) {
+                        if (!owners.compareAndSet(seat, 0, owner)) {
+                            doubleSales.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        int owned = 0;
+        for (int i = 0; i < SEATS; i++) {
+            owned += owners.get(i) != 0 ? 1 : 0;
+        }
+
+        // a sikertelen csoportok egyetlen ülést sem hagytak maguk után
+        assertThat(doubleSales.get()).isZero();
+        assertThat(inventory.getSeatStates(FLIGHT_ID).stream().filter(seat -> !seat.available()).count()).isEqualTo(owned);
+    }
+
+    @Test
+    void reloadDuringAnOpenTransactionIsDroppedWhenItCommits() {
+        SeatInventory inventory = new SeatInventory(seatRepository(snapshots -> snapshots), flightRepository(), event -> {});
+        int seat = 7;
+
+        inTransaction(() -> {
+            inventory.claim(FLIGHT_ID, seatNumber(seat));
+
+            // egy másik kérés ütközése miatt újratöltjük: az adatbázisban a foglalásunk még nincs commitolva
+            inventory.recordDatabaseConflict(FLIGHT_ID);
+            assertThat(available(inventory, seat)).isTrue();
+
+            committed.set(seat, 0);
+        });
+
+        assertThat(available(inventory, seat)).isFalse();
+    }
+
+    @Test
+    void releaseOfAFlightThatIsNotLoadedDoesNotReadInsideTheTransaction() {
+        AtomicLong loads = new AtomicLong();
+        List<Object> events = new ArrayList<>();
+        SeatInventory inventory = new SeatInventory(seatRepository(snapshots -> {
+            loads.incrementAndGet();
+            return snapshots;
+        }), flightRepository(), events::add);
+        int seat = 9;
+
+        committed.set(seat, 0);
+
+        inTransaction(() -> {
+            // a lemondás UPDATE-je a tranzakción belül már látszik, de visszagörgetjük
+            committed.set(seat, 1);
+            inventory.release(FLIGHT_ID, seatNumber(seat));
+        }, TransactionSynchronization.STATUS_ROLLED_BACK);
+        committed.set(seat, 0);
+
+        assertThat(loads).hasValue(0);
+        assertThat(events).containsExactly(new SeatAvailabilityChangedEvent(FLIGHT_ID));
+        assertThat(available(inventory, seat)).isFalse();
+    }
+
+    @Test
+    void reloadThatReadBeforeTheCommitIsNotKept() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        AtomicLong loads = new AtomicLong();
+
+        // a második betöltés a pillanatkép elkészítése után megáll, amíg a tranzakció le nem zárul
+        SeatInventory inventory = new SeatInventory(seatRepository(snapshots -> {
+            if (loads.incrementAndGet() == 2) {
+                loading.countDown();
+                await(resume);
+            }
+            return snapshots;
+        }), flightRepository(), event -> {});
+        int seat = 11;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?>[] reload = new Future<?>[1];
+
+            inTransaction(() -> {
+                inventory.claim(FLIGHT_ID, seatNumber(seat));
+                inventory.invalidate(FLIGHT_ID);
+
+                reload[0] = executor.submit(() -> inventory.getAvailableSeatCounts(List.of(FLIGHT_ID)));
+                await(loading);
+
+                committed.set(seat, 0);
+            });
+
+            resume.countDown();
+            reload[0].get();
+        }
+
+        assertThat(available(inventory, seat)).isFalse();
+    }
+
+    @Test
+    void concurrentFirstReadsAllSeeTheFlight() throws Exception {
+        // platform szálak: az operációs rendszer bárhol megszakíthatja őket, így előfordul, hogy egy olvasó a
+        // flights.get után, de a betöltés előtt áll meg, és mire folytatja, egy másik szál már beillesztette a térképet
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int round = 0; round < 2_000; round++) {
+                SeatInventory inventory = new SeatInventory(seatRepository(snapshots -> snapshots), flightRepository(), event -> {});
+                List<Future<Integer>> reads = new ArrayList<>();
+
+                for (int i = 0; i < 8; i++) {
+                    reads.add(executor.submit(() -> inventory.getSeatStates(FLIGHT_ID).size()));
+                }
+
+                for (Future<Integer> read : reads) {
+                    assertThat(read.get()).isEqualTo(SEATS);
+                }
+            }
+        }
+    }
+
+    @Test
+    void flightWithoutSeatsIsNotQueriedOnEveryLoadFactorCall() {
+        SeatRepository seatRepository = mock(SeatRepository.class);
+        when(seatRepository.findSnapshotsByFlightIds(any())).thenReturn(List.of());
+        SeatInventory inventory = new SeatInventory(seatRepository, flightRepository(), event -> {});
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(inventory.getLoadFactor(42L, SeatClass.ECONOMY)).isZero();
+        }
+        assertThat(inventory.getAvailableSeatCounts(List.of(42L)).get(42L)).containsOnlyKeys(SeatClass.values());
+        verify(seatRepository, times(1)).findSnapshotsByFlightIds(any());
+
+        // az invalidate a negatív találatot is eldobja
+        inventory.invalidate(42L);
+        inventory.getLoadFactor(42L, SeatClass.ECONOMY);
+        verify(seatRepository, times(2)).findSnapshotsByFlightIds(any());
+    }
+
+    // a kabin: ROWS sor, soronként A-F, az első sor business
+    static @NonNull String seatNumber(int seat) {
+        return (seat / LETTERS.length() + 1) + String.valueOf(LETTERS.charAt(seat % LETTERS.length()));
+    }
+
+    private static boolean available(@NonNull SeatInventory inventory, int seat) {
+        return inventory.getSeatStates(FLIGHT_ID).get(seat).available();
+    }
+
+    // a művelet egy (adatbázis nélküli) tranzakció szinkronizációjával fut, a végén commit
+    private static void inTransaction(@NonNull Runnable action) {
+        inTransaction(action, TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    private static void inTransaction(@NonNull Runnable action, int completionStatus) {
+        TransactionSynchronizationManager.initSynchronization();
+
+        try {
+            action.run();
+
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(completionStatus);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static void await(@NonNull CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    // a findSnapshotsByFlightIds a commitolt állapot pillanatképét adja, amit a hook még átalakíthat (pl. megállíthat)
+    @NonNull SeatRepository seatRepository(@NonNull Function<List<SeatSnapshot>, List<SeatSnapshot>> hook) {
+        SeatRepository seatRepository = mock(SeatRepository.class);
+
+        when(seatRepository.findSnapshotsByFlightIds(any())).thenAnswer(invocation -> {
+            if (!invocation.<Collection<Long>>getArgument(0).contains(FLIGHT_ID)) {
+                return List.of();
+            }
+
+            LocalDateTime departure = LocalDateTime.now().plusDays(30);
+            List<SeatSnapshot> snapshots = new ArrayList<>(SEATS);
+
+            for (int i = 0; i < SEATS; i++) {
+                snapshots.add(new Snapshot(i + 1L, FLIGHT_ID, departure, seatNumber(i),
+                        i < LETTERS.length() ? SeatClass.BUSINESS : SeatClass.ECONOMY, committed.get(i) == 1, new BigDecimal("30000")));
+            }
+
+            return hook.apply(snapshots);
+        });
+
+        return seatRepository;
+    }
+
+    static @NonNull FlightRepository flightRepository() {
+        return mock(FlightRepository.class);
+    }
+
+    record Snapshot(Long id, Long flightId, LocalDateTime departureTime, String seatNumber, SeatClass seatClass,
+                    Boolean available, BigDecimal price) implements SeatSnapshot {
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public Long getFlightId() {
+            return flightId;
+        }
+
+        @Override
+        public LocalDateTime getDepartureTime() {
+            return departureTime;
+        }
+
+        @Override
+        public String getSeatNumber() {
+            return seatNumber;
+        }
+
+        @Override
+        public SeatClass getSeatClass() {
+            return seatClass;
+        }
+
+        @Override
+        public Boolean getAvailable() {
+            return available;
+        }
+
+        @Override
+        public BigDecimal getPrice() {
+            return price;
+        }
+    }
+}